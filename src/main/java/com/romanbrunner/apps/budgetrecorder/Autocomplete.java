@@ -1,11 +1,14 @@
 package com.romanbrunner.apps.budgetrecorder;
 
-import java.awt.event.ActionEvent;
-import java.util.Collections;
-import java.util.List;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 
-import javax.swing.AbstractAction;
+import javax.swing.JList;
+import javax.swing.JPopupMenu;
 import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
@@ -23,10 +26,11 @@ public class Autocomplete implements DocumentListener
 		INSERT,	COMPLETION;
 	};
 
-	private List<String> keywords;
+	private KeywordIndex.Scope keywords;
 	private JTextField textField;
 	private Mode mode = Mode.INSERT;
-	private boolean isActive;
+	private final JPopupMenu popup = new JPopupMenu();
+	private final JList<String> completionList = new JList<String>();
 
 	/** Class for displaying found completion in the text field. */
 	private class CompletionTask implements Runnable
@@ -51,46 +55,52 @@ public class Autocomplete implements DocumentListener
 		}
 	}
 
-	/** Class for inserting chosen completion. */
-	public class CommitAction extends AbstractAction
+	public Autocomplete(JTextField textField, KeywordIndex.Scope keywords)
 	{
-		private static final long serialVersionUID = 5794543109646743416L;
-
-		@Override
-		public void actionPerformed(ActionEvent ev)
+		this.textField = textField;
+		this.keywords = keywords;
+		// Prepare drop down list of the most used completions, which must not take the focus of the text field:
+		completionList.setFocusable(false);
+		completionList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		completionList.addMouseListener(new MouseAdapter()
 		{
-			if (mode == Mode.COMPLETION)
+			@Override
+			public void mouseClicked(MouseEvent event)
 			{
-				StringBuffer sb = new StringBuffer(textField.getText());
-				textField.setText(sb.toString());
-				textField.setCaretPosition(textField.getSelectionEnd());
-				mode = Mode.INSERT;
+				final var keyword = completionList.getSelectedValue();
+				if (keyword != null)
+				{
+					accept(keyword);
+				}
 			}
-			else
+		});
+		popup.setFocusable(false);
+		popup.add(completionList);
+		textField.addFocusListener(new FocusAdapter()
+		{
+			@Override
+			public void focusLost(FocusEvent event)
 			{
-				textField.replaceSelection("\t");
+				popup.setVisible(false);
 			}
-		}
-	}
-
-	public Autocomplete(JTextField textField, List<String> keywords, boolean isActive)
-	{
-		this.textField = textField;
-		this.keywords = keywords;
-		Collections.sort(keywords);
-		this.isActive = isActive;
+		});
 	}
 
 	@Override
 	public void changedUpdate(DocumentEvent ev) {}
 
 	@Override
-	public void removeUpdate(DocumentEvent ev) {}
+	public void removeUpdate(DocumentEvent ev)
+	{
+		SwingUtilities.invokeLater(this::updatePopup);
+	}
 
 	@Override
 	public void insertUpdate(DocumentEvent ev)
 	{
-		if (isActive == false || ev.getLength() != 1)
+		// Update drop down after the document and a possible completion changed:
+		SwingUtilities.invokeLater(this::updatePopup);
+		if (ev.getLength() != 1)
 		{
 			return;
 		}
@@ -123,17 +133,13 @@ public class Autocomplete implements DocumentListener
 		}
 
 		String prefix = content.substring(w + 1);
-		int n = Collections.binarySearch(keywords, prefix);
-		if (n < 0 && -n <= keywords.size())
+		String match = keywords.getBestCompletion(prefix);  // Ignores capitalisation, the typed prefix is kept as it is
+		if (match != null && match.length() > prefix.length())
 		{
-			String match = keywords.get(-n - 1);
-			if (match.startsWith(prefix))
-			{
-				// A completion is found:
-				String completion = match.substring(pos - w);
-				// We cannot modify Document from within notification, so we submit a task that does the change later:
-				SwingUtilities.invokeLater(new CompletionTask(completion, pos + 1));
-			}
+			// A completion is found:
+			String completion = match.substring(pos - w);
+			// We cannot modify Document from within notification, so we submit a task that does the change later:
+			SwingUtilities.invokeLater(new CompletionTask(completion, pos + 1));
 		}
 		else
 		{
@@ -142,27 +148,97 @@ public class Autocomplete implements DocumentListener
 		}
 	}
 
-	/** Sets keywords to the given list of strings. */
-	public void setKeywords(List<String> keywords)
-    {
-		this.keywords = keywords;
-		Collections.sort(this.keywords);
+	// Shows the most used keywords starting with the typed text, which ends at the selected completion:
+	private void updatePopup()
+	{
+		final var typedText = textField.getText().substring(0, Math.min(textField.getSelectionStart(), textField.getText().length()));
+		if (typedText.isEmpty() || textField.isShowing() == false || textField.hasFocus() == false)
+		{
+			popup.setVisible(false);
+			return;
+		}
+		final var completions = keywords.getTopCompletions(typedText);
+		if (completions.isEmpty() || (completions.size() == 1 && completions.get(0).equals(textField.getText())))
+		{
+			popup.setVisible(false);
+			return;
+		}
+		completionList.setListData(completions.toArray(new String[completions.size()]));
+		completionList.setVisibleRowCount(completions.size());
+		if (popup.isVisible())
+		{
+			popup.pack();
+		}
+		else
+		{
+			popup.setPopupSize(textField.getWidth(), popup.getPreferredSize().height);
+			popup.show(textField, 0, textField.getHeight());
+		}
+	}
+
+	private void accept(String keyword)
+	{
+		textField.setText(keyword);
+		textField.setCaretPosition(keyword.length());
+		mode = Mode.INSERT;
+		popup.setVisible(false);
 	}
 
-	/** Adds given string to the current list of keywords if it isn't already included. */
-	public void addKeyword(String keyword)
+	/** Inserts the selected entry of the drop down list or the current completion, otherwise types a tab. */
+	public void commit()
 	{
-		if (keywords.contains(keyword) == false)
+		if (popup.isVisible() && completionList.getSelectedValue() != null)
 		{
-			keywords.add(keyword);
-			Collections.sort(this.keywords);
+			accept(completionList.getSelectedValue());
+		}
+		else if (mode == Mode.COMPLETION)
+		{
+			textField.setCaretPosition(textField.getSelectionEnd());
+			mode = Mode.INSERT;
+			popup.setVisible(false);
 		}
+		else
+		{
+			textField.replaceSelection("\t");
+		}
+	}
+
+	/** Returns whether the drop down list is shown. */
+	public boolean isPopupVisible()
+	{
+		return popup.isVisible();
 	}
 
-	/** Turn active autocompletion on or off. */
-	public void changeActivation(boolean turnOn)
+	/** Returns whether an entry of the shown drop down list is selected. */
+	public boolean hasSelectedCompletion()
 	{
-		isActive = turnOn;
+		return popup.isVisible() && completionList.getSelectedValue() != null;
+	}
+
+	/** Moves the selection within the drop down list by given amount of entries if it is shown. */
+	public void moveSelection(int offset)
+	{
+		if (popup.isVisible())
+		{
+			final int size = completionList.getModel().getSize();
+			final int index = Math.max(0, Math.min(completionList.getSelectedIndex() + offset, size - 1));
+			completionList.setSelectedIndex(index);
+			completionList.ensureIndexIsVisible(index);
+		}
+	}
+
+	/** Hides the drop down list. */
+	public void hidePopup()
+	{
+		popup.setVisible(false);
+	}
+
+	/** Completes from given keywords from now on, e.g. after another type or subtype got selected. */
+	public void changeKeywords(KeywordIndex.Scope keywords)
+	{
+		this.keywords = keywords;
+		mode = Mode.INSERT;
+		popup.setVisible(false);
 	}
 
-}
\ No newline at end of file
+}
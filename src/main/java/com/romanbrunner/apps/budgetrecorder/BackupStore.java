@@ -0,0 +1,531 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/** Backups of the json database file or the files of a partitioned database as manifests of content-addressed, compressed chunks with hourly, daily and monthly retention. */
+class BackupStore
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	public static final long BACKUP_INTERVAL = 1L;  // Hours between two backups
+	public static final int HOURLY_RETENTION = 24;  // Hours in which the last backup of each hour is kept
+	public static final int DAILY_RETENTION = 31;  // Days in which the last backup of each day is kept
+	public static final int MONTHLY_RETENTION = 12;  // Months in which the last backup of each month is kept
+
+	private static final String CHUNKS_DIRECTORY = "chunks";
+	private static final String MANIFESTS_DIRECTORY = "manifests";
+	private static final String CHUNK_EXTENSION = ".gz";
+	private static final String MANIFEST_EXTENSION = ".manifest";
+	private static final String MANIFEST_HEADER = "budget-recorder-backup 1";
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	// Content defined chunking, so an insertion only changes the chunks around it:
+	private static final int MIN_CHUNK_SIZE = 1 << 11;  // Bytes
+	private static final int MAX_CHUNK_SIZE = 1 << 16;  // Bytes
+	private static final long CHUNK_BOUNDARY_MASK = (1L << 13) - 1L;  // Average chunk size of 8 KiB
+	private static final long[] GEAR = new long[256];  // Has to stay the same across runs to find equal chunks
+	static
+	{
+		var random = new Random(0x6275646765744CL);
+		for (int i = 0; i < GEAR.length; i++)
+		{
+			GEAR[i] = random.nextLong();
+		}
+	}
+
+	private interface FileOpener
+	{
+		OutputStream open(String fileName) throws Exception;
+	}
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private final File chunksDirectory;
+	private final File manifestsDirectory;
+	private final String databaseName;
+	private final Pattern manifestPattern;  // Only matches the manifests of this database, not those of a database whose name starts alike
+
+	public BackupStore(File backupDirectory, String databaseName)
+	{
+		chunksDirectory = new File(backupDirectory, CHUNKS_DIRECTORY);
+		manifestsDirectory = new File(backupDirectory, MANIFESTS_DIRECTORY);
+		this.databaseName = databaseName;
+		manifestPattern = Pattern.compile(Pattern.quote(databaseName) + "_(\\d{8}-\\d{6})" + Pattern.quote(MANIFEST_EXTENSION));
+	}
+
+	private static String toHex(byte[] bytes)
+	{
+		var builder = new StringBuilder(bytes.length * 2);
+		for (var b : bytes)
+		{
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+			builder.append(Character.forDigit(b & 0xF, 16));
+		}
+		return builder.toString();
+	}
+
+	private static void moveAtomically(File source, File target) throws Exception
+	{
+		try
+		{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException exception)
+		{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private File getChunkFile(String hash)
+	{
+		return new File(new File(chunksDirectory, hash.substring(0, 2)), hash + CHUNK_EXTENSION);
+	}
+
+	// Returns the backup names of this database in ascending order, which is also the chronological order:
+	public List<String> getBackupNames()
+	{
+		var backupNames = new ArrayList<String>();
+		final var files = manifestsDirectory.list();
+		if (files != null)
+		{
+			for (var fileName : files)
+			{
+				final var matcher = manifestPattern.matcher(fileName);
+				if (matcher.matches() == false)
+				{
+					continue;
+				}
+				try
+				{
+					TIME_FORMAT.parse(matcher.group(1));
+				}
+				catch (DateTimeParseException exception)
+				{
+					continue;  // Digits of an impossible time, e.g. a month 13
+				}
+				backupNames.add(fileName.substring(0, fileName.length() - MANIFEST_EXTENSION.length()));
+			}
+		}
+		Collections.sort(backupNames);
+		return backupNames;
+	}
+
+	private LocalDateTime getBackupTime(String backupName)
+	{
+		return LocalDateTime.parse(backupName.substring(databaseName.length() + 1), TIME_FORMAT);
+	}
+
+	// Stores given chunk unless a chunk with the same content exists already and returns its hash:
+	private String storeChunk(byte[] chunk, int length) throws Exception
+	{
+		var digest = MessageDigest.getInstance("SHA-256");
+		digest.update(chunk, 0, length);
+		final var hash = toHex(digest.digest());
+		final var chunkFile = getChunkFile(hash);
+		if (chunkFile.exists() == false)
+		{
+			chunkFile.getParentFile().mkdirs();
+			final var tempFile = new File(chunkFile.getPath() + ".tmp");
+			try (var outputStream = new GZIPOutputStream(new FileOutputStream(tempFile)))
+			{
+				outputStream.write(chunk, 0, length);
+			}
+			moveAtomically(tempFile, chunkFile);
+		}
+		return hash;
+	}
+
+	// Splits given file into chunks at content defined boundaries, stores them and adds the lines that restore the file to given manifest lines:
+	private void addFileLines(File file, List<String> manifestLines) throws Exception
+	{
+		var chunkLines = new LinkedList<String>();
+		var fileDigest = MessageDigest.getInstance("SHA-256");
+		long fileSize = 0L;
+		try (var inputStream = new BufferedInputStream(new FileInputStream(file)))
+		{
+			var chunk = new byte[MAX_CHUNK_SIZE];
+			int length = 0;
+			long hash = 0L;
+			int value;
+			while ((value = inputStream.read()) >= 0)
+			{
+				chunk[length++] = (byte)value;
+				hash = (hash << 1) + GEAR[value];
+				if ((length >= MIN_CHUNK_SIZE && (hash & CHUNK_BOUNDARY_MASK) == 0L) || length == MAX_CHUNK_SIZE)
+				{
+					chunkLines.add("chunk " + storeChunk(chunk, length) + " " + length);
+					fileDigest.update(chunk, 0, length);
+					fileSize += length;
+					length = 0;
+					hash = 0L;
+				}
+			}
+			if (length > 0)
+			{
+				chunkLines.add("chunk " + storeChunk(chunk, length) + " " + length);
+				fileDigest.update(chunk, 0, length);
+				fileSize += length;
+			}
+		}
+		manifestLines.add("size " + fileSize);
+		manifestLines.add("sha256 " + toHex(fileDigest.digest()));
+		manifestLines.addAll(chunkLines);
+	}
+
+	// Writes the manifest of given backup point after all its chunks exist:
+	private void writeManifest(String backupName, List<String> manifestLines) throws Exception
+	{
+		final var manifestFile = new File(manifestsDirectory, backupName + MANIFEST_EXTENSION);
+		final var tempFile = new File(manifestFile.getPath() + ".tmp");
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))
+		{
+			writer.write(MANIFEST_HEADER + "\n");
+			for (var line : manifestLines)
+			{
+				writer.write(line + "\n");
+			}
+		}
+		moveAtomically(tempFile, manifestFile);
+	}
+
+	// Creates a backup point of given file at given time and returns its name:
+	public String backup(File file, LocalDateTime time) throws Exception
+	{
+		manifestsDirectory.mkdirs();
+		final var backupName = databaseName + "_" + TIME_FORMAT.format(time);
+		var manifestLines = new LinkedList<String>();
+		addFileLines(file, manifestLines);
+		writeManifest(backupName, manifestLines);
+		return backupName;
+	}
+
+	// Creates one backup point of given files in given directory at given time, which restores them together in the given order, and returns its name:
+	public String backup(File directory, List<String> fileNames, LocalDateTime time) throws Exception
+	{
+		manifestsDirectory.mkdirs();
+		final var backupName = databaseName + "_" + TIME_FORMAT.format(time);
+		var manifestLines = new LinkedList<String>();
+		for (var fileName : fileNames)
+		{
+			manifestLines.add("file " + fileName);
+			addFileLines(new File(directory, fileName), manifestLines);
+		}
+		writeManifest(backupName, manifestLines);
+		return backupName;
+	}
+
+	private boolean isBackupDue(LocalDateTime now)
+	{
+		final var backupNames = getBackupNames();
+		return (backupNames.isEmpty() || getBackupTime(backupNames.get(backupNames.size() - 1)).plusHours(BACKUP_INTERVAL).isAfter(now) == false);
+	}
+
+	// Creates a backup point of given file if the last one is older than the backup interval and applies the retention policy afterwards:
+	public void backupIfDue(File file) throws Exception
+	{
+		final var now = LocalDateTime.now();
+		if (file.exists() == false || isBackupDue(now) == false)
+		{
+			return;
+		}
+		backup(file, now);
+		applyRetention(now);
+	}
+
+	// Creates one backup point of given files in given directory if the last one is older than the backup interval and applies the retention policy afterwards:
+	public void backupIfDue(File directory, List<String> fileNames) throws Exception
+	{
+		final var now = LocalDateTime.now();
+		if (isBackupDue(now) == false)
+		{
+			return;
+		}
+		backup(directory, fileNames, now);
+		applyRetention(now);
+	}
+
+	// Deletes backup points that no retention tier keeps and all chunks that no remaining backup point references:
+	public void applyRetention(LocalDateTime now) throws Exception
+	{
+		final var backupNames = getBackupNames();
+		var keptPeriods = new HashSet<String>();
+		for (int i = backupNames.size() - 1; i >= 0; i--)  // Newest first, so the last backup of each period is kept
+		{
+			final var backupName = backupNames.get(i);
+			final var time = getBackupTime(backupName);
+			boolean isKept = (i == backupNames.size() - 1);  // Always keep the newest backup
+			if (time.isAfter(now.minusHours(HOURLY_RETENTION)))
+			{
+				isKept |= keptPeriods.add("hour " + time.truncatedTo(ChronoUnit.HOURS));
+			}
+			if (time.isAfter(now.minusDays(DAILY_RETENTION)))
+			{
+				isKept |= keptPeriods.add("day " + time.toLocalDate());
+			}
+			if (time.isAfter(now.minusMonths(MONTHLY_RETENTION)))
+			{
+				isKept |= keptPeriods.add("month " + time.getYear() + "-" + time.getMonthValue());
+			}
+			if (isKept == false)
+			{
+				Files.delete(new File(manifestsDirectory, backupName + MANIFEST_EXTENSION).toPath());
+			}
+		}
+		collectGarbage();
+	}
+
+	// Returns the chunk hashes of given manifest file:
+	private static List<String> readChunkHashes(File manifestFile) throws Exception
+	{
+		var hashes = new LinkedList<String>();
+		try (var reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), StandardCharsets.UTF_8)))
+		{
+			if (MANIFEST_HEADER.equals(reader.readLine()) == false)
+			{
+				throw new Exception("ERROR: Invalid backup manifest (" + manifestFile.getName() + ")");
+			}
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if (line.startsWith("chunk "))
+				{
+					hashes.add(line.split(" ")[1]);
+				}
+			}
+		}
+		return hashes;
+	}
+
+	// Deletes all chunks without reference of any manifest, including the manifests of other databases in the same backup directory:
+	private void collectGarbage() throws Exception
+	{
+		var referencedHashes = new HashSet<String>();
+		final var manifestFiles = manifestsDirectory.listFiles((directory, fileName) -> fileName.endsWith(MANIFEST_EXTENSION));
+		if (manifestFiles == null)
+		{
+			return;
+		}
+		for (var manifestFile : manifestFiles)
+		{
+			referencedHashes.addAll(readChunkHashes(manifestFile));
+		}
+		final var chunkDirectories = chunksDirectory.listFiles(File::isDirectory);
+		if (chunkDirectories == null)
+		{
+			return;
+		}
+		for (var chunkDirectory : chunkDirectories)
+		{
+			for (var chunkFile : chunkDirectory.listFiles())
+			{
+				final var fileName = chunkFile.getName();
+				if (fileName.endsWith(CHUNK_EXTENSION) && referencedHashes.contains(fileName.substring(0, fileName.length() - CHUNK_EXTENSION.length())) == false)
+				{
+					Files.delete(chunkFile.toPath());
+				}
+			}
+		}
+	}
+
+	private static void verifyFile(String backupName, String fileName, long size, long expectedSize, MessageDigest fileDigest, String expectedHash) throws Exception
+	{
+		if (size != expectedSize || toHex(fileDigest.digest()).equals(expectedHash) == false)
+		{
+			throw new Exception("ERROR: Restored backup " + backupName + (fileName != null ? " (" + fileName + ")" : "") + " does not match its manifest");
+		}
+	}
+
+	// Streams the chunks of given backup point into the output stream that given opener returns for each of its files and verifies each file, whose name is null for a backup point of a single file:
+	private void restore(String backupName, FileOpener fileOpener) throws Exception
+	{
+		final var manifestFile = new File(manifestsDirectory, backupName + MANIFEST_EXTENSION);
+		String fileName = null;
+		OutputStream outputStream = null;
+		long expectedSize = -1L;
+		String expectedHash = null;
+		long size = 0L;
+		var fileDigest = MessageDigest.getInstance("SHA-256");
+		var buffer = new byte[1 << 13];
+		try (var reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), StandardCharsets.UTF_8)))
+		{
+			if (MANIFEST_HEADER.equals(reader.readLine()) == false)
+			{
+				throw new Exception("ERROR: Invalid backup manifest (" + manifestFile.getName() + ")");
+			}
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				final var parts = line.split(" ");
+				// Start the next file, or the single one of a backup point without file lines:
+				if (parts[0].equals("file") || outputStream == null)
+				{
+					if (outputStream != null)
+					{
+						verifyFile(backupName, fileName, size, expectedSize, fileDigest, expectedHash);
+					}
+					fileName = (parts[0].equals("file") ? parts[1] : null);
+					outputStream = fileOpener.open(fileName);
+					expectedSize = -1L;
+					expectedHash = null;
+					size = 0L;
+					fileDigest.reset();
+					if (fileName != null)
+					{
+						continue;
+					}
+				}
+				switch (parts[0])
+				{
+					case "size":
+						expectedSize = Long.parseLong(parts[1]);
+						break;
+					case "sha256":
+						expectedHash = parts[1];
+						break;
+					case "chunk":
+					{
+						try (var inputStream = new GZIPInputStream(new FileInputStream(getChunkFile(parts[1]))))
+						{
+							int length;
+							while ((length = inputStream.read(buffer)) > 0)
+							{
+								outputStream.write(buffer, 0, length);
+								fileDigest.update(buffer, 0, length);
+								size += length;
+							}
+						}
+						break;
+					}
+					default:
+						throw new Exception("ERROR: Invalid backup manifest line (" + line + ")");
+				}
+			}
+		}
+		if (outputStream == null)
+		{
+			throw new Exception("ERROR: Backup " + backupName + " is empty");
+		}
+		verifyFile(backupName, fileName, size, expectedSize, fileDigest, expectedHash);
+	}
+
+	// Streams the chunks of given backup point of a single file into given output stream and verifies the result:
+	public void restore(String backupName, OutputStream outputStream) throws Exception
+	{
+		restore(backupName, fileName ->
+		{
+			if (fileName != null)
+			{
+				throw new Exception("ERROR: Backup " + backupName + " holds several files, restore it into a directory");
+			}
+			return outputStream;
+		});
+	}
+
+	// Restores given backup point of a single file into given file, which only gets replaced if the restore succeeded:
+	public void restore(String backupName, File targetFile) throws Exception
+	{
+		final var tempFile = new File(targetFile.getPath() + ".tmp");
+		try (var outputStream = new FileOutputStream(tempFile))
+		{
+			restore(backupName, outputStream);
+		}
+		catch (Exception exception)
+		{
+			Files.deleteIfExists(tempFile.toPath());
+			throw exception;
+		}
+		moveAtomically(tempFile, targetFile);
+	}
+
+	// Restores given backup point of several files into given directory, where the files only get replaced in their backup order once all of them got restored:
+	public void restoreFiles(String backupName, File targetDirectory) throws Exception
+	{
+		if (targetDirectory.exists() == false && targetDirectory.mkdirs() == false)
+		{
+			throw new Exception("ERROR: Couldn't create restore directory (" + targetDirectory.getPath() + ")");
+		}
+		var tempFiles = new LinkedHashMap<File, File>();
+		var outputStreams = new LinkedList<OutputStream>();
+		try
+		{
+			try
+			{
+				restore(backupName, fileName ->
+				{
+					if (fileName == null)
+					{
+						throw new Exception("ERROR: Backup " + backupName + " holds a single file, restore it into a file");
+					}
+					final var targetFile = new File(targetDirectory, fileName);
+					final var tempFile = new File(targetFile.getPath() + ".tmp");
+					tempFiles.put(tempFile, targetFile);
+					var outputStream = new FileOutputStream(tempFile);
+					outputStreams.add(outputStream);
+					return outputStream;
+				});
+			}
+			finally
+			{
+				for (var outputStream : outputStreams)
+				{
+					outputStream.close();
+				}
+			}
+		}
+		catch (Exception exception)
+		{
+			for (var tempFile : tempFiles.keySet())
+			{
+				Files.deleteIfExists(tempFile.toPath());
+			}
+			throw exception;
+		}
+		for (var entry : tempFiles.entrySet())
+		{
+			moveAtomically(entry.getKey(), entry.getValue());
+		}
+	}
+
+	// Returns the raw content of given backup point:
+	public byte[] restore(String backupName) throws Exception
+	{
+		var outputStream = new ByteArrayOutputStream();
+		restore(backupName, outputStream);
+		return outputStream.toByteArray();
+	}
+
+}
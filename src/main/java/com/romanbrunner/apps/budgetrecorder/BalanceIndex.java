@@ -0,0 +1,254 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.util.LinkedHashSet;
+import java.util.TreeMap;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+
+/** Prefix sums of balance and entry count over epoch days for range totals. Plain entries cost logarithmic time per query, repeating entries one closed form count each and plain entries far from today, e.g. of a mistyped year, a lookup in an overflow bucket. */
+class BalanceIndex
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	private static final int INITIAL_CAPACITY = 1 << 12;  // Days
+	private static final int MAX_DISTANCE = 1 << 16;  // Days from today the prefix sums cover at most, about 179 years, so a mistyped year can not blow up their size
+
+	private static class DayTotals  // Struct type
+	{
+		public long balance = 0L;  // In cents
+		public int entries = 0;
+	}
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private int baseDay;  // Epoch day of the first slot
+	private int capacity = 0;
+	private long[] dayBalances;  // Balance in cents of the plain entries per day
+	private int[] dayEntries;  // Amount of plain entries per day
+	private long[] treeBalances;  // Fenwick tree (one based) over dayBalances
+	private int[] treeEntries;  // Fenwick tree (one based) over dayEntries
+	private final int today = Date.CURRENT_DATE.getEpochDay();
+	private final TreeMap<Integer, DayTotals> overflowDays = new TreeMap<Integer, DayTotals>();  // Plain entries beyond the maximal distance from today by epoch day
+	private final LinkedHashSet<DataEntry> repeatingEntries = new LinkedHashSet<DataEntry>();  // Accounted by recurrence math instead of expanded occurrences
+
+	private void rebuildTrees()
+	{
+		treeBalances = new long[capacity + 1];
+		treeEntries = new int[capacity + 1];
+		for (int i = 1; i <= capacity; i++)
+		{
+			treeBalances[i] += dayBalances[i - 1];
+			treeEntries[i] += dayEntries[i - 1];
+			final int parent = i + (i & -i);
+			if (parent <= capacity)
+			{
+				treeBalances[parent] += treeBalances[i];
+				treeEntries[parent] += treeEntries[i];
+			}
+		}
+	}
+
+	// Grows the covered day range until it includes given epoch day:
+	private void ensureCapacity(int epochDay)
+	{
+		if (capacity == 0)
+		{
+			capacity = INITIAL_CAPACITY;
+			baseDay = epochDay - capacity / 2;
+			dayBalances = new long[capacity];
+			dayEntries = new int[capacity];
+			rebuildTrees();
+			return;
+		}
+		if (epochDay >= baseDay && epochDay < baseDay + capacity)
+		{
+			return;
+		}
+		final int oldEndDay = baseDay + capacity;
+		int newCapacity = capacity;
+		while (newCapacity < Math.max(oldEndDay, epochDay + 1) - Math.min(baseDay, epochDay))
+		{
+			newCapacity *= 2;
+		}
+		final int newBaseDay = (epochDay < baseDay ? oldEndDay - newCapacity : baseDay);
+		var newDayBalances = new long[newCapacity];
+		var newDayEntries = new int[newCapacity];
+		System.arraycopy(dayBalances, 0, newDayBalances, baseDay - newBaseDay, capacity);
+		System.arraycopy(dayEntries, 0, newDayEntries, baseDay - newBaseDay, capacity);
+		baseDay = newBaseDay;
+		capacity = newCapacity;
+		dayBalances = newDayBalances;
+		dayEntries = newDayEntries;
+		rebuildTrees();
+	}
+
+	private boolean isCovered(int epochDay)
+	{
+		return Math.abs((long)epochDay - today) < MAX_DISTANCE;
+	}
+
+	private void updateOverflow(int epochDay, long balance, int entries)
+	{
+		var dayTotals = overflowDays.computeIfAbsent(epochDay, key -> new DayTotals());
+		dayTotals.balance += balance;
+		dayTotals.entries += entries;
+		if (dayTotals.balance == 0L && dayTotals.entries == 0)
+		{
+			overflowDays.remove(epochDay);
+		}
+	}
+
+	private void update(int epochDay, long balance, int entries)
+	{
+		if (isCovered(epochDay) == false)
+		{
+			updateOverflow(epochDay, balance, entries);
+			return;
+		}
+		ensureCapacity(epochDay);
+		dayBalances[epochDay - baseDay] += balance;
+		dayEntries[epochDay - baseDay] += entries;
+		for (int i = epochDay - baseDay + 1; i <= capacity; i += (i & -i))
+		{
+			treeBalances[i] += balance;
+			treeEntries[i] += entries;
+		}
+	}
+
+	// Returns the tree index for the prefix up to and including given epoch day:
+	private int getPrefixIndex(int epochDay)
+	{
+		if (capacity == 0 || epochDay < baseDay)
+		{
+			return 0;
+		}
+		return (int)Math.min((long)epochDay - baseDay + 1, capacity);
+	}
+
+	private long getPrefixBalance(int epochDay)
+	{
+		long balance = 0L;
+		for (int i = getPrefixIndex(epochDay); i > 0; i -= (i & -i))
+		{
+			balance += treeBalances[i];
+		}
+		return balance;
+	}
+
+	private int getPrefixEntries(int epochDay)
+	{
+		int entries = 0;
+		for (int i = getPrefixIndex(epochDay); i > 0; i -= (i & -i))
+		{
+			entries += treeEntries[i];
+		}
+		return entries;
+	}
+
+	public void add(DataEntry dataEntry)
+	{
+		if (dataEntry.getRepeat() == Interval.NEVER)
+		{
+			update(dataEntry.getDateDay(), dataEntry.getMoney(), 1);
+		}
+		else
+		{
+			repeatingEntries.add(dataEntry);
+		}
+	}
+
+	public void remove(DataEntry dataEntry)
+	{
+		if (repeatingEntries.remove(dataEntry) == false)
+		{
+			update(dataEntry.getDateDay(), -dataEntry.getMoney(), -1);
+		}
+	}
+
+	// Adds the summed balance in cents and amount of plain entries that are not loaded to given epoch day (negative values subtract them again):
+	public void addAggregate(int epochDay, long balance, int entries)
+	{
+		update(epochDay, balance, entries);
+	}
+
+	// Recreates the index from scratch for given data store:
+	public void rebuild(DataStore dataStore)
+	{
+		capacity = 0;
+		overflowDays.clear();
+		repeatingEntries.clear();
+		for (int row = 0; row < dataStore.size(); row++)
+		{
+			if (dataStore.getRepeat(row) == Interval.NEVER && isCovered(dataStore.getDate(row)) == false)
+			{
+				updateOverflow(dataStore.getDate(row), dataStore.getMoney(row), 1);
+			}
+			else if (dataStore.getRepeat(row) == Interval.NEVER)
+			{
+				final int epochDay = dataStore.getDate(row);
+				ensureCapacity(epochDay);
+				dayBalances[epochDay - baseDay] += dataStore.getMoney(row);
+				dayEntries[epochDay - baseDay] += 1;
+			}
+			else
+			{
+				repeatingEntries.add(dataStore.getDataEntry(row));
+			}
+		}
+		if (capacity > 0)
+		{
+			rebuildTrees();
+		}
+	}
+
+	// Returns the summed balance in cents of all occurrences between given epoch days:
+	public long getBalance(int startDay, int endDay)
+	{
+		if (endDay < startDay)
+		{
+			return 0L;
+		}
+		long balance = getPrefixBalance(endDay) - getPrefixBalance(startDay - 1);
+		for (var dayTotals : overflowDays.subMap(startDay, true, endDay, true).values())
+		{
+			balance += dayTotals.balance;
+		}
+		for (var dataEntry : repeatingEntries)
+		{
+			balance += dataEntry.getMoney() * dataEntry.countOccurrences(Math.max(startDay, dataEntry.getDateDay()), endDay);
+		}
+		return balance;
+	}
+
+	// Returns the amount of all occurrences between given epoch days:
+	public int getEntries(int startDay, int endDay)
+	{
+		if (endDay < startDay)
+		{
+			return 0;
+		}
+		int entries = getPrefixEntries(endDay) - getPrefixEntries(startDay - 1);
+		for (var dayTotals : overflowDays.subMap(startDay, true, endDay, true).values())
+		{
+			entries += dayTotals.entries;
+		}
+		for (var dataEntry : repeatingEntries)
+		{
+			entries += dataEntry.countOccurrences(Math.max(startDay, dataEntry.getDateDay()), endDay);
+		}
+		return entries;
+	}
+
+	// Returns the summed balance in cents of all occurrences up to and including given epoch day:
+	public long getRunningBalance(int epochDay)
+	{
+		return getBalance(Integer.MIN_VALUE + 1, epochDay);
+	}
+
+}
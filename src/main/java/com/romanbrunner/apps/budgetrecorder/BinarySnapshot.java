@@ -0,0 +1,248 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+
+/** Binary copy of the json database file for fast startup: header, types, string dictionary and fixed-width rows, followed by a CRC32 checksum. */
+final class BinarySnapshot
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	public static final String FILE_EXTENSION = ".bin";
+
+	private static final int MAGIC = 0x42524442;  // "BRDB"
+	private static final int FORMAT_VERSION = 2;  // 2: Rows start with their id
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4;  // Bytes
+	private static final int ROW_SIZE = 8 + 8 + 4 + 4 + 4 + 4 + 4 + 1 + 1 + 4;  // Bytes
+	private static final int CHECKSUM_SIZE = 8;  // Bytes
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private BinarySnapshot() {}
+
+	private static int getStringSize(String string)
+	{
+		return 4 + string.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	private static void putString(ByteBuffer buffer, String string)
+	{
+		final var bytes = string.getBytes(StandardCharsets.UTF_8);
+		buffer.putInt(bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static String getString(ByteBuffer buffer)
+	{
+		final var bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// Writes given data store as binary snapshot of given json database file, which has to be written already:
+	public static void write(File binaryFile, File jsonFile, DataStore dataStore, FsyncPolicy fsyncPolicy) throws Exception
+	{
+		final int size = dataStore.size();
+		final int stringCount = dataStore.getStringCount();
+		// Compute snapshot size:
+		long snapshotSize = HEADER_SIZE + (long)size * ROW_SIZE + CHECKSUM_SIZE;
+		for (int i = 0; i < DataEntry.TYPE_NAMES.length; i++)
+		{
+			snapshotSize += getStringSize(DataEntry.TYPE_NAMES[i]) + 4 + 1;
+			for (var subtypeName : DataEntry.SUBTYPE_NAMES[i])
+			{
+				snapshotSize += getStringSize(subtypeName);
+			}
+		}
+		for (int id = 0; id < stringCount; id++)
+		{
+			snapshotSize += getStringSize(dataStore.getString(id));
+		}
+		if (snapshotSize > Integer.MAX_VALUE)
+		{
+			throw new Exception("ERROR: Database is too large for a binary snapshot (" + snapshotSize + " bytes)");
+		}
+		var buffer = ByteBuffer.allocate((int)snapshotSize);
+		// Header:
+		buffer.putInt(MAGIC);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putLong(jsonFile.length());
+		buffer.putLong(jsonFile.lastModified());
+		buffer.putInt(DataEntry.TYPE_NAMES.length);
+		buffer.putInt(stringCount);
+		buffer.putInt(size);
+		// Types section:
+		for (int i = 0; i < DataEntry.TYPE_NAMES.length; i++)
+		{
+			putString(buffer, DataEntry.TYPE_NAMES[i]);
+			buffer.put((byte)(DataEntry.IS_POSITIVE_BALANCE_TYPE[i] ? 1 : 0));
+			buffer.putInt(DataEntry.SUBTYPE_NAMES[i].length);
+			for (var subtypeName : DataEntry.SUBTYPE_NAMES[i])
+			{
+				putString(buffer, subtypeName);
+			}
+		}
+		// String dictionary section:
+		for (int id = 0; id < stringCount; id++)
+		{
+			putString(buffer, dataStore.getString(id));
+		}
+		// Row section:
+		for (int row = 0; row < size; row++)
+		{
+			buffer.putLong(dataStore.getId(row));
+			buffer.putLong(dataStore.getMoney(row));
+			buffer.putInt(dataStore.getType(row));
+			buffer.putInt(dataStore.getSubtype(row));
+			buffer.putInt(dataStore.getNameId(row));
+			buffer.putInt(dataStore.getLocationId(row));
+			buffer.putInt(dataStore.getDate(row));
+			buffer.put((byte)dataStore.getRepeat(row).toInt());
+			buffer.put((byte)(dataStore.getDuration(row) ? 1 : 0));
+			buffer.putInt(dataStore.getUntil(row));
+		}
+		// Checksum:
+		var crc = new CRC32();
+		crc.update(buffer.array(), 0, buffer.position());
+		buffer.putLong(crc.getValue());
+		buffer.flip();
+
+		// Write to temporary file and replace the binary snapshot atomically:
+		final var tempFile = new File(binaryFile.getPath() + ".tmp");
+		try (var channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+			fsyncPolicy.sync(channel);
+		}
+		try
+		{
+			Files.move(tempFile.toPath(), binaryFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException exception)
+		{
+			Files.move(tempFile.toPath(), binaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	// Returns the data store of given binary snapshot and sets the type names, or null if the snapshot is missing, stale or corrupt:
+	public static DataStore read(File binaryFile, File jsonFile)
+	{
+		if (binaryFile.exists() == false)
+		{
+			return null;
+		}
+		try (var channel = FileChannel.open(binaryFile.toPath(), StandardOpenOption.READ))
+		{
+			final long fileSize = channel.size();
+			if (fileSize < HEADER_SIZE + CHECKSUM_SIZE || fileSize > Integer.MAX_VALUE)
+			{
+				throw new Exception("ERROR: Invalid binary snapshot size (" + fileSize + " bytes)");
+			}
+			// Read into the heap instead of mapping the file, as a mapping can't be released explicitly and would keep the file from being replaced on Windows:
+			final var buffer = ByteBuffer.allocate((int)fileSize);
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer) < 0)
+				{
+					throw new Exception("ERROR: Binary snapshot ended unexpectedly");
+				}
+			}
+			buffer.flip();
+			// Check header:
+			if (buffer.getInt() != MAGIC)
+			{
+				throw new Exception("ERROR: Binary snapshot has an invalid file signature");
+			}
+			final int formatVersion = buffer.getInt();
+			if (formatVersion != FORMAT_VERSION)
+			{
+				System.out.println("WARNING: Binary snapshot has an outdated format (" + formatVersion + " instead of " + FORMAT_VERSION + ")");
+				return null;
+			}
+			if (buffer.getLong() != jsonFile.length() || buffer.getLong() != jsonFile.lastModified())
+			{
+				return null;  // Stale, json database file was changed afterwards
+			}
+			// Validate checksum:
+			var crc = new CRC32();
+			crc.update(buffer.duplicate().position(0).limit((int)fileSize - CHECKSUM_SIZE));
+			if (buffer.getLong((int)fileSize - CHECKSUM_SIZE) != crc.getValue())
+			{
+				throw new Exception("ERROR: Binary snapshot has an invalid checksum");
+			}
+			final int typeCount = buffer.getInt();
+			final int stringCount = buffer.getInt();
+			final int size = buffer.getInt();
+			// Types section:
+			var typeNames = new String[typeCount];
+			var subtypeNames = new String[typeCount][];
+			var isPositiveBalanceTypes = new Boolean[typeCount];
+			for (int i = 0; i < typeCount; i++)
+			{
+				typeNames[i] = getString(buffer);
+				isPositiveBalanceTypes[i] = (buffer.get() != 0);
+				subtypeNames[i] = new String[buffer.getInt()];
+				for (int j = 0; j < subtypeNames[i].length; j++)
+				{
+					subtypeNames[i][j] = getString(buffer);
+				}
+			}
+			// String dictionary section:
+			var dataStore = new DataStore(size);
+			for (int id = 0; id < stringCount; id++)
+			{
+				if (dataStore.intern(getString(buffer)) != id)
+				{
+					throw new Exception("ERROR: Binary snapshot has a duplicate dictionary string");
+				}
+			}
+			// Row section:
+			for (int row = 0; row < size; row++)
+			{
+				final long id = buffer.getLong();
+				final long money = buffer.getLong();
+				final int type = buffer.getInt();
+				final int subtype = buffer.getInt();
+				final int nameId = buffer.getInt();
+				final int locationId = buffer.getInt();
+				final int date = buffer.getInt();
+				final var repeat = Interval.byIndex(buffer.get());
+				final boolean duration = (buffer.get() != 0);
+				final int until = buffer.getInt();
+				dataStore.appendRow(money, type, subtype, nameId, locationId, date, repeat, duration, until);
+				if (id != 0L)
+				{
+					dataStore.setId(row, id);
+				}
+			}
+			DataEntry.TYPE_NAMES = typeNames;
+			DataEntry.SUBTYPE_NAMES = subtypeNames;
+			DataEntry.IS_POSITIVE_BALANCE_TYPE = isPositiveBalanceTypes;
+			return dataStore;
+		}
+		catch (Exception exception)
+		{
+			System.out.println("WARNING: Couldn't use binary snapshot, falling back to the json database file (" + exception.getMessage() + ")");
+			return null;
+		}
+	}
+
+}
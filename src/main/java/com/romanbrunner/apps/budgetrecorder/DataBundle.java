@@ -2,6 +2,8 @@ package com.romanbrunner.apps.budgetrecorder;
 
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
@@ -12,6 +14,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
 
 
 @JsonSerialize(using = DataBundle.Serializer.class)
@@ -75,15 +78,15 @@ class DataBundle
 	// Functional code
 	// --------------------
 
-	private float balance;
+	private long balance;  // Cents
 	private int entries;
 	private Date start;
 	private Date end;
 
 	/**
-	 * @return the balance
+	 * @return the balance in cents
 	 */
-	public float getBalance()
+	public long getBalance()
     {
 		return balance;
 	}
@@ -134,7 +137,7 @@ class DataBundle
 
 				// Store data rows:
 				int i = 0;
-				jsonGenerator.writeNumberField(DataRowType.byIndex(i++).toString(), obj.balance);
+				jsonGenerator.writeNumberField(DataRowType.byIndex(i++).toString(), Money.toDecimal(obj.balance));
 				jsonGenerator.writeNumberField(DataRowType.byIndex(i++).toString(), obj.entries);
 				jsonGenerator.writeArrayFieldStart(DataRowType.byIndex(i++).toString());
 				for (int j = 0; j < Date.ARRAY_SIZE; j++)
@@ -197,7 +200,7 @@ class DataBundle
 
 				// Extract data row values:
 				int i = 0;
-				float balance = node.get(DataRowType.byIndex(i++).toString()).floatValue();
+				long balance = Money.toCents(node.get(DataRowType.byIndex(i++).toString()).decimalValue());
 				int entries = node.get(DataRowType.byIndex(i++).toString()).intValue();
 				int[] start = arrayNodeToIntArray(node.get(DataRowType.byIndex(i++).toString()), Date.ARRAY_SIZE);
 				int[] end = arrayNodeToIntArray(node.get(DataRowType.byIndex(i++).toString()), Date.ARRAY_SIZE);
@@ -256,7 +259,7 @@ class DataBundle
 				switch (sorting.row)
 				{
 					case BALANCE:
-						return Math.round((entryA.balance - entryB.balance) * 100F);
+						return Long.compare(entryA.balance, entryB.balance);
 					case ENTRIES:
 						return entryA.entries - entryB.entries;
 					case START:
@@ -275,7 +278,7 @@ class DataBundle
 		}
 	}
 
-	public DataBundle(float balance, int entries, Date start, Date end)
+	public DataBundle(long balance, int entries, Date start, Date end)
 	{
 		this.balance = balance;
 		this.entries = entries;
@@ -283,12 +286,95 @@ class DataBundle
 		this.end = end;
 	}
 
-	public void addEntry(float balance)
+	// Returns the consecutive bundles of given interval over all occurrences of the given store's data entries up to given epoch day in ascending order:
+	public static LinkedList<DataBundle> createDataBundles(DataStore dataStore, Interval interval, boolean showEmptyEntries, int endDay)
+	{
+		var dataBundles = new LinkedList<DataBundle>();
+		// Sort rows by date directly on the columns and prepare lazy occurrence iterators of repeating entries:
+		final int[] rows = dataStore.getSortedRows(new DataEntry.DataRowSorting(DataEntry.DataRowType.DATE, DataEntry.DataRowSorting.Mode.UPWARD));
+		var occurrences = new PriorityQueue<DataEntry.OccurrenceIterator>(Comparator.comparingInt(DataEntry.OccurrenceIterator::getDay));
+		for (var row : rows)
+		{
+			if (dataStore.getRepeat(row) != Interval.NEVER)
+			{
+				var occurrence = dataStore.getDataEntry(row).new OccurrenceIterator(endDay);
+				if (occurrence.hasOccurrence())
+				{
+					occurrences.add(occurrence);
+				}
+			}
+		}
+		// Merge plain rows and occurrences by date and accumulate them into consecutive bundles:
+		DataBundle dataBundle = null;
+		int bundleEndDay = Integer.MIN_VALUE;
+		int i = 0;
+		while (true)
+		{
+			// Skip rows of repeating entries, since they are covered by their occurrences:
+			while (i < rows.length && dataStore.getRepeat(rows[i]) != Interval.NEVER)
+			{
+				i++;
+			}
+			long money;
+			int day;
+			if (i < rows.length && (occurrences.isEmpty() || dataStore.getDate(rows[i]) <= occurrences.peek().getDay()))
+			{
+				money = dataStore.getMoney(rows[i]);
+				day = dataStore.getDate(rows[i]);
+				i++;
+			}
+			else if (occurrences.isEmpty() == false)
+			{
+				var occurrence = occurrences.poll();
+				money = occurrence.getDataEntry().getMoney();
+				day = occurrence.getDay();
+				if (occurrence.advance())
+				{
+					occurrences.add(occurrence);
+				}
+			}
+			else
+			{
+				break;
+			}
+			if (day > endDay)
+			{
+				continue;  // Skip plain entries after the end
+			}
+			if (dataBundle == null)
+			{
+				bundleEndDay = IntervalMath.getEnd(day, interval);
+				dataBundle = new DataBundle(0L, 0, Date.fromEpochDay(IntervalMath.getStart(day, interval)), Date.fromEpochDay(bundleEndDay));
+				dataBundles.add(dataBundle);
+			}
+			while (day > bundleEndDay)
+			{
+				if (showEmptyEntries == false && dataBundle.hasEntries() == false)
+				{
+					dataBundles.removeLast();
+				}
+				final int bundleStartDay = bundleEndDay + 1;
+				bundleEndDay = IntervalMath.getEnd(bundleStartDay, interval);
+				dataBundle = new DataBundle(0L, 0, Date.fromEpochDay(bundleStartDay), Date.fromEpochDay(bundleEndDay));
+				dataBundles.add(dataBundle);
+			}
+			dataBundle.addEntry(money);
+		}
+		return dataBundles;
+	}
+
+	public void addEntry(long balance)
 	{
 		this.balance += balance;
 		entries += 1;
 	}
 
+	public void addEntries(long balance, int entries)
+	{
+		this.balance += balance;
+		this.entries += entries;
+	}
+
 	public boolean hasEntries()
 	{
 		return (entries > 0);
@@ -299,7 +385,7 @@ class DataBundle
 		switch (dataRowType)
 		{
 			case BALANCE:
-				return Float.toString(balance);
+				return Money.toDecimal(balance).toPlainString();
 			case ENTRIES:
 				return Integer.toString(entries);
 			case START:
@@ -316,7 +402,7 @@ class DataBundle
 		switch (dataRowType)
 		{
 			case BALANCE:
-				return String.format("%.2f", balance) + " €";
+				return Money.toText(balance);
 			case ENTRIES:
 				return Integer.toString(entries);
 			case START:
@@ -2,13 +2,13 @@ package com.romanbrunner.apps.budgetrecorder;
 
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
@@ -25,7 +25,7 @@ class DataEntry
 	// Data code
 	// --------------------
 
-	public static final float DEFAULT_VALUE_MONEY = 0.F;
+	public static final long DEFAULT_VALUE_MONEY = 0L;  // Cents
 	public static final int DEFAULT_VALUE_TYPE = 0;
 	public static final int DEFAULT_VALUE_SUBTYPE = 0;
 	public static final String DEFAULT_VALUE_NAME = "";
@@ -40,6 +40,7 @@ class DataEntry
 	public static Boolean[] IS_POSITIVE_BALANCE_TYPE;  // Extracted of database.json in MainFrame.readDatabaseFile
 	public static final String DURATION_TEXT_ON = "Infinitely";
 	public static final String DURATION_TEXT_OFF = "Limited";
+	public static final String ID_FIELD_NAME = "Id";  // Stable identity, which is no data row as it is never shown or edited
 
 	public enum DataRowType
 	{
@@ -68,6 +69,19 @@ class DataEntry
 			this.index = index;
 		}
 
+		// Returns the data row type with given name or null if there is none:
+		public static DataRowType byName(String name)
+		{
+			for (var dataRowType : Data.values)
+			{
+				if (dataRowType.name.equals(name))
+				{
+					return dataRowType;
+				}
+			}
+			return null;
+		}
+
 		public static DataRowType byIndex(int index)
 		{
 			if (index < 0 || index >= Data.length)
@@ -94,22 +108,23 @@ class DataEntry
 	// Functional code
 	// --------------------
 
-	private float money;
-	private int type;
-	private int subtype;
-	private String name;
-	private String location;
-	private Date date;
-	private Interval repeat;
-	private boolean duration;
-	private Date until;
+	private DataStore store;
+	private int row;
+
+	/**
+	 * @return the stable id, 0 if the data entry was never added to the database
+	 */
+	public long getId()
+	{
+		return store.getId(row);
+	}
 
 	/**
-	 * @return the money
+	 * @return the money in cents
 	 */
-	public Float getMoney()
-    {
-        return money;
+	public long getMoney()
+	{
+		return store.getMoney(row);
 	}
 
 	/**
@@ -117,7 +132,7 @@ class DataEntry
 	 */
 	public int getType()
 	{
-		return type;
+		return store.getType(row);
 	}
 
 	/**
@@ -125,61 +140,96 @@ class DataEntry
 	 */
 	public int getSubtype()
 	{
-		return subtype;
+		return store.getSubtype(row);
 	}
 
 	/**
 	 * @return the name
 	 */
 	public String getName()
-    {
-        return name;
+	{
+		return store.getName(row);
 	}
 
 	/**
 	 * @return the location
 	 */
 	public String getLocation()
-    {
-        return location;
+	{
+		return store.getLocation(row);
 	}
 
 	/**
 	 * @return the date
 	 */
 	public Date getDate()
-    {
-        return date;
+	{
+		return Date.fromEpochDay(store.getDate(row));
+	}
+
+	/**
+	 * @return the date as epoch day
+	 */
+	public int getDateDay()
+	{
+		return store.getDate(row);
 	}
 
 	/**
 	 * @return the repeat
 	 */
 	public Interval getRepeat()
-    {
-        return repeat;
+	{
+		return store.getRepeat(row);
 	}
 
 	/**
 	 * @return the duration
 	 */
 	public boolean getDuration()
-    {
-        return duration;
+	{
+		return store.getDuration(row);
 	}
 
 	/**
 	 * @return the until
 	 */
 	public Date getUntil()
-    {
-        return until;
+	{
+		return Date.fromEpochDay(store.getUntil(row));
+	}
+
+	/**
+	 * @return the until as epoch day
+	 */
+	public int getUntilDay()
+	{
+		return store.getUntil(row);
+	}
+
+	/**
+	 * @return the store
+	 */
+	DataStore getStore()
+	{
+		return store;
+	}
+
+	/**
+	 * @return the row
+	 */
+	int getRow()
+	{
+		return row;
 	}
 
 	public static class Serializer extends StdSerializer<DataEntry>
 	{
 		private static final long serialVersionUID = 1L;
 
+		private static final SerializedString[] FIELD_NAMES = createFieldNames();  // Pre-encoded by data row index
+		private static final SerializedString ID_FIELD = new SerializedString(ID_FIELD_NAME);
+
 		public Serializer(Class<DataEntry> t)
 		{
 			super(t);
@@ -189,41 +239,81 @@ class DataEntry
 			this(null);
 		}
 
-		@Override
-		public void serialize(DataEntry obj, JsonGenerator jsonGenerator, SerializerProvider serializer)
+		private static SerializedString[] createFieldNames()
 		{
-			try
+			var fieldNames = new SerializedString[DataRowType.values().length];
+			for (var dataRowType : DataRowType.values())
 			{
-				jsonGenerator.writeStartObject();
-
-				// Store data rows:
-				int i = 0;
-				jsonGenerator.writeNumberField(DataRowType.byIndex(i++).toString(), obj.money);
-				jsonGenerator.writeNumberField(DataRowType.byIndex(i++).toString(), obj.type);
-				jsonGenerator.writeNumberField(DataRowType.byIndex(i++).toString(), obj.subtype);
-				jsonGenerator.writeStringField(DataRowType.byIndex(i++).toString(), obj.name);
-				jsonGenerator.writeStringField(DataRowType.byIndex(i++).toString(), obj.location);
-				jsonGenerator.writeArrayFieldStart(DataRowType.byIndex(i++).toString());
-				for (int j = 0; j < Date.ARRAY_SIZE; j++)
-				{
-					jsonGenerator.writeNumber(obj.date.getValue(j));
-				}
+				fieldNames[dataRowType.toInt()] = new SerializedString(dataRowType.toString());
+			}
+			return fieldNames;
+		}
+
+		private static void writeDateField(JsonGenerator jsonGenerator, DataRowType dataRowType, int epochDay, boolean compact) throws Exception
+		{
+			jsonGenerator.writeFieldName(FIELD_NAMES[dataRowType.toInt()]);
+			final int packedCivil = Date.toPackedCivil(epochDay);
+			if (compact)
+			{
+				jsonGenerator.writeNumber(packedCivil);
+			}
+			else
+			{
+				jsonGenerator.writeStartArray();
+				jsonGenerator.writeNumber(Date.packedDay(packedCivil));
+				jsonGenerator.writeNumber(Date.packedMonth(packedCivil));
+				jsonGenerator.writeNumber(Date.packedYear(packedCivil));
 				jsonGenerator.writeEndArray();
-				jsonGenerator.writeNumberField(DataRowType.byIndex(i++).toString(), obj.repeat.toInt());
-				if (obj.repeat != Interval.NEVER)
+			}
+		}
+
+		// Writes given row of given store as data entry object. Dates are numbers packed as yyyymmdd in compact mode and [day, month, year] arrays otherwise:
+		public static void writeRow(JsonGenerator jsonGenerator, DataStore dataStore, int row, boolean compact) throws Exception
+		{
+			jsonGenerator.writeStartObject();
+
+			// Store id if assigned:
+			final long id = dataStore.getId(row);
+			if (id != 0L)
+			{
+				jsonGenerator.writeFieldName(ID_FIELD);
+				jsonGenerator.writeNumber(id);
+			}
+
+			// Store data rows:
+			jsonGenerator.writeFieldName(FIELD_NAMES[DataRowType.MONEY.toInt()]);
+			jsonGenerator.writeNumber(Money.toDecimal(dataStore.getMoney(row)));
+			jsonGenerator.writeFieldName(FIELD_NAMES[DataRowType.TYPE.toInt()]);
+			jsonGenerator.writeNumber(dataStore.getType(row));
+			jsonGenerator.writeFieldName(FIELD_NAMES[DataRowType.SUBTYPE.toInt()]);
+			jsonGenerator.writeNumber(dataStore.getSubtype(row));
+			jsonGenerator.writeFieldName(FIELD_NAMES[DataRowType.NAME.toInt()]);
+			jsonGenerator.writeString(dataStore.getName(row));
+			jsonGenerator.writeFieldName(FIELD_NAMES[DataRowType.LOCATION.toInt()]);
+			jsonGenerator.writeString(dataStore.getLocation(row));
+			writeDateField(jsonGenerator, DataRowType.DATE, dataStore.getDate(row), compact);
+			final var repeat = dataStore.getRepeat(row);
+			jsonGenerator.writeFieldName(FIELD_NAMES[DataRowType.REPEAT.toInt()]);
+			jsonGenerator.writeNumber(repeat.toInt());
+			if (repeat != Interval.NEVER)
+			{
+				final boolean duration = dataStore.getDuration(row);
+				jsonGenerator.writeFieldName(FIELD_NAMES[DataRowType.DURATION.toInt()]);
+				jsonGenerator.writeBoolean(duration);
+				if (duration != true)  // true = "Infinitely"
 				{
-					jsonGenerator.writeBooleanField(DataRowType.byIndex(i++).toString(), obj.duration);
-					if (obj.duration != true)  // true = "Infinitely"
-					{
-						jsonGenerator.writeArrayFieldStart(DataRowType.byIndex(i++).toString());
-						for (int j = 0; j < Date.ARRAY_SIZE; j++)
-						{
-							jsonGenerator.writeNumber(obj.until.getValue(j));
-						}
-						jsonGenerator.writeEndArray();
-					}
+					writeDateField(jsonGenerator, DataRowType.UNTIL, dataStore.getUntil(row), compact);
 				}
-				jsonGenerator.writeEndObject();
+			}
+			jsonGenerator.writeEndObject();
+		}
+
+		@Override
+		public void serialize(DataEntry obj, JsonGenerator jsonGenerator, SerializerProvider serializer)
+		{
+			try
+			{
+				writeRow(jsonGenerator, obj.getStore(), obj.getRow(), true);
 			}
 			catch (Exception exception)
 			{
@@ -245,14 +335,22 @@ class DataEntry
 			this(null);
 		}
 
-		private int[] arrayNodeToIntArray(JsonNode node, int arraySize) throws Exception
+		// Returns the int array at the current array start token of given parser:
+		private static int[] readIntArray(JsonParser parser, int arraySize) throws Exception
 		{
-			var iterator = node.elements();
+			if (parser.currentToken() != JsonToken.START_ARRAY)
+			{
+				throw new Exception("ERROR: Expected json array instead of " + parser.currentToken());
+			}
 			var intArray = new int[arraySize];
 			int i = 0;
-			while (iterator.hasNext())
+			while (parser.nextToken() != JsonToken.END_ARRAY)
 			{
-				intArray[i++] = iterator.next().intValue();
+				if (i < arraySize)
+				{
+					intArray[i] = parser.getValueAsInt();
+				}
+				i++;
 			}
 
 			if (i != arraySize)
@@ -263,39 +361,107 @@ class DataEntry
 			return intArray;
 		}
 
-		@Override
-		public DataEntry deserialize(JsonParser parser, DeserializationContext deserializer)
+		// Reads a date given either as number packed as yyyymmdd or as [day, month, year] array:
+		private static int[] readDateValues(JsonParser parser) throws Exception
 		{
-			try
+			if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT)
+			{
+				final int packedCivil = parser.getIntValue();
+				return new int[] { Date.packedDay(packedCivil), Date.packedMonth(packedCivil), Date.packedYear(packedCivil) };
+			}
+			return readIntArray(parser, Date.ARRAY_SIZE);
+		}
+
+		// Reads the data entry object at the current object start token of given parser directly into a new row of given store and returns that row:
+		public static int readRow(JsonParser parser, DataStore dataStore) throws Exception
+		{
+			if (parser.currentToken() != JsonToken.START_OBJECT)
 			{
-				final var codec = parser.getCodec();
-				final JsonNode node = codec.readTree(parser);
-
-				// Extract data row values:
-				int i = 0;
-				JsonNode iNode;
-				float money = node.get(DataRowType.byIndex(i++).toString()).floatValue();
-				int type = node.get(DataRowType.byIndex(i++).toString()).intValue();
-				int subtype = node.get(DataRowType.byIndex(i++).toString()).intValue();
-				String name = node.get(DataRowType.byIndex(i++).toString()).textValue();
-				String location = node.get(DataRowType.byIndex(i++).toString()).textValue();
-				int[] date = arrayNodeToIntArray(node.get(DataRowType.byIndex(i++).toString()), Date.ARRAY_SIZE);
-				int repeat = node.get(DataRowType.byIndex(i++).toString()).intValue();
-				boolean duration = DEFAULT_VALUE_DURATION;
-				iNode = node.get(DataRowType.byIndex(i++).toString());
-				if (iNode != null)
+				throw new Exception("ERROR: Expected json object instead of " + parser.currentToken());
+			}
+
+			// Extract id and data row values token by token:
+			long id = 0L;
+			long money = DEFAULT_VALUE_MONEY;
+			int type = DEFAULT_VALUE_TYPE;
+			int subtype = DEFAULT_VALUE_SUBTYPE;
+			String name = DEFAULT_VALUE_NAME;
+			String location = DEFAULT_VALUE_LOCATION;
+			int[] date = null;
+			int repeat = DEFAULT_VALUE_REPEAT.toInt();
+			boolean duration = DEFAULT_VALUE_DURATION;
+			int[] until = null;
+			int foundDataRows = 0;  // Bit mask by data row index
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				final var fieldName = parser.getCurrentName();
+				final var dataRowType = DataRowType.byName(fieldName);
+				parser.nextToken();
+				if (fieldName.equals(ID_FIELD_NAME))
 				{
-					duration = iNode.booleanValue();
+					id = parser.getLongValue();
+					continue;
 				}
-				int[] until = DEFAULT_VALUE_UNTIL.getValues();
-				iNode = node.get(DataRowType.byIndex(i++).toString());
-				if (iNode != null)
+				if (dataRowType == null)
 				{
-					until = arrayNodeToIntArray(iNode, Date.ARRAY_SIZE);
+					parser.skipChildren();  // Ignore unknown fields
+					continue;
 				}
+				foundDataRows |= 1 << dataRowType.toInt();
+				switch (dataRowType)
+				{
+					case MONEY:
+						money = Money.toCents(parser.getDecimalValue());
+						break;
+					case TYPE:
+						type = parser.getValueAsInt();
+						break;
+					case SUBTYPE:
+						subtype = parser.getValueAsInt();
+						break;
+					case NAME:
+						name = parser.getValueAsString();
+						break;
+					case LOCATION:
+						location = parser.getValueAsString();
+						break;
+					case DATE:
+						date = readDateValues(parser);
+						break;
+					case REPEAT:
+						repeat = parser.getValueAsInt();
+						break;
+					case DURATION:
+						duration = parser.getValueAsBoolean();
+						break;
+					case UNTIL:
+						until = readDateValues(parser);
+						break;
+				}
+			}
+			final int requiredDataRows = (1 << DataRowType.DURATION.toInt()) - 1;  // Duration and until are optional
+			if ((foundDataRows & requiredDataRows) != requiredDataRows)
+			{
+				throw new Exception("ERROR: Couldn't find a required json node");
+			}
 
-				// Convert extracted values into new data entry:
-				return new DataEntry(money, type, subtype, name, location, new Date(date), Interval.byIndex(repeat), duration, new Date(until));
+			// Append extracted values as new row:
+			final int row = dataStore.appendRow(money, type, subtype, name, location, new Date(date).getEpochDay(), Interval.byIndex(repeat), duration, (until == null ? DEFAULT_VALUE_UNTIL : new Date(until)).getEpochDay());
+			if (id != 0L)
+			{
+				dataStore.setId(row, id);
+			}
+			return row;
+		}
+
+		@Override
+		public DataEntry deserialize(JsonParser parser, DeserializationContext deserializer)
+		{
+			try
+			{
+				// Create detached entry with a store of its own:
+				final var dataStore = new DataStore(1);
+				return dataStore.getDataEntry(readRow(parser, dataStore));
 			}
 			catch (Exception exception)
 			{
@@ -348,25 +514,25 @@ class DataEntry
 				switch (sorting.row)
 				{
 					case MONEY:
-						return Math.round((entryA.money - entryB.money) * 100F);
+						return Long.compare(entryA.getMoney(), entryB.getMoney());
 					case TYPE:
-						return entryA.type - entryB.type;
+						return entryA.getType() - entryB.getType();
 					case SUBTYPE:
-						return entryA.subtype - entryB.subtype;
+						return entryA.getSubtype() - entryB.getSubtype();
 					case NAME:
-						return entryA.name.compareTo(entryB.name);
+						return entryA.getName().compareTo(entryB.getName());
 					case LOCATION:
-						return entryA.location.compareTo(entryB.location);
+						return entryA.getLocation().compareTo(entryB.getLocation());
 					case DATE:
-						return entryA.date.compareTo(entryB.date);
+						return Integer.compare(entryA.getDateDay(), entryB.getDateDay());
 					case REPEAT:
-						return entryA.repeat.compareTo(entryB.repeat);
+						return entryA.getRepeat().compareTo(entryB.getRepeat());
 					case DURATION:
-						if (entryA.duration == entryB.duration)
+						if (entryA.getDuration() == entryB.getDuration())
 						{
 							return 0;
 						}
-						else if (entryA.duration == true)
+						else if (entryA.getDuration() == true)
 						{
 							return 1;
 						}
@@ -375,7 +541,7 @@ class DataEntry
 							return -1;
 						}
 					case UNTIL:
-						return entryA.until.compareTo(entryB.until);
+						return Integer.compare(entryA.getUntilDay(), entryB.getUntilDay());
 					default:
 						return entryA.getDataRowValueAsString(sorting.row).compareTo(entryB.getDataRowValueAsString(sorting.row));
 				}
@@ -388,94 +554,148 @@ class DataEntry
 		}
 	}
 
-	public DataEntry(float money, int type, int subtype, String name, String location, Date date, Interval repeat, boolean duration, Date until)
+	/** Lazy iterator over the occurrence dates of a data entry in ascending order. */
+	public class OccurrenceIterator
 	{
-		this.money = money;
-		this.type = type;
-		this.subtype = subtype;
-		this.name = name;
-		this.location = location;
-		this.date = date;
-		this.repeat = repeat;
-		this.duration = duration;
-		this.until = until;
-	}
-	public DataEntry(DataEntry origin, Date date, boolean noRepeat)
-	{
-		this(origin.money, origin.type, origin.subtype, origin.name, origin.location, date, origin.repeat, origin.duration, origin.until);
-		if (noRepeat)
+		private final int originDay;
+		private final Interval repeat;
+		private final int lastIndex;
+		private int index;
+		private int day;
+
+		public OccurrenceIterator(int startDay, int endDay)
+		{
+			originDay = getDateDay();
+			repeat = getRepeat();
+			lastIndex = getLastOccurrenceIndex(endDay);
+			index = (startDay <= originDay ? 0 : IntervalMath.getOccurrenceIndex(originDay, startDay - 1, repeat) + 1);
+			day = IntervalMath.getOccurrence(originDay, index, repeat);
+		}
+		public OccurrenceIterator(int endDay)
+		{
+			this(Integer.MIN_VALUE, endDay);
+		}
+
+		public DataEntry getDataEntry()
 		{
-			repeat = Interval.NEVER;
-			duration = DEFAULT_VALUE_DURATION;
-			until = DEFAULT_VALUE_UNTIL;
+			return DataEntry.this;
+		}
+
+		public boolean hasOccurrence()
+		{
+			return (index <= lastIndex);
+		}
+
+		public int getDay()
+		{
+			return day;
+		}
+
+		public boolean advance()
+		{
+			index++;
+			day = IntervalMath.getOccurrence(originDay, index, repeat);
+			return hasOccurrence();
 		}
 	}
 
-	public DataBundle createNewDataBundle(Interval interval) throws Exception
+	public DataEntry(long money, int type, int subtype, String name, String location, Date date, Interval repeat, boolean duration, Date until)
+	{
+		// Create detached entry with a store of its own:
+		store = new DataStore(1);
+		row = store.appendRow(money, type, subtype, name, location, date.getEpochDay(), repeat, duration, until.getEpochDay());
+	}
+	DataEntry(DataStore store, int row)
 	{
-		var start = Interval.getIntervalStart(date, interval);
-		return new DataBundle(money, 1, start, Interval.getIntervalEnd(start, interval));
+		this.store = store;
+		this.row = row;
 	}
 
-	public DataBundle createNextDataBundle(DataBundle lastDataBundle, Interval interval) throws Exception
+	// Turns this entry into a view on given row of given store:
+	void bind(DataStore store, int row)
 	{
-		var start = lastDataBundle.getEnd().getNextDay();
-		return new DataBundle(0f, 0, start, Interval.getIntervalEnd(start, interval));
+		this.store = store;
+		this.row = row;
 	}
 
-	public boolean tryAddToDataBundle(DataBundle dataBundle) throws Exception
+	// Returns the index of the last occurrence at or before given epoch day regarding repeat and duration (-1 if there is none):
+	private int getLastOccurrenceIndex(int epochDay)
 	{
-		if (date.isInTimeframe(dataBundle.getStart(), dataBundle.getEnd()))
+		final int originDay = getDateDay();
+		if (epochDay < originDay)
 		{
-			dataBundle.addEntry(money);
-			return true;
+			return -1;
 		}
-		else
+		final var repeat = getRepeat();
+		if (repeat != Interval.NEVER && getDuration() == false && getUntilDay() < epochDay)
 		{
-			return false;
+			epochDay = Math.max(getUntilDay(), originDay);
 		}
+		return IntervalMath.getOccurrenceIndex(originDay, epochDay, repeat);
 	}
 
-	public boolean isRepeatedIntoTimeframe(Date start, Date end) throws Exception
+	// Returns the epoch day of the last occurrence regarding repeat and duration (Integer.MAX_VALUE if infinitely repeated):
+	public int getLastDay()
 	{
-		if (repeat != Interval.NEVER)
+		final var repeat = getRepeat();
+		if (repeat == Interval.NEVER)
 		{
-			Date currentDate = Interval.getIntervalNextDate(date, repeat);  // Skip entry itself
-			// Regard duration:
-			if (duration == false && until.compareTo(end) < 0)
-			{
-				end = until;
-			}
-			// Check for repeating entries in timeframe:
-			while (currentDate.compareTo(end) <= 0)
-			{
-				if (currentDate.compareTo(start) >= 0)
-				{
-					return true;
-				}
-				currentDate = Interval.getIntervalNextDate(currentDate, repeat);
-			}
+			return getDateDay();
+		}
+		else if (getDuration() == false)
+		{
+			return Math.max(getUntilDay(), getDateDay());
 		}
-		return false;
+		return Integer.MAX_VALUE;
 	}
 
-	public void unpackToList(LinkedList<DataEntry> list, Date end) throws Exception
+	// Returns the epoch day of the first occurrence of this entry at or after given epoch day (Integer.MAX_VALUE if there is none):
+	public int getFirstOccurrenceDay(int fromDay)
 	{
-		if (repeat != Interval.NEVER)
+		final int originDay = getDateDay();
+		if (fromDay <= originDay)
 		{
-			Date currentDate = Interval.getIntervalNextDate(date, repeat);  // Don't add entry itself again
-			// Regard duration:
-			if (duration == false && until.compareTo(end) < 0)
-			{
-				end = until;
-			}
-			// Create and add repeating entries in timeframe:
-			while (currentDate.compareTo(end) <= 0)
-			{
-				list.add(new DataEntry(this, currentDate, true));
-				currentDate = Interval.getIntervalNextDate(currentDate, repeat);
-			}
+			return originDay;
+		}
+		final var repeat = getRepeat();
+		if (repeat == Interval.NEVER)
+		{
+			return Integer.MAX_VALUE;
 		}
+		final int occurrenceDay = IntervalMath.getOccurrence(originDay, IntervalMath.getOccurrenceIndex(originDay, fromDay - 1, repeat) + 1, repeat);
+		return (occurrenceDay > getLastDay() ? Integer.MAX_VALUE : occurrenceDay);
+	}
+
+	// Returns the first occurrence of this entry at or after given date or null if there is none:
+	public Date getFirstOccurrence(Date from)
+	{
+		final int occurrenceDay = getFirstOccurrenceDay(from.getEpochDay());
+		return (occurrenceDay == Integer.MAX_VALUE ? null : Date.fromEpochDay(occurrenceDay));
+	}
+
+	// Returns the amount of occurrences of this entry (including the entry itself) in the timeframe between given epoch days:
+	public int countOccurrences(int startDay, int endDay)
+	{
+		if (endDay < startDay)
+		{
+			return 0;
+		}
+		return getLastOccurrenceIndex(endDay) - getLastOccurrenceIndex(startDay - 1);
+	}
+	public int countOccurrences(Date start, Date end)
+	{
+		return countOccurrences(start.getEpochDay(), end.getEpochDay());
+	}
+
+	// Returns the summed money in cents of all occurrences of this entry in the timeframe between given dates:
+	public long getMoneyInTimeframe(Date start, Date end)
+	{
+		return getMoney() * countOccurrences(start, end);
+	}
+
+	public boolean isRepeatedIntoTimeframe(Date start, Date end)
+	{
+		return (getRepeat() != Interval.NEVER && getLastOccurrenceIndex(end.getEpochDay()) > Math.max(getLastOccurrenceIndex(start.getEpochDay() - 1), 0));  // Skip entry itself
 	}
 
 	public void setValue(DataRowType dataRowType, Object value) throws Exception
@@ -483,31 +703,31 @@ class DataEntry
 		switch (dataRowType)
 		{
 			case MONEY:
-				money = (float)value;
+				store.setMoney(row, (long)value);
 				break;
 			case TYPE:
-				type = (int)value;
+				store.setType(row, (int)value);
 				break;
 			case SUBTYPE:
-				subtype = (int)value;
+				store.setSubtype(row, (int)value);
 				break;
 			case NAME:
-				name = (String)value;
+				store.setName(row, (String)value);
 				break;
 			case LOCATION:
-				location = (String)value;
+				store.setLocation(row, (String)value);
 				break;
 			case DATE:
-				date = new Date(Stream.of(((String)value).split("[.]")).mapToInt(Integer::parseInt).toArray());
+				store.setDate(row, new Date(Stream.of(((String)value).split("[.]")).mapToInt(Integer::parseInt).toArray()).getEpochDay());
 				break;
 			case REPEAT:
-				repeat = Interval.byIndex((int)value);
+				store.setRepeat(row, Interval.byIndex((int)value));
 				break;
 			case DURATION:
-				duration = (boolean)value;
+				store.setDuration(row, (boolean)value);
 				break;
 			case UNTIL:
-				until = new Date(Stream.of(((String)value).split("[.]")).mapToInt(Integer::parseInt).toArray());
+				store.setUntil(row, new Date(Stream.of(((String)value).split("[.]")).mapToInt(Integer::parseInt).toArray()).getEpochDay());
 				break;
 			default:
 				throw new Exception("ERROR: Invalid data row type (" + dataRowType.toString() + ")");
@@ -519,23 +739,23 @@ class DataEntry
 		switch (dataRowType)
 		{
 			case MONEY:
-				return Float.toString(money);
+				return Money.toDecimal(getMoney()).toPlainString();
 			case TYPE:
-				return Integer.toString(type);
+				return Integer.toString(getType());
 			case SUBTYPE:
-				return Integer.toString(subtype);
+				return Integer.toString(getSubtype());
 			case NAME:
-				return name;
+				return getName();
 			case LOCATION:
-				return location;
+				return getLocation();
 			case DATE:
-				return date.toString();
+				return getDate().toString();
 			case REPEAT:
-				return repeat.toString();
+				return getRepeat().toString();
 			case DURATION:
-				return Boolean.toString(duration);
+				return Boolean.toString(getDuration());
 			case UNTIL:
-				return until.toString();
+				return getUntil().toString();
 			default:
 				throw new Exception("ERROR: Invalid data row type (" + dataRowType.toString() + ")");
 		}
@@ -546,32 +766,32 @@ class DataEntry
 		switch (dataRowType)
 		{
 			case MONEY:
-				return String.format("%.2f", money) + " €";
+				return Money.toText(getMoney());
 			case TYPE:
-				return TYPE_NAMES[type];
+				return TYPE_NAMES[getType()];
 			case SUBTYPE:
-				return SUBTYPE_NAMES[type][subtype];
+				return SUBTYPE_NAMES[getType()][getSubtype()];
 			case NAME:
-				return name;
+				return getName();
 			case LOCATION:
-				return location;
+				return getLocation();
 			case DATE:
 			{
-				return date.getAsText();
+				return getDate().getAsText();
 			}
 			case REPEAT:
 			{
-				return repeat.toString();
+				return getRepeat().toString();
 			}
 			case DURATION:
 			{
-				if (repeat == Interval.NEVER)
+				if (getRepeat() == Interval.NEVER)
 				{
 					return "-";
 				}
 				else
 				{
-					if (duration)
+					if (getDuration())
 					{
 						return DURATION_TEXT_ON;
 					}
@@ -583,13 +803,13 @@ class DataEntry
 			}
 			case UNTIL:
 			{
-				if (repeat == Interval.NEVER || duration)  // true = "Infinitely"
+				if (getRepeat() == Interval.NEVER || getDuration())  // true = "Infinitely"
 				{
 					return "-";
 				}
 				else
 				{
-					return until.getAsText();
+					return getUntil().getAsText();
 				}
 			}
 			default:
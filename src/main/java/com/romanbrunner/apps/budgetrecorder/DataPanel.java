@@ -22,6 +22,7 @@ import javax.swing.JCheckBox;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
+import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
@@ -32,8 +33,10 @@ import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import javax.swing.JSpinner;
+import javax.swing.JTextField;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.Border;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
@@ -41,6 +44,8 @@ import javax.swing.border.EtchedBorder;
 import javax.swing.border.LineBorder;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import com.romanbrunner.apps.budgetrecorder.Date.Interval;
 
@@ -62,6 +67,8 @@ class DataPanel extends JPanel
 	private static final int BORDER_OUTER_PADDING_SIZE = 1;
 	private static final String HEADER_TEXT = "<NAME>:";
 	private static final String HEADER_TOOLTIP = "Shows the values for <NAME> in the fields below.";
+	private static final String RUNNING_BALANCE_TEXT = "Running balance";
+	private static final String RUNNING_BALANCE_TOOLTIP = "Shows the total balance of all entries up to the date of the row.";
 	private static final String REMOVE_BUTTON_TEXT = "[x]";
 	private static final String REMOVE_BUTTON_TOOLTIP = "Remove data entry.";
 	private static final String REMOVE_CONFIRMATION_TEXT = "Delete data entry?";
@@ -71,6 +78,11 @@ class DataPanel extends JPanel
 	private static final Interval DEFAULT_VIEW = Interval.NEVER;
 	private static final int VERTICAL_SCROLL_SPEED = 12;
 	private static final int VERTICAL_SCROLL_SPEED_MULTIPLIER = 3;
+	private static final String FILTER_TEXT = "Filter: ";
+	private static final String FILTER_TOOLTIP = "Shows only entries whose name or location contains the entered text, tolerating typing errors.";
+	private static final String EXCERPT_TOTALS_TEXT = "Balance: <BALANCE> of <ENTRIES> entries";
+	private static final String EXCERPT_TOTALS_TOOLTIP = "Shows the total balance and amount of all occurrences within the timeframe of this excerpt.";
+	private static final int FILTER_DELAY = 200;  // Milliseconds after the last typed character until the entries get filtered
 
 	private static final int[] SETTINGS_VIEW_MNEMONICS = { KeyEvent.VK_C, KeyEvent.VK_D, KeyEvent.VK_W, KeyEvent.VK_M, KeyEvent.VK_Y };
 	private static final String SETTINGS_MENU_TEXT = "Settings";
@@ -84,6 +96,9 @@ class DataPanel extends JPanel
 	private static final int ENTRIES_LIMITER_MAJOR_SPACING = 100;
 	private static final int ENTRIES_LIMITER_FONT_SIZE = 10;
 	private static final String ENTRIES_LIMITER_TEXT = "Displayed entries limit: <LIMIT>";
+	private static final String EXPORT_ITEM_TEXT = "Export database...";
+	private static final String EXPORT_DIALOG_TITLE = "Export pretty-printed database";
+	private static final String EXPORT_ERROR_TITLE = "Export failed";
 	private static final String VERSION_SUBMENU_TEXT = "Software Version";
 	private static final int VERSION_PADDING_SIZE = 5;
 	private static final String VERSION_TEXT_MAJOR = "Major: <VERSION>";
@@ -106,6 +121,8 @@ class DataPanel extends JPanel
 	private JScrollPane scroller;
 	private DataFieldButtonAL activeDataField = null;
 	private DataBundle excerptDataBundle = null;
+	private JTextField filterField = new JTextField();
+	private Timer filterTimer = new Timer(FILTER_DELAY, new FilterTimerAL());
 	private DualHashBidiMap<JComponent, JComponent> biMapTypeCompToSubtypeComp = new DualHashBidiMap<JComponent, JComponent>();
 	private DualHashBidiMap<JComponent, JComponent> biMapDateCompToUntilComp = new DualHashBidiMap<JComponent, JComponent>();
 	private DualHashBidiMap<JComponent, JComponent> biMapRepeatCompToDurationComp = new DualHashBidiMap<JComponent, JComponent>();
@@ -242,10 +259,10 @@ class DataPanel extends JPanel
 						dataField = new InputPanel.ComboBoxDataField(null, DataEntry.SUBTYPE_NAMES[dataEntry.getType()], dataEntry.getSubtype());
 						break;
 					case NAME:
-						dataField = new InputPanel.TextDataField(null, MainFrame.getDataRowValuesAsStrings(dataRowType), dataEntry.getType(), dataEntry.getSubtype(), dataEntry.getName());
+						dataField = new InputPanel.TextDataField(null, MainFrame.getKeywordIndex(dataRowType), dataEntry.getType(), dataEntry.getSubtype(), dataEntry.getName());
 						break;
 					case LOCATION:
-						dataField = new InputPanel.TextDataField(null, MainFrame.getDataRowValuesAsStrings(dataRowType), dataEntry.getType(), dataEntry.getSubtype(), dataEntry.getLocation());
+						dataField = new InputPanel.TextDataField(null, MainFrame.getKeywordIndex(dataRowType), dataEntry.getType(), dataEntry.getSubtype(), dataEntry.getLocation());
 						break;
 					case DATE:
 						dataField = new InputPanel.DateDataField(null, null, null, dataEntry.getDate(), new DataFieldModificationCL(dataEntry, dataRowType));
@@ -287,9 +304,9 @@ class DataPanel extends JPanel
 					// Adjust global variables:
 					adjustComponentMap(dataRowType, button, component);
 					activeDataField = this;
-					// Refresh panel:
-					revalidate();
-					repaint();
+					// Refresh only the grid holding the swapped component:
+					dataPanel.revalidate();
+					dataPanel.repaint();
 				}
 			}
 			catch (Exception exception)
@@ -321,8 +338,6 @@ class DataPanel extends JPanel
 				{
 					// Remove data entry:
 					MainFrame.removeDataEntry(dataEntry);
-					// Write database to json:
-					MainFrame.writeDatabaseFile();
 					// Refresh panel:
 					refreshPanel();
 					// Refresh main data frame with bundled view if existent:
@@ -418,8 +433,8 @@ class DataPanel extends JPanel
 					if (dataRowType == DataEntry.DataRowType.TYPE)
 					{
 						// Adjust data entry values:
-						dataEntry.setValue(DataEntry.DataRowType.TYPE, newValueObject);
-						dataEntry.setValue(DataEntry.DataRowType.SUBTYPE, (Object)DataEntry.DEFAULT_VALUE_SUBTYPE);
+						MainFrame.setDataEntryValue(dataEntry, DataEntry.DataRowType.TYPE, newValueObject);
+						MainFrame.setDataEntryValue(dataEntry, DataEntry.DataRowType.SUBTYPE, (Object)DataEntry.DEFAULT_VALUE_SUBTYPE);
 						// Adjust button name:
 						JButton button = (JButton)biMapTypeCompToSubtypeComp.get(component);
 						button.setText(dataEntry.getDataRowValueAsText(DataEntry.DataRowType.SUBTYPE));
@@ -428,7 +443,7 @@ class DataPanel extends JPanel
 					else if (dataRowType == DataEntry.DataRowType.REPEAT)
 					{
 						// Adjust data entry value:
-						dataEntry.setValue(DataEntry.DataRowType.REPEAT, newValueObject);
+						MainFrame.setDataEntryValue(dataEntry, DataEntry.DataRowType.REPEAT, newValueObject);
 						// Adjust button names:
 						JButton button = (JButton)biMapRepeatCompToDurationComp.get(component);
 						button.setText(dataEntry.getDataRowValueAsText(DataEntry.DataRowType.DURATION));
@@ -439,7 +454,7 @@ class DataPanel extends JPanel
 					else if (dataRowType == DataEntry.DataRowType.DURATION)
 					{
 						// Adjust data entry value:
-						dataEntry.setValue(DataEntry.DataRowType.DURATION, newValueObject);
+						MainFrame.setDataEntryValue(dataEntry, DataEntry.DataRowType.DURATION, newValueObject);
 						// Adjust button name:
 						JButton button = (JButton)biMapDurationCompToUntilComp.get(component);
 						button.setText(dataEntry.getDataRowValueAsText(DataEntry.DataRowType.UNTIL));
@@ -498,8 +513,8 @@ class DataPanel extends JPanel
 					if (dataRowType == DataEntry.DataRowType.DATE)
 					{
 						// Adjust data entry value:
-						dataEntry.setValue(DataEntry.DataRowType.DATE, newValueObject);
-						dataEntry.setValue(DataEntry.DataRowType.UNTIL, newValueObject);
+						MainFrame.setDataEntryValue(dataEntry, DataEntry.DataRowType.DATE, newValueObject);
+						MainFrame.setDataEntryValue(dataEntry, DataEntry.DataRowType.UNTIL, newValueObject);
 						// Adjust button name:
 						JButton button = (JButton)biMapDateCompToUntilComp.get(component);
 						button.setText(dataEntry.getDataRowValueAsText(DataEntry.DataRowType.UNTIL));
@@ -541,6 +556,24 @@ class DataPanel extends JPanel
 						showEmptyEntries = !showEmptyEntries;
 						refreshPanel();
 						break;
+					case "ExportDatabase":
+					{
+						var fileChooser = new JFileChooser();
+						fileChooser.setDialogTitle(EXPORT_DIALOG_TITLE);
+						if (fileChooser.showSaveDialog(DataPanel.this) == JFileChooser.APPROVE_OPTION)
+						{
+							try
+							{
+								MainFrame.exportDatabaseFile(fileChooser.getSelectedFile());
+							}
+							catch (Exception exception)
+							{
+								JOptionPane.showMessageDialog(DataPanel.this, exception.getMessage(), EXPORT_ERROR_TITLE, JOptionPane.ERROR_MESSAGE);
+								throw exception;
+							}
+						}
+						break;
+					}
 					default:
 						throw new Exception("ERROR: Invalid setting type");
 				}
@@ -602,6 +635,8 @@ class DataPanel extends JPanel
 		this.sortingComplete = sortingComplete;
 		this.sortingBundled = sortingBundled;
 		this.view = view;
+		filterTimer.setRepeats(false);
+		filterField.getDocument().addDocumentListener(new FilterFieldDL());
 		recreatePanel();
 	}
 	public DataPanel(DataBundle excerptDataBundle, DataEntry.DataRowSorting sortingComplete, Interval view)
@@ -655,11 +690,11 @@ class DataPanel extends JPanel
 			case MONEY:
 			alignment = SwingConstants.RIGHT;
 				var money = dataEntry.getMoney();
-				if (money < 0F)
+				if (money < 0L)
 				{
 					entryColour = InputPanel.COLOUR_CURRENCY_NEGATIVE;
 				}
-				else if (money > 0F)
+				else if (money > 0L)
 				{
 					entryColour = InputPanel.COLOUR_CURRENCY_POSITIVE;
 				}
@@ -687,9 +722,7 @@ class DataPanel extends JPanel
 		if (overwriteData)
 		{
 			// Extract entered value and adjust data entry:
-			activeDataField.dataEntry.setValue(activeDataField.dataRowType, activeDataField.dataField.getValue());
-			// Write database to json:
-			MainFrame.writeDatabaseFile();
+			MainFrame.setDataEntryValue(activeDataField.dataEntry, activeDataField.dataRowType, activeDataField.dataField.getValue());
 		}
 		// Remove data field:
 		var component = activeDataField.dataField.getJComponent();
@@ -703,9 +736,9 @@ class DataPanel extends JPanel
 		// Adjust global variables:
 		adjustComponentMap(activeDataField.dataRowType, component, button);
 		activeDataField = null;
-		// Refresh panel:
-		revalidate();
-		repaint();
+		// Refresh only the grid holding the swapped component:
+		dataPanel.revalidate();
+		dataPanel.repaint();
 		// Refresh main data frame with bundled view if existent:
 		if (excerptDataBundle != null)
 		{
@@ -713,6 +746,30 @@ class DataPanel extends JPanel
 		}
 	}
 
+	private class FilterFieldDL implements DocumentListener
+	{
+		public void insertUpdate(DocumentEvent event)
+		{
+			filterTimer.restart();  // Wait until typing pauses, so the grid is not recreated for every character
+		}
+
+		public void removeUpdate(DocumentEvent event)
+		{
+			filterTimer.restart();
+		}
+
+		public void changedUpdate(DocumentEvent event) {}
+	}
+
+	private class FilterTimerAL implements ActionListener
+	{
+		public void actionPerformed(ActionEvent event)
+		{
+			refreshPanel();
+			filterField.requestFocusInWindow();  // Got removed together with the rest of the panel
+		}
+	}
+
 	private void createCompletePanel(GridBagConstraints constraints, CompoundBorder dataBorder, CompoundBorder headerBorder) throws Exception
 	{
 		// Create header panel:
@@ -748,6 +805,14 @@ class DataPanel extends JPanel
 
 			constraints.gridx++;
 		}
+		button = new JButton(HEADER_TEXT.replace("<NAME>", RUNNING_BALANCE_TEXT));
+		button.setFocusPainted(false);
+		button.setHorizontalAlignment(SwingConstants.LEFT);
+		button.setToolTipText(RUNNING_BALANCE_TOOLTIP);
+		button.setPreferredSize(new Dimension(DATA_FIELD_WIDTH, HEADER_HEIGHT));
+		button.setBorder(headerBorder);
+		headerPanel.add(button, constraints);
+		constraints.gridx++;
 		button = new JButton(REMOVE_BUTTON_TEXT + ":");
 		button.setFocusPainted(false);
 		button.setHorizontalAlignment(SwingConstants.LEFT);
@@ -767,12 +832,12 @@ class DataPanel extends JPanel
 		if (excerptDataBundle != null)
 		{
 			dataEntries = MainFrame.getDataEntries(excerptDataBundle.getStart(), excerptDataBundle.getEnd());
+			Collections.sort(dataEntries, new DataEntry.DataComparator(sortingComplete));
 		}
 		else
 		{
-			dataEntries = MainFrame.getDataEntries();
+			dataEntries = MainFrame.getSortedDataEntries(sortingComplete, displayedEntriesLimit, filterField.getText());
 		}
-		Collections.sort(dataEntries, new DataEntry.DataComparator(sortingComplete));
 		for (var dataEntry : dataEntries)
 		{
 			if (dataEntryCounter >= displayedEntriesLimit)
@@ -792,6 +857,19 @@ class DataPanel extends JPanel
 			biMapRepeatCompToDurationComp.put(buttons[DataEntry.DataRowType.REPEAT.toInt()], buttons[DataEntry.DataRowType.DURATION.toInt()]);
 			biMapDurationCompToUntilComp.put(buttons[DataEntry.DataRowType.DURATION.toInt()], buttons[DataEntry.DataRowType.UNTIL.toInt()]);
 
+			// Create running balance button:
+			var runningBalance = MainFrame.getRunningBalance(dataEntry.getDate());
+			var text = Money.toText(runningBalance);
+			button = new JButton(text);
+			button.setHorizontalAlignment(SwingConstants.RIGHT);
+			button.setToolTipText(RUNNING_BALANCE_TEXT + ": " + text);
+			button.setPreferredSize(new Dimension(DATA_FIELD_WIDTH, DATA_FIELD_HEIGHT));
+			button.setBorder(dataBorder);
+			button.setForeground(runningBalance < 0L ? InputPanel.COLOUR_CURRENCY_NEGATIVE : InputPanel.COLOUR_CURRENCY_POSITIVE);
+			button.setContentAreaFilled(false);
+			dataPanel.add(button, constraints);
+			constraints.gridx++;
+
 			// Create remove button:
 			button = new JButton(REMOVE_BUTTON_TEXT);
 			button.setHorizontalAlignment(SwingConstants.LEFT);
@@ -810,9 +888,33 @@ class DataPanel extends JPanel
 		scroller = new JScrollPane();
 		scroller.setViewportView(dataPanel);
 		scroller.setColumnHeaderView(headerPanel);
-		scroller.setPreferredSize(new Dimension(DATA_FIELD_WIDTH * (DataEntry.DataRowType.Data.length + 1), DATA_PANEL_HIGHT));  // Add one entry to width to avoid a width scrollbar
+		scroller.setPreferredSize(new Dimension(DATA_FIELD_WIDTH * (DataEntry.DataRowType.Data.length + 2), DATA_PANEL_HIGHT));  // Add running balance and one entry to width to avoid a width scrollbar
 		scroller.getVerticalScrollBar().setUnitIncrement(VERTICAL_SCROLL_SPEED);
 		add(scroller, BorderLayout.CENTER);
+
+		// Add filter field above the complete view of the main frame:
+		if (excerptDataBundle == null)
+		{
+			var filterPanel = new JPanel(new BorderLayout());
+			var label = new JLabel(FILTER_TEXT);
+			label.setToolTipText(FILTER_TOOLTIP);
+			filterPanel.add(label, BorderLayout.WEST);
+			filterField.setToolTipText(FILTER_TOOLTIP);
+			filterPanel.add(filterField, BorderLayout.CENTER);
+			filterPanel.setBorder(new EmptyBorder(BORDER_INNER_PADDING_SIZE, BORDER_INNER_PADDING_SIZE, BORDER_INNER_PADDING_SIZE, BORDER_INNER_PADDING_SIZE));
+			add(filterPanel, BorderLayout.NORTH);
+		}
+		else
+		{
+			// Add totals of the timeframe above an excerpt:
+			final var balance = MainFrame.getBalance(excerptDataBundle.getStart(), excerptDataBundle.getEnd());
+			final var entries = MainFrame.getEntryCount(excerptDataBundle.getStart(), excerptDataBundle.getEnd());
+			var label = new JLabel(EXCERPT_TOTALS_TEXT.replace("<BALANCE>", Money.toText(balance)).replace("<ENTRIES>", String.valueOf(entries)));
+			label.setToolTipText(EXCERPT_TOTALS_TOOLTIP);
+			label.setForeground(balance < 0L ? InputPanel.COLOUR_CURRENCY_NEGATIVE : InputPanel.COLOUR_CURRENCY_POSITIVE);
+			label.setBorder(new EmptyBorder(BORDER_INNER_PADDING_SIZE, BORDER_INNER_PADDING_SIZE, BORDER_INNER_PADDING_SIZE, BORDER_INNER_PADDING_SIZE));
+			add(label, BorderLayout.NORTH);
+		}
 	}
 
 	private void createBundledPanel(GridBagConstraints constraints, CompoundBorder dataBorder, CompoundBorder headerBorder) throws Exception
@@ -854,34 +956,8 @@ class DataPanel extends JPanel
 		var dataPanel = new JPanel(new GridBagLayout());
 		constraints.gridx = 0;
 		constraints.gridy = 0;
-		// Get sorted unpacked entries:
-		var comparator = new DataEntry.DataComparator(new DataEntry.DataRowSorting(DataEntry.DataRowType.DATE, DataEntry.DataRowSorting.Mode.UPWARD));
-		var dataEntries = MainFrame.getDataEntries();
-		Collections.sort(dataEntries, comparator);
-		var end = Interval.getIntervalEnd(dataEntries.getLast().getDate(), view);
-		var unpackedAddList = new LinkedList<DataEntry>();
-		for (var dataEntry : dataEntries)
-		{
-			dataEntry.unpackToList(unpackedAddList, end);
-		}
-		dataEntries.addAll(unpackedAddList);
-		Collections.sort(dataEntries, comparator);
-		// Bundle entries based on view settings:
-		var dataBundles = new LinkedList<DataBundle>();
-		DataBundle dataBundle = dataEntries.pop().createNewDataBundle(view);
-		dataBundles.add(dataBundle);
-		for (var dataEntry : dataEntries)
-		{
-			while (dataEntry.tryAddToDataBundle(dataBundle) == false)
-			{
-				if (showEmptyEntries == false && dataBundle.hasEntries() == false)
-				{
-					dataBundles.removeLast();
-				}
-				dataBundle = dataEntry.createNextDataBundle(dataBundle, view);
-				dataBundles.add(dataBundle);
-			}
-		}
+		// Get precomputed bundles based on view settings:
+		var dataBundles = MainFrame.getDataBundles(view, showEmptyEntries);
         Collections.sort(dataBundles, new DataBundle.DataComparator(sortingBundled));
 		// Create data field labels:
 		var dataEntryCounter = 0;
@@ -908,11 +984,11 @@ class DataPanel extends JPanel
 					case BALANCE:
 						alignment = SwingConstants.RIGHT;
 						var balance = sortedDataBundle.getBalance();
-						if (balance < 0F)
+						if (balance < 0L)
 						{
 							entryColour = InputPanel.COLOUR_CURRENCY_NEGATIVE;
 						}
-						else if (balance > 0F)
+						else if (balance > 0L)
 						{
 							entryColour = InputPanel.COLOUR_CURRENCY_POSITIVE;
 						}
@@ -994,6 +1070,11 @@ class DataPanel extends JPanel
 
 	public boolean reactOnKeyStroke(KeyboardFocusManager kfm, KeyEvent event) throws Exception
 	{
+		// Reaction of the drop down list of completions:
+		if (activeDataField != null && activeDataField.dataField instanceof InputPanel.TextDataField && ((InputPanel.TextDataField)activeDataField.dataField).takeKeyStroke(event))
+		{
+			return true;
+		}
 		if (event.getKeyCode() == KeyEvent.VK_ENTER && event.getModifiersEx() == 0 && event.getID() == KeyEvent.KEY_PRESSED)
 		{
 			// Deactivate current active data field if existent and handle event appropriately:
@@ -1075,6 +1156,11 @@ class DataPanel extends JPanel
 		slider.setFont(new Font("Serif", Font.ITALIC, ENTRIES_LIMITER_FONT_SIZE));
 		slider.addChangeListener(new LimiterSliderCL(label));
 		submenu.add(slider);
+		// Create export item:
+		menu.addSeparator();
+		menuItem = new JMenuItem(EXPORT_ITEM_TEXT, KeyEvent.VK_E);
+		menuItem.addActionListener(new SettingsMenuAL("ExportDatabase"));
+		menu.add(menuItem);
 		// Add software version submenu:
         menu.addSeparator();
         submenu = new JMenu(VERSION_SUBMENU_TEXT);
@@ -0,0 +1,201 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.TreeMap;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+
+/** Incrementally maintained data bundles with balance and entry count for each bundle interval. */
+class DataRollups
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	private static final Interval[] ROLLUP_INTERVALS = { Interval.DAILY, Interval.WEEKLY, Interval.MONTHLY, Interval.YEARLY };
+	private static final Interval HORIZON_INTERVAL = Interval.YEARLY;  // Repeated occurrences are expanded up to the end of this interval around the last date
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private final TreeMap<Integer, DataBundle>[] bundles = new TreeMap[Interval.Data.length];  // Non-empty bundles by start epoch day for each interval
+	private final TreeMap<Integer, Integer> dateCounts = new TreeMap<Integer, Integer>();  // Amount of data entries by their epoch day
+	private final LinkedHashSet<DataEntry> repeatingEntries = new LinkedHashSet<DataEntry>();
+	private int horizonDay = Integer.MIN_VALUE;  // Occurrences of repeating entries are accounted up to this epoch day
+
+	public DataRollups()
+	{
+		for (var interval : ROLLUP_INTERVALS)
+		{
+			bundles[interval.toInt()] = new TreeMap<Integer, DataBundle>();
+		}
+	}
+
+	private void addToBundle(TreeMap<Integer, DataBundle> intervalBundles, Interval interval, int startDay, long balance, int entries)
+	{
+		var dataBundle = intervalBundles.get(startDay);
+		if (dataBundle == null)
+		{
+			dataBundle = new DataBundle(0L, 0, Date.fromEpochDay(startDay), Date.fromEpochDay(IntervalMath.getEnd(startDay, interval)));
+			intervalBundles.put(startDay, dataBundle);
+		}
+		dataBundle.addEntries(balance, entries);
+		if (dataBundle.hasEntries() == false)
+		{
+			intervalBundles.remove(startDay);
+		}
+	}
+
+	// Adds (sign = 1) or subtracts (sign = -1) all occurrences of given data entry between given epoch days to the affected bundles:
+	private void apply(DataEntry dataEntry, int sign, int fromDay, int toDay)
+	{
+		toDay = Math.min(toDay, dataEntry.getLastDay());
+		if (toDay < fromDay)
+		{
+			return;
+		}
+		final var repeat = dataEntry.getRepeat();
+		final long money = dataEntry.getMoney();
+		for (var interval : ROLLUP_INTERVALS)
+		{
+			var intervalBundles = bundles[interval.toInt()];
+			if (repeat == Interval.NEVER || repeat.toInt() >= interval.toInt())
+			{
+				// At most one occurrence per bundle, thus visit the occurrences:
+				var occurrence = dataEntry.new OccurrenceIterator(fromDay, toDay);
+				while (occurrence.hasOccurrence())
+				{
+					addToBundle(intervalBundles, interval, IntervalMath.getStart(occurrence.getDay(), interval), sign * money, sign);
+					occurrence.advance();
+				}
+			}
+			else
+			{
+				// Multiple occurrences per bundle, thus visit the bundles and count their occurrences:
+				final int firstDay = dataEntry.getFirstOccurrenceDay(fromDay);
+				if (firstDay > toDay)
+				{
+					continue;
+				}
+				for (int startDay = IntervalMath.getStart(firstDay, interval); startDay <= toDay; startDay = IntervalMath.getEnd(startDay, interval) + 1)
+				{
+					final int count = dataEntry.countOccurrences(Math.max(startDay, fromDay), Math.min(IntervalMath.getEnd(startDay, interval), toDay));
+					if (count > 0)
+					{
+						addToBundle(intervalBundles, interval, startDay, sign * count * money, sign * count);
+					}
+				}
+			}
+		}
+	}
+
+	// Returns the end of the horizon interval around given epoch day, extended to the end of the week overlapping it, so all bundles up to the last date are complete:
+	private static int getHorizonDay(int lastDay)
+	{
+		return IntervalMath.getEnd(IntervalMath.getEnd(lastDay, HORIZON_INTERVAL), Interval.WEEKLY);
+	}
+
+	private void extendHorizon()
+	{
+		final int newHorizonDay = getHorizonDay(dateCounts.lastKey());
+		if (newHorizonDay > horizonDay)
+		{
+			for (var dataEntry : repeatingEntries)
+			{
+				apply(dataEntry, 1, horizonDay + 1, newHorizonDay);
+			}
+			horizonDay = newHorizonDay;
+		}
+	}
+
+	public void add(DataEntry dataEntry)
+	{
+		dateCounts.merge(dataEntry.getDateDay(), 1, Integer::sum);
+		extendHorizon();
+		if (dataEntry.getRepeat() != Interval.NEVER)
+		{
+			repeatingEntries.add(dataEntry);
+		}
+		apply(dataEntry, 1, Integer.MIN_VALUE, horizonDay);
+	}
+
+	public void remove(DataEntry dataEntry)
+	{
+		apply(dataEntry, -1, Integer.MIN_VALUE, horizonDay);
+		repeatingEntries.remove(dataEntry);
+		dateCounts.computeIfPresent(dataEntry.getDateDay(), (day, count) -> (count > 1 ? count - 1 : null));
+	}
+
+	// Adds the summed balance and amount of plain entries of a month that are not loaded to its monthly and yearly bundle (negative values subtract them again):
+	public void addAggregate(int monthStartDay, long balance, int entries)
+	{
+		dateCounts.merge(monthStartDay, entries, (count, addend) -> (count + addend != 0 ? count + addend : null));
+		addToBundle(bundles[Interval.MONTHLY.toInt()], Interval.MONTHLY, monthStartDay, balance, entries);
+		addToBundle(bundles[Interval.YEARLY.toInt()], Interval.YEARLY, IntervalMath.getStart(monthStartDay, Interval.YEARLY), balance, entries);
+	}
+
+	// Recreates all bundles from scratch for given data store:
+	public void rebuild(DataStore dataStore)
+	{
+		dateCounts.clear();
+		repeatingEntries.clear();
+		horizonDay = Integer.MIN_VALUE;
+		for (var interval : ROLLUP_INTERVALS)
+		{
+			bundles[interval.toInt()].clear();
+		}
+		if (dataStore.size() == 0)
+		{
+			return;
+		}
+		for (int row = 0; row < dataStore.size(); row++)
+		{
+			dateCounts.merge(dataStore.getDate(row), 1, Integer::sum);
+			if (dataStore.getRepeat(row) != Interval.NEVER)
+			{
+				repeatingEntries.add(dataStore.getDataEntry(row));
+			}
+		}
+		horizonDay = getHorizonDay(dateCounts.lastKey());
+		for (var interval : ROLLUP_INTERVALS)
+		{
+			for (var dataBundle : DataBundle.createDataBundles(dataStore, interval, false, horizonDay))
+			{
+				bundles[interval.toInt()].put(dataBundle.getStart().getEpochDay(), dataBundle);
+			}
+		}
+	}
+
+	// Returns copies of the consecutive bundles of given interval up to the timeframe of the last date in ascending order:
+	public LinkedList<DataBundle> getDataBundles(Interval interval, boolean showEmptyEntries)
+	{
+		var dataBundles = new LinkedList<DataBundle>();
+		if (dateCounts.isEmpty())
+		{
+			return dataBundles;
+		}
+		final int endDay = IntervalMath.getEnd(dateCounts.lastKey(), interval);
+		int nextStartDay = Integer.MIN_VALUE;
+		for (var dataBundle : bundles[interval.toInt()].headMap(endDay, true).values())
+		{
+			final int startDay = dataBundle.getStart().getEpochDay();
+			if (showEmptyEntries && nextStartDay != Integer.MIN_VALUE)
+			{
+				// Fill gap with empty bundles:
+				for (; nextStartDay < startDay; nextStartDay = IntervalMath.getEnd(nextStartDay, interval) + 1)
+				{
+					dataBundles.add(new DataBundle(0L, 0, Date.fromEpochDay(nextStartDay), Date.fromEpochDay(IntervalMath.getEnd(nextStartDay, interval))));
+				}
+			}
+			dataBundles.add(new DataBundle(dataBundle.getBalance(), (int)dataBundle.getEntries(), dataBundle.getStart(), dataBundle.getEnd()));
+			nextStartDay = dataBundle.getEnd().getEpochDay() + 1;
+		}
+		return dataBundles;
+	}
+
+}
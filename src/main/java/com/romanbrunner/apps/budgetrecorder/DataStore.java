@@ -0,0 +1,581 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+
+/** Columnar storage of data entries with one primitive array per data row type. Data entries are views on its rows. */
+class DataStore
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	private static final int INITIAL_CAPACITY = 16;
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private int size = 0;
+	private long[] ids;  // Stable data entry ids, 0 until one got assigned
+	private long[] moneys;  // Cents
+	private int[] types;
+	private int[] subtypes;
+	private int[] names;  // Ids of the string dictionary
+	private int[] locations;  // Ids of the string dictionary
+	private int[] dates;  // Epoch days
+	private byte[] repeats;  // Interval indices
+	private boolean[] durations;
+	private int[] untils;  // Epoch days
+	private DataEntry[] views;  // Lazily created data entries by row
+	private LongIntHashMap rowsById;
+	private final ArrayList<String> strings = new ArrayList<String>();
+	private final HashMap<String, Integer> stringIds = new HashMap<String, Integer>();
+
+	public DataStore(int capacity)
+	{
+		capacity = Math.max(capacity, 1);
+		ids = new long[capacity];
+		moneys = new long[capacity];
+		types = new int[capacity];
+		subtypes = new int[capacity];
+		names = new int[capacity];
+		locations = new int[capacity];
+		dates = new int[capacity];
+		repeats = new byte[capacity];
+		durations = new boolean[capacity];
+		untils = new int[capacity];
+		views = new DataEntry[capacity];
+		rowsById = new LongIntHashMap(capacity);
+	}
+	public DataStore()
+	{
+		this(INITIAL_CAPACITY);
+	}
+
+	// Returns an independent copy of all rows, e.g. as immutable snapshot for another thread:
+	public DataStore copy()
+	{
+		var dataStore = new DataStore(size);
+		dataStore.size = size;
+		System.arraycopy(ids, 0, dataStore.ids, 0, size);
+		System.arraycopy(moneys, 0, dataStore.moneys, 0, size);
+		System.arraycopy(types, 0, dataStore.types, 0, size);
+		System.arraycopy(subtypes, 0, dataStore.subtypes, 0, size);
+		System.arraycopy(names, 0, dataStore.names, 0, size);
+		System.arraycopy(locations, 0, dataStore.locations, 0, size);
+		System.arraycopy(dates, 0, dataStore.dates, 0, size);
+		System.arraycopy(repeats, 0, dataStore.repeats, 0, size);
+		System.arraycopy(durations, 0, dataStore.durations, 0, size);
+		System.arraycopy(untils, 0, dataStore.untils, 0, size);
+		dataStore.strings.addAll(strings);
+		dataStore.stringIds.putAll(stringIds);
+		dataStore.rowsById = rowsById.copy();
+		return dataStore;
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > moneys.length)
+		{
+			capacity = Math.max(capacity, moneys.length * 2);
+			ids = Arrays.copyOf(ids, capacity);
+			moneys = Arrays.copyOf(moneys, capacity);
+			types = Arrays.copyOf(types, capacity);
+			subtypes = Arrays.copyOf(subtypes, capacity);
+			names = Arrays.copyOf(names, capacity);
+			locations = Arrays.copyOf(locations, capacity);
+			dates = Arrays.copyOf(dates, capacity);
+			repeats = Arrays.copyOf(repeats, capacity);
+			durations = Arrays.copyOf(durations, capacity);
+			untils = Arrays.copyOf(untils, capacity);
+			views = Arrays.copyOf(views, capacity);
+		}
+	}
+
+	// Returns the dictionary id of given string and adds it to the dictionary if required:
+	public int intern(String string)
+	{
+		var id = stringIds.get(string);
+		if (id == null)
+		{
+			id = strings.size();
+			strings.add(string);
+			stringIds.put(string, id);
+		}
+		return id;
+	}
+
+	public String getString(int id)
+	{
+		return strings.get(id);
+	}
+
+	public int getStringCount()
+	{
+		return strings.size();
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public int appendRow(long money, int type, int subtype, String name, String location, int date, Interval repeat, boolean duration, int until)
+	{
+		ensureCapacity(size + 1);
+		final int row = size++;
+		moneys[row] = money;
+		types[row] = type;
+		subtypes[row] = subtype;
+		names[row] = intern(name);
+		locations[row] = intern(location);
+		dates[row] = date;
+		repeats[row] = (byte)repeat.toInt();
+		durations[row] = duration;
+		untils[row] = until;
+		return row;
+	}
+
+	// Appends a row with names and locations given as ids of this store's dictionary:
+	public int appendRow(long money, int type, int subtype, int nameId, int locationId, int date, Interval repeat, boolean duration, int until)
+	{
+		if (nameId < 0 || nameId >= strings.size() || locationId < 0 || locationId >= strings.size())
+		{
+			throw new IndexOutOfBoundsException("Invalid dictionary id (" + nameId + " or " + locationId + " of " + strings.size() + ")");
+		}
+		ensureCapacity(size + 1);
+		final int row = size++;
+		moneys[row] = money;
+		types[row] = type;
+		subtypes[row] = subtype;
+		names[row] = nameId;
+		locations[row] = locationId;
+		dates[row] = date;
+		repeats[row] = (byte)repeat.toInt();
+		durations[row] = duration;
+		untils[row] = until;
+		return row;
+	}
+
+	// Appends a copy of given row, which keeps its id unless it has none or it is already taken in this store:
+	private int appendRow(DataStore origin, int row)
+	{
+		final int newRow = appendRow(origin.moneys[row], origin.types[row], origin.subtypes[row], origin.getString(origin.names[row]), origin.getString(origin.locations[row]), origin.dates[row], Interval.byIndex(origin.repeats[row]), origin.durations[row], origin.untils[row]);
+		final long id = origin.ids[row];
+		indexId(newRow, (id == 0L || rowsById.containsKey(id) ? createId() : id));
+		return newRow;
+	}
+
+	private void indexId(int row, long id)
+	{
+		ids[row] = id;
+		rowsById.put(id, row);
+	}
+
+	// Returns a random id that is not taken in this store:
+	private long createId()
+	{
+		long id;
+		do
+		{
+			id = ThreadLocalRandom.current().nextLong();
+		}
+		while (id == 0L || rowsById.containsKey(id));
+		return id;
+	}
+
+	// Returns a well mixed id derived of given seed and index, so the same legacy entry gets the same id on every load (finalizer of SplitMix64):
+	private static long deriveId(long seed, int index)
+	{
+		long id = seed * 0x9e3779b97f4a7c15L + index + 1L;
+		id = (id ^ (id >>> 30)) * 0xbf58476d1ce4e5b9L;
+		id = (id ^ (id >>> 27)) * 0x94d049bb133111ebL;
+		return id ^ (id >>> 31);
+	}
+
+	public long getId(int row)
+	{
+		return ids[row];
+	}
+
+	// Returns the row of the data entry with given id or -1 if there is none:
+	public int getRow(long id)
+	{
+		return rowsById.get(id);
+	}
+
+	// Sets the id of given row, which has none yet:
+	public void setId(int row, long id) throws Exception
+	{
+		if (id == 0L || rowsById.containsKey(id))
+		{
+			throw new Exception("ERROR: Data entry id " + id + " is invalid or already taken");
+		}
+		indexId(row, id);
+	}
+
+	// Gives all rows from given row on without an id one that is derived of given seed and their position, and returns their amount. Has to be called right after reading a database file, so the positions are those within the file:
+	public int assignMissingIds(long seed, int firstRow)
+	{
+		int assignedIds = 0;
+		for (int row = firstRow; row < size; row++)
+		{
+			if (ids[row] == 0L)
+			{
+				final long id = deriveId(seed, row - firstRow);
+				indexId(row, (id == 0L || rowsById.containsKey(id) ? createId() : id));
+				assignedIds++;
+			}
+		}
+		return assignedIds;
+	}
+
+	// Appends all rows of given store, whose dictionary ids get mapped onto the dictionary of this store:
+	public void append(DataStore origin) throws Exception
+	{
+		// Check all ids before anything changes, so a failed append leaves this store as it was:
+		for (int row = 0; row < origin.size; row++)
+		{
+			final long id = origin.ids[row];
+			if (id != 0L && rowsById.containsKey(id))
+			{
+				throw new Exception("ERROR: Data entry id " + id + " is already taken");
+			}
+		}
+		var idMap = new int[origin.strings.size()];
+		for (int id = 0; id < idMap.length; id++)
+		{
+			idMap[id] = intern(origin.strings.get(id));
+		}
+		ensureCapacity(size + origin.size);
+		for (int row = 0; row < origin.size; row++)
+		{
+			final long id = origin.ids[row];
+			if (id != 0L)
+			{
+				rowsById.put(id, size + row);
+			}
+		}
+		System.arraycopy(origin.ids, 0, ids, size, origin.size);
+		System.arraycopy(origin.moneys, 0, moneys, size, origin.size);
+		System.arraycopy(origin.types, 0, types, size, origin.size);
+		System.arraycopy(origin.subtypes, 0, subtypes, size, origin.size);
+		System.arraycopy(origin.dates, 0, dates, size, origin.size);
+		System.arraycopy(origin.repeats, 0, repeats, size, origin.size);
+		System.arraycopy(origin.durations, 0, durations, size, origin.size);
+		System.arraycopy(origin.untils, 0, untils, size, origin.size);
+		for (int row = 0; row < origin.size; row++)
+		{
+			names[size + row] = idMap[origin.names[row]];
+			locations[size + row] = idMap[origin.locations[row]];
+		}
+		size += origin.size;
+	}
+
+	// Overwrites the values of given row with the values of given data entry:
+	public void set(int row, DataEntry dataEntry)
+	{
+		final var origin = dataEntry.getStore();
+		final int originRow = dataEntry.getRow();
+		moneys[row] = origin.moneys[originRow];
+		types[row] = origin.types[originRow];
+		subtypes[row] = origin.subtypes[originRow];
+		names[row] = intern(origin.getName(originRow));
+		locations[row] = intern(origin.getLocation(originRow));
+		dates[row] = origin.dates[originRow];
+		repeats[row] = origin.repeats[originRow];
+		durations[row] = origin.durations[originRow];
+		untils[row] = origin.untils[originRow];
+	}
+
+	// Moves the row of given data entry into this store, so the data entry becomes a view on the new row:
+	public void add(DataEntry dataEntry)
+	{
+		final int row = appendRow(dataEntry.getStore(), dataEntry.getRow());
+		dataEntry.bind(this, row);
+		views[row] = dataEntry;
+	}
+
+	// Removes the row of given data entry by moving the last row into its place. The data entry keeps its values in a store of its own:
+	public void remove(DataEntry dataEntry)
+	{
+		final int row = dataEntry.getRow();
+		var detachedStore = new DataStore(1);
+		dataEntry.bind(detachedStore, detachedStore.appendRow(this, row));
+		detachedStore.views[0] = dataEntry;
+		rowsById.remove(ids[row]);
+		final int lastRow = --size;
+		if (row != lastRow)
+		{
+			ids[row] = ids[lastRow];
+			if (ids[row] != 0L)
+			{
+				rowsById.put(ids[row], row);
+			}
+			moneys[row] = moneys[lastRow];
+			types[row] = types[lastRow];
+			subtypes[row] = subtypes[lastRow];
+			names[row] = names[lastRow];
+			locations[row] = locations[lastRow];
+			dates[row] = dates[lastRow];
+			repeats[row] = repeats[lastRow];
+			durations[row] = durations[lastRow];
+			untils[row] = untils[lastRow];
+			views[row] = views[lastRow];
+			if (views[row] != null)
+			{
+				views[row].bind(this, row);
+			}
+		}
+		ids[lastRow] = 0L;
+		views[lastRow] = null;
+	}
+
+	// Returns the data entry view of given row:
+	public DataEntry getDataEntry(int row)
+	{
+		if (views[row] == null)
+		{
+			views[row] = new DataEntry(this, row);
+		}
+		return views[row];
+	}
+
+	// Makes given data entry the view of given row, e.g. to keep its identity across a reload:
+	public void attach(int row, DataEntry dataEntry)
+	{
+		dataEntry.bind(this, row);
+		views[row] = dataEntry;
+	}
+
+	// Returns whether given rows have the same values as they get saved, independent of their stores:
+	public boolean hasEqualValues(int row, DataStore other, int otherRow)
+	{
+		final var repeat = getRepeat(row);
+		if (moneys[row] != other.moneys[otherRow] || types[row] != other.types[otherRow] || subtypes[row] != other.subtypes[otherRow] || dates[row] != other.dates[otherRow]
+			|| repeat != other.getRepeat(otherRow) || getName(row).equals(other.getName(otherRow)) == false || getLocation(row).equals(other.getLocation(otherRow)) == false)
+		{
+			return false;
+		}
+		if (repeat == Interval.NEVER)
+		{
+			return true;  // Duration and until are not saved
+		}
+		return durations[row] == other.durations[otherRow] && (durations[row] || untils[row] == other.untils[otherRow]);
+	}
+
+	public LinkedList<DataEntry> getDataEntries()
+	{
+		var dataEntries = new LinkedList<DataEntry>();
+		for (int row = 0; row < size; row++)
+		{
+			dataEntries.add(getDataEntry(row));
+		}
+		return dataEntries;
+	}
+
+	public long getMoney(int row)
+	{
+		return moneys[row];
+	}
+
+	public int getType(int row)
+	{
+		return types[row];
+	}
+
+	public int getSubtype(int row)
+	{
+		return subtypes[row];
+	}
+
+	public String getName(int row)
+	{
+		return strings.get(names[row]);
+	}
+
+	public String getLocation(int row)
+	{
+		return strings.get(locations[row]);
+	}
+
+	public int getNameId(int row)
+	{
+		return names[row];
+	}
+
+	public int getLocationId(int row)
+	{
+		return locations[row];
+	}
+
+	public int getDate(int row)
+	{
+		return dates[row];
+	}
+
+	public Interval getRepeat(int row)
+	{
+		return Interval.byIndex(repeats[row]);
+	}
+
+	public boolean getDuration(int row)
+	{
+		return durations[row];
+	}
+
+	public int getUntil(int row)
+	{
+		return untils[row];
+	}
+
+	public void setMoney(int row, long money)
+	{
+		moneys[row] = money;
+	}
+
+	public void setType(int row, int type)
+	{
+		types[row] = type;
+	}
+
+	public void setSubtype(int row, int subtype)
+	{
+		subtypes[row] = subtype;
+	}
+
+	public void setName(int row, String name)
+	{
+		names[row] = intern(name);
+	}
+
+	public void setLocation(int row, String location)
+	{
+		locations[row] = intern(location);
+	}
+
+	public void setDate(int row, int date)
+	{
+		dates[row] = date;
+	}
+
+	public void setRepeat(int row, Interval repeat)
+	{
+		repeats[row] = (byte)repeat.toInt();
+	}
+
+	public void setDuration(int row, boolean duration)
+	{
+		durations[row] = duration;
+	}
+
+	public void setUntil(int row, int until)
+	{
+		untils[row] = until;
+	}
+
+	// Returns the rank of each dictionary string in lexicographic order by dictionary id:
+	private int[] getStringRanks()
+	{
+		var ids = new Integer[strings.size()];
+		for (int i = 0; i < ids.length; i++)
+		{
+			ids[i] = i;
+		}
+		Arrays.sort(ids, (idA, idB) -> strings.get(idA).compareTo(strings.get(idB)));
+		var ranks = new int[ids.length];
+		for (int i = 0; i < ids.length; i++)
+		{
+			ranks[ids[i]] = i;
+		}
+		return ranks;
+	}
+
+	// Returns the distinct money values in ascending order, so the index of a value is its rank:
+	private long[] getMoneyRanks()
+	{
+		var sortedMoneys = Arrays.copyOf(moneys, size);
+		Arrays.sort(sortedMoneys);
+		int distinct = 0;
+		for (int i = 0; i < sortedMoneys.length; i++)
+		{
+			if (i == 0 || sortedMoneys[i] != sortedMoneys[distinct - 1])
+			{
+				sortedMoneys[distinct++] = sortedMoneys[i];
+			}
+		}
+		return Arrays.copyOf(sortedMoneys, distinct);
+	}
+
+	// Returns an integer key for given row and data row type with the same order as the data entry comparator:
+	private int getSortKey(DataEntry.DataRowType dataRowType, int row, int[] stringRanks, long[] moneyRanks)
+	{
+		switch (dataRowType)
+		{
+			case MONEY:
+				return Arrays.binarySearch(moneyRanks, moneys[row]);
+			case TYPE:
+				return types[row];
+			case SUBTYPE:
+				return subtypes[row];
+			case NAME:
+				return stringRanks[names[row]];
+			case LOCATION:
+				return stringRanks[locations[row]];
+			case DATE:
+				return dates[row];
+			case REPEAT:
+				return repeats[row];
+			case DURATION:
+				return (durations[row] ? 1 : 0);
+			default:
+				return untils[row];
+		}
+	}
+
+	// Returns all rows sorted by given sorting, computed directly on the columns:
+	public int[] getSortedRows(DataEntry.DataRowSorting sorting)
+	{
+		var rows = new int[size];
+		for (int row = 0; row < size; row++)
+		{
+			rows[row] = row;
+		}
+		return getSortedRows(sorting, rows);
+	}
+	// Returns given rows sorted by given sorting:
+	public int[] getSortedRows(DataEntry.DataRowSorting sorting, int[] rows)
+	{
+		final var dataRowType = sorting.row;
+		final boolean isDownward = (sorting.mode == DataEntry.DataRowSorting.Mode.DOWNWARD);
+		final int[] stringRanks = (dataRowType == DataEntry.DataRowType.NAME || dataRowType == DataEntry.DataRowType.LOCATION ? getStringRanks() : null);
+		final long[] moneyRanks = (dataRowType == DataEntry.DataRowType.MONEY ? getMoneyRanks() : null);
+		// Pack sort key and row into one primitive value per row:
+		var keys = new long[rows.length];
+		for (int i = 0; i < rows.length; i++)
+		{
+			int key = getSortKey(dataRowType, rows[i], stringRanks, moneyRanks);
+			if (isDownward)
+			{
+				key = ~key;
+			}
+			keys[i] = ((long)key << 32) | rows[i];
+		}
+		Arrays.sort(keys);
+		var sortedRows = new int[rows.length];
+		for (int i = 0; i < rows.length; i++)
+		{
+			sortedRows[i] = (int)keys[i];
+		}
+		return sortedRows;
+	}
+
+}
@@ -0,0 +1,215 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/** Reads the json database file with its data entries split into byte range chunks, which get parsed in parallel on the common fork/join pool and merged in their original order. */
+final class DatabaseLoader
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	private static final int MIN_CHUNK_ENTRIES = 4096;  // Smaller chunks cost more in scheduling and merging than they gain
+	private static final int CHUNKS_PER_THREAD = 4;  // Evens out chunks that take longer
+	private static final byte[] DATA_ENTRIES_KEY = "dataEntries".getBytes();
+
+	private static class EntryRanges  // Struct type
+	{
+		public int arrayStart = -1;  // Offset of the opening bracket
+		public int arrayEnd = -1;  // Offset after the closing bracket
+		public int count = 0;
+		public int[] starts = new int[1024];  // Offsets of the opening braces
+		public int[] ends = new int[1024];  // Offsets after the closing braces
+
+		public void add(int start, int end)
+		{
+			if (count == starts.length)
+			{
+				starts = Arrays.copyOf(starts, count * 2);
+				ends = Arrays.copyOf(ends, count * 2);
+			}
+			starts[count] = start;
+			ends[count] = end;
+			count++;
+		}
+	}
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private DatabaseLoader() {}
+
+	private static long toMillis(long startNanos, long endNanos)
+	{
+		return (endNanos - startNanos) / 1000000L;
+	}
+
+	// Finds the entry objects of the top level data entries array by the json structure alone, or returns null if there is no such array:
+	private static EntryRanges scan(byte[] bytes)
+	{
+		var ranges = new EntryRanges();
+		int depth = 0;
+		int keyStart = -1;  // Last string on the top level, which is the key of a following value
+		int keyEnd = -1;
+		int entryStart = -1;
+		for (int i = 0; i < bytes.length; i++)
+		{
+			switch (bytes[i])
+			{
+				case '"':
+				{
+					final int stringStart = i + 1;
+					for (i = stringStart; i < bytes.length && bytes[i] != '"'; i++)
+					{
+						if (bytes[i] == '\\')
+						{
+							i++;  // Skip escaped character
+						}
+					}
+					if (depth == 1)
+					{
+						keyStart = stringStart;
+						keyEnd = i;
+					}
+					break;
+				}
+				case '{':
+				case '[':
+					if (depth == 1 && bytes[i] == '[' && ranges.arrayStart < 0 && keyStart >= 0 && Arrays.equals(bytes, keyStart, keyEnd, DATA_ENTRIES_KEY, 0, DATA_ENTRIES_KEY.length))
+					{
+						ranges.arrayStart = i;
+					}
+					else if (depth == 2 && ranges.arrayStart >= 0)
+					{
+						entryStart = i;
+					}
+					depth++;
+					break;
+				case '}':
+				case ']':
+					depth--;
+					if (depth == 2 && ranges.arrayStart >= 0)
+					{
+						ranges.add(entryStart, i + 1);
+					}
+					else if (depth == 1 && ranges.arrayStart >= 0)
+					{
+						ranges.arrayEnd = i + 1;
+						return ranges;
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		return null;
+	}
+
+	// Parses the given entries into a store of their own, including the validity checks of their dates:
+	private static DataStore parseChunk(JsonFactory jsonFactory, byte[] bytes, EntryRanges ranges, int firstEntry, int endEntry) throws Exception
+	{
+		// Extract data entries directly into new rows, parsing each one in place as the commas between them are no valid json on their own:
+		var chunkStore = new DataStore(endEntry - firstEntry);
+		for (int entry = firstEntry; entry < endEntry; entry++)
+		{
+			try (var parser = jsonFactory.createParser(bytes, ranges.starts[entry], ranges.ends[entry] - ranges.starts[entry]))
+			{
+				if (parser.nextToken() != JsonToken.START_OBJECT)
+				{
+					throw new Exception("ERROR: Expected json object instead of " + parser.currentToken());
+				}
+				DataEntry.Deserializer.readRow(parser, chunkStore);
+			}
+			catch (Exception exception)
+			{
+				throw new Exception("ERROR: Invalid data entry " + entry + " (" + exception.getMessage() + ")");
+			}
+		}
+		return chunkStore;
+	}
+
+	private static void readDatabase(ObjectMapper mapper, byte[] bytes, DataStore dataStore) throws Exception
+	{
+		try (var parser = mapper.getFactory().createParser(bytes))
+		{
+			parser.nextToken();
+			MainFrame.Deserializer.readDatabase(parser, dataStore);
+		}
+	}
+
+	// Reads given json database file into the type names and given data store, which has to be empty, and prints the time spent in each phase if reported:
+	public static void read(File databaseFile, ObjectMapper mapper, DataStore dataStore, boolean isReported) throws Exception
+	{
+		final long readStartTime = System.nanoTime();
+		final var bytes = Files.readAllBytes(databaseFile.toPath());
+		final long scanStartTime = System.nanoTime();
+		final var ranges = scan(bytes);
+		if (ranges == null)
+		{
+			// Read sequentially, which also reports what is wrong:
+			readDatabase(mapper, bytes, dataStore);
+			return;
+		}
+		// Deserialize everything except the data entries:
+		final long headerStartTime = System.nanoTime();
+		var headerBytes = new byte[ranges.arrayStart + 2 + bytes.length - ranges.arrayEnd];
+		System.arraycopy(bytes, 0, headerBytes, 0, ranges.arrayStart);
+		headerBytes[ranges.arrayStart] = '[';
+		headerBytes[ranges.arrayStart + 1] = ']';
+		System.arraycopy(bytes, ranges.arrayEnd, headerBytes, ranges.arrayStart + 2, bytes.length - ranges.arrayEnd);
+		readDatabase(mapper, headerBytes, dataStore);
+		// Parse chunks in parallel:
+		final long parseStartTime = System.nanoTime();
+		final var pool = ForkJoinPool.commonPool();
+		final int chunkCount = Math.max(1, Math.min(ranges.count / MIN_CHUNK_ENTRIES, pool.getParallelism() * CHUNKS_PER_THREAD));
+		var tasks = new ArrayList<Callable<DataStore>>(chunkCount);
+		for (int chunk = 0; chunk < chunkCount; chunk++)
+		{
+			final int firstEntry = (int)((long)chunk * ranges.count / chunkCount);
+			final int endEntry = (int)((long)(chunk + 1) * ranges.count / chunkCount);
+			if (endEntry > firstEntry)
+			{
+				tasks.add(() -> parseChunk(mapper.getFactory(), bytes, ranges, firstEntry, endEntry));
+			}
+		}
+		var chunkStores = new ArrayList<DataStore>(tasks.size());
+		for (var future : pool.invokeAll(tasks))
+		{
+			try
+			{
+				chunkStores.add(future.get());
+			}
+			catch (ExecutionException exception)
+			{
+				throw (exception.getCause() instanceof Exception ? (Exception)exception.getCause() : exception);
+			}
+		}
+		// Merge chunks in their original order:
+		final long mergeStartTime = System.nanoTime();
+		for (var chunkStore : chunkStores)
+		{
+			dataStore.append(chunkStore);
+		}
+		if (isReported)
+		{
+			final long endTime = System.nanoTime();
+			System.out.println("Loaded " + dataStore.size() + " data entries in " + chunkStores.size() + " chunks on " + pool.getParallelism() + " threads (read " + toMillis(readStartTime, scanStartTime)
+				+ " ms, scan " + toMillis(scanStartTime, headerStartTime) + " ms, header " + toMillis(headerStartTime, parseStartTime) + " ms, parse " + toMillis(parseStartTime, mergeStartTime)
+				+ " ms, merge " + toMillis(mergeStartTime, endTime) + " ms)");
+		}
+	}
+
+}
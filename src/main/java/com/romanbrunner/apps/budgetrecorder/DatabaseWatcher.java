@@ -0,0 +1,134 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/** Watches the database files for changes made by others, e.g. a sync client, and reports them once they settled. Own writes get remembered and ignored. */
+class DatabaseWatcher
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	public static final long SETTLE_DELAY = 1000L;  // Milliseconds without further events before a change gets reported
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private final File directory;
+	private final List<File> files;
+	private final Runnable externalChangeListener;
+	private final HashMap<String, long[]> ownFingerprints = new HashMap<String, long[]>();  // Guarded by this, by file name
+	private WatchService watchService = null;
+
+	public DatabaseWatcher(File directory, List<File> files, Runnable externalChangeListener)
+	{
+		this.directory = directory;
+		this.files = files;
+		this.externalChangeListener = externalChangeListener;
+	}
+
+	// Returns what identifies the current state of given file without reading it:
+	private static long[] getFingerprint(File file)
+	{
+		return new long[] { (file.exists() ? 1L : 0L), file.length(), file.lastModified() };
+	}
+
+	// Remembers the current state of all watched files as written by this application:
+	public synchronized void rememberOwnState()
+	{
+		for (var file : files)
+		{
+			ownFingerprints.put(file.getName(), getFingerprint(file));
+		}
+	}
+
+	// Returns whether given watched file differs from its remembered own state:
+	public synchronized boolean hasExternalChange(File file)
+	{
+		return Arrays.equals(ownFingerprints.get(file.getName()), getFingerprint(file)) == false;
+	}
+
+	// Returns whether any watched file differs from its remembered own state:
+	public synchronized boolean hasExternalChanges()
+	{
+		for (var file : files)
+		{
+			if (hasExternalChange(file))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isWatched(Path fileName)
+	{
+		for (var file : files)
+		{
+			if (file.getName().equals(fileName.toString()))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void watch()
+	{
+		try
+		{
+			while (true)
+			{
+				var key = watchService.take();
+				boolean isRelevant = false;
+				do
+				{
+					for (var event : key.pollEvents())
+					{
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW || isWatched((Path)event.context()))
+						{
+							isRelevant = true;
+						}
+					}
+					key.reset();
+					// Let the other writer finish all files before looking at them:
+				}
+				while ((key = watchService.poll(SETTLE_DELAY, TimeUnit.MILLISECONDS)) != null);
+				if (isRelevant && hasExternalChanges())
+				{
+					externalChangeListener.run();
+				}
+			}
+		}
+		catch (InterruptedException exception)
+		{
+			// Watcher got stopped
+		}
+		catch (Exception exception)
+		{
+			exception.printStackTrace();
+		}
+	}
+
+	public void start() throws Exception
+	{
+		watchService = FileSystems.getDefault().newWatchService();
+		directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		rememberOwnState();
+		var thread = new Thread(this::watch, "database-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+}
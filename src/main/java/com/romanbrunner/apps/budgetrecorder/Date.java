@@ -3,10 +3,9 @@ package com.romanbrunner.apps.budgetrecorder;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
-import java.util.stream.Collectors;
 
 
-public class Date
+public class Date implements Comparable<Date>
 {
 	// --------------------
 	// Data code
@@ -73,60 +72,22 @@ public class Date
 			return names;
 		}
 
-		private static Calendar getIntervalNextDateCalendar(Calendar calendar, Interval interval)
-		{
-			switch (interval)
-			{
-				case NEVER:
-				case DAILY:
-					calendar.add(Calendar.DAY_OF_YEAR, 1);
-					break;
-				case WEEKLY:
-					calendar.add(Calendar.WEEK_OF_MONTH, 1);
-					break;
-				case MONTHLY:
-					calendar.add(Calendar.MONTH, 1);
-					break;
-				case YEARLY:
-					calendar.add(Calendar.YEAR, 1);
-					break;
-			}
-			return calendar;
-		}
-
 		// Returns the start date from the timeframe of given interval and date:
-		public static Date getIntervalStart(Date date, Interval interval) throws Exception
+		public static Date getIntervalStart(Date date, Interval interval)
 		{
-			Calendar calendar = Date.dateToCalendar(date);
-			switch (interval)
-			{
-				case WEEKLY:
-					calendar.set(Calendar.DAY_OF_WEEK, Calendar.MONDAY);
-					break;
-				case MONTHLY:
-					calendar.set(Calendar.DAY_OF_MONTH, 1);
-					break;
-				case YEARLY:
-					calendar.set(Calendar.DAY_OF_YEAR, 1);
-					break;
-				default:
-					break;
-			}
-			return Date.calendarToDate(calendar);
+			return new Date(IntervalMath.getStart(date.epochDay, interval));
 		}
 
 		// Returns the end date from the timeframe of given interval and date:
-		public static Date getIntervalEnd(Date date, Interval interval) throws Exception
+		public static Date getIntervalEnd(Date date, Interval interval)
 		{
-			Calendar calendar = getIntervalNextDateCalendar(Date.dateToCalendar(getIntervalStart(date, interval)), interval);
-			calendar.add(Calendar.DAY_OF_YEAR, -1);
-			return Date.calendarToDate(calendar);
+			return new Date(IntervalMath.getEnd(date.epochDay, interval));
 		}
 
 		// Returns the next date with given interval after given date:
-		public static Date getIntervalNextDate(Date date, Interval interval) throws Exception
+		public static Date getIntervalNextDate(Date date, Interval interval)
 		{
-			return Date.calendarToDate(getIntervalNextDateCalendar(Date.dateToCalendar(date), interval));
+			return new Date(IntervalMath.getNext(date.epochDay, interval));
 		}
 
 		@Override
@@ -145,28 +106,105 @@ public class Date
 	// Functional code
 	// --------------------
 
-	private final int[] values;  // Values should stay fixed after construction. Use new objects if other values are required.
+	private final int epochDay;  // Days since 01.01.1970. Value should stay fixed after construction. Use new objects if other values are required.
 
+	private Date(int epochDay)
+	{
+		this.epochDay = epochDay;
+	}
 	public Date(int[] values) throws Exception
 	{
 		if (values.length != ARRAY_SIZE)
 		{
 			throw new Exception("ERROR: Invalid date format (" + values.length + " numbers instead of " + ARRAY_SIZE + ")");
 		}
-
-		this.values = values;
-
-		var calendar = dateToCalendar(this);
-		if (calendar.get(Calendar.DAY_OF_MONTH) != values[0] || calendar.get(Calendar.MONTH) + 1 != values[1] || calendar.get(Calendar.YEAR) != values[2])
+		if (isValid(values[0], values[1], values[2]) == false)
 		{
-			throw new Exception("ERROR: Invalid date (" + this.toString() + " is not a valid date)");
+			throw new Exception("ERROR: Invalid date (" + values[0] + "." + values[1] + "." + values[2] + " is not a valid date)");
 		}
+
+		this.epochDay = toEpochDay(values[0], values[1], values[2]);
 	}
 	public Date(int day, int month, int year) throws Exception
 	{
 		this(new int[] { day, month, year });
 	}
 
+	public static Date fromEpochDay(int epochDay)
+	{
+		return new Date(epochDay);
+	}
+
+	public static boolean isLeapYear(int year)
+	{
+		return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0));
+	}
+
+	public static int getMonthLength(int month, int year)
+	{
+		switch (month)
+		{
+			case 2:
+				return (isLeapYear(year) ? 29 : 28);
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	public static boolean isValid(int day, int month, int year)
+	{
+		return (year >= 1 && month >= 1 && month <= 12 && day >= 1 && day <= getMonthLength(month, year));
+	}
+
+	// Returns the days since 01.01.1970 for given valid civil date (proleptic gregorian calendar):
+	public static int toEpochDay(int day, int month, int year)
+	{
+		if (month <= 2)
+		{
+			year -= 1;
+		}
+		final int era = Math.floorDiv(year, 400);
+		final int yearOfEra = year - era * 400;
+		final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	// Returns the civil date for given days since 01.01.1970 packed as yyyymmdd:
+	public static int toPackedCivil(int epochDay)
+	{
+		final int shiftedDay = epochDay + 719468;
+		final int era = Math.floorDiv(shiftedDay, 146097);
+		final int dayOfEra = shiftedDay - era * 146097;
+		final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		final int shiftedMonth = (5 * dayOfYear + 2) / 153;
+		final int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		final int month = (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+		final int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return year * 10000 + month * 100 + day;
+	}
+
+	public static int packedDay(int packedCivil)
+	{
+		return packedCivil % 100;
+	}
+
+	public static int packedMonth(int packedCivil)
+	{
+		return (packedCivil / 100) % 100;
+	}
+
+	public static int packedYear(int packedCivil)
+	{
+		return packedCivil / 10000;
+	}
+
 	public static Date calendarToDate(Calendar calendar) throws Exception
 	{
 		return new Date(calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.YEAR));
@@ -174,60 +212,60 @@ public class Date
 
 	public static Calendar dateToCalendar(Date date)
 	{
-		return new GregorianCalendar(date.values[2], date.values[1] - 1, date.values[0]);
+		final int packedCivil = toPackedCivil(date.epochDay);
+		return new GregorianCalendar(packedYear(packedCivil), packedMonth(packedCivil) - 1, packedDay(packedCivil));
 	}
 
 	public boolean isInTimeframe(Date start, Date end)
 	{
-		Calendar calendar = dateToCalendar(this);
-		return (calendar.compareTo(dateToCalendar(start)) >= 0 && calendar.compareTo(dateToCalendar(end)) <= 0);
+		return (epochDay >= start.epochDay && epochDay <= end.epochDay);
+	}
+
+	public Date getNextDay()
+	{
+		return new Date(epochDay + 1);
 	}
 
-	public Date getNextDay() throws Exception
+	public int getEpochDay()
 	{
-		Calendar calendar = Date.dateToCalendar(this);
-		calendar.add(Calendar.DAY_OF_YEAR, 1);
-		return Date.calendarToDate(calendar);
+		return epochDay;
 	}
 
 	public int getValue(int index) throws Exception
 	{
-		if (index < 0 || index >= ARRAY_SIZE)
+		final int packedCivil = toPackedCivil(epochDay);
+		switch (index)
 		{
-			throw new Exception("ERROR: Invalid index (" + index + " has to be at least 0 and smaller than " + ARRAY_SIZE + ")");
+			case 0:
+				return packedDay(packedCivil);
+			case 1:
+				return packedMonth(packedCivil);
+			case 2:
+				return packedYear(packedCivil);
+			default:
+				throw new Exception("ERROR: Invalid index (" + index + " has to be at least 0 and smaller than " + ARRAY_SIZE + ")");
 		}
-
-		return values[index];
 	}
 
 	public int[] getValues()
 	{
-		return values;
+		final int packedCivil = toPackedCivil(epochDay);
+		return new int[] { packedDay(packedCivil), packedMonth(packedCivil), packedYear(packedCivil) };
 	}
 
 	public String getAsText()
 	{
-		String text = "";
-		int i = 0;
-		if (values[i] <= 9)
-		{
-			text = text + "0";
-		}
-		text = text + Integer.toString(values[i]) + ".";
-		i++;
-		if (values[i] <= 9)
-		{
-			text = text + "0";
-		}
-		text = text + Integer.toString(values[i]) + ".";
-		i++;
-		return text + Integer.toString(values[i]);
+		final int packedCivil = toPackedCivil(epochDay);
+		final int day = packedDay(packedCivil);
+		final int month = packedMonth(packedCivil);
+		return (day <= 9 ? "0" : "") + day + "." + (month <= 9 ? "0" : "") + month + "." + packedYear(packedCivil);
 	}
 
 	@Override
 	public String toString()
 	{
-		return Arrays.stream(values).mapToObj(String::valueOf).collect(Collectors.joining("."));
+		final int packedCivil = toPackedCivil(epochDay);
+		return packedDay(packedCivil) + "." + packedMonth(packedCivil) + "." + packedYear(packedCivil);
 	}
 
 	@Override
@@ -244,9 +282,22 @@ public class Date
 		}
 	}
 
-	public int compareTo(Date date) throws Exception
+	@Override
+	public boolean equals(Object object)
+	{
+		return (object instanceof Date && ((Date)object).epochDay == epochDay);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return epochDay;
+	}
+
+	@Override
+	public int compareTo(Date date)
 	{
-		return (values[0] - date.values[0]) + (values[1] - date.values[1]) * 100 + (values[2] - date.values[2]) * 10000;
+		return Integer.compare(epochDay, date.epochDay);
 	}
 
 }
\ No newline at end of file
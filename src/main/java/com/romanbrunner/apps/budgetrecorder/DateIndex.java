@@ -0,0 +1,79 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.TreeMap;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+
+/** Date ordered index of the data entries for fast timeframe lookups. */
+class DateIndex
+{
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private final TreeMap<Integer, ArrayList<DataEntry>> plainEntries = new TreeMap<Integer, ArrayList<DataEntry>>();  // Plain entries by epoch day
+	private final LinkedHashSet<DataEntry> repeatingEntries = new LinkedHashSet<DataEntry>();  // Checked by recurrence math
+
+	public void add(DataEntry dataEntry)
+	{
+		if (dataEntry.getRepeat() == Interval.NEVER)
+		{
+			plainEntries.computeIfAbsent(dataEntry.getDateDay(), day -> new ArrayList<DataEntry>(1)).add(dataEntry);
+		}
+		else
+		{
+			repeatingEntries.add(dataEntry);
+		}
+	}
+
+	public void remove(DataEntry dataEntry)
+	{
+		if (repeatingEntries.remove(dataEntry) == false)
+		{
+			final int epochDay = dataEntry.getDateDay();
+			var dayEntries = plainEntries.get(epochDay);
+			if (dayEntries != null && dayEntries.remove(dataEntry) && dayEntries.isEmpty())
+			{
+				plainEntries.remove(epochDay);
+			}
+		}
+	}
+
+	// Recreates the index from scratch for given data store:
+	public void rebuild(DataStore dataStore)
+	{
+		plainEntries.clear();
+		repeatingEntries.clear();
+		for (int row = 0; row < dataStore.size(); row++)
+		{
+			add(dataStore.getDataEntry(row));
+		}
+	}
+
+	// Returns all data entries with at least one occurrence in the timeframe between given epoch days:
+	public LinkedList<DataEntry> getDataEntries(int startDay, int endDay)
+	{
+		var dataEntries = new LinkedList<DataEntry>();
+		if (endDay < startDay)
+		{
+			return dataEntries;
+		}
+		for (var dayEntries : plainEntries.subMap(startDay, true, endDay, true).values())
+		{
+			dataEntries.addAll(dayEntries);
+		}
+		for (var dataEntry : repeatingEntries)
+		{
+			if (dataEntry.countOccurrences(startDay, endDay) > 0)
+			{
+				dataEntries.add(dataEntry);
+			}
+		}
+		return dataEntries;
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/** Decides when written database files get forced from the operating system cache to the storage device. */
+class FsyncPolicy
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	public enum Mode
+	{
+		ALWAYS("always"), INTERVAL("interval"), NEVER("never");
+
+		private final String name;
+
+		private Mode(String name)
+		{
+			this.name = name;
+		}
+
+		// Returns the mode with given name or null if there is none:
+		public static Mode byName(String name)
+		{
+			for (var mode : values())
+			{
+				if (mode.name.equals(name))
+				{
+					return mode;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+
+	public static final Mode DEFAULT_MODE = Mode.ALWAYS;
+	public static final long DEFAULT_INTERVAL = 60L;  // Seconds
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private final Mode mode;
+	private final long interval;  // Milliseconds
+	private long lastSync = 0L;  // Guarded by this
+
+	public FsyncPolicy(Mode mode, long interval)
+	{
+		this.mode = mode;
+		this.interval = interval * 1000L;
+	}
+
+	// Returns the policy of given config values and falls back to the defaults for missing values:
+	public static FsyncPolicy parse(String modeName, String intervalText) throws Exception
+	{
+		var mode = DEFAULT_MODE;
+		if (modeName != null)
+		{
+			mode = Mode.byName(modeName.trim());
+			if (mode == null)
+			{
+				throw new Exception("ERROR: Invalid fsync policy (" + modeName + " instead of always, interval or never)");
+			}
+		}
+		long interval = DEFAULT_INTERVAL;
+		if (intervalText != null)
+		{
+			interval = Long.parseLong(intervalText.trim());
+		}
+		return new FsyncPolicy(mode, interval);
+	}
+
+	/**
+	 * @return the mode
+	 */
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	/**
+	 * @return the interval in milliseconds
+	 */
+	public long getInterval()
+	{
+		return interval;
+	}
+
+	private synchronized boolean isSyncDue()
+	{
+		switch (mode)
+		{
+			case ALWAYS:
+				return true;
+			case INTERVAL:
+			{
+				final long now = System.currentTimeMillis();
+				if (now - lastSync >= interval)
+				{
+					lastSync = now;
+					return true;
+				}
+				return false;
+			}
+			default:
+				return false;
+		}
+	}
+
+	// Forces the written content of given channel to the storage device if the policy requires it now and returns whether it did:
+	public boolean sync(FileChannel channel) throws IOException
+	{
+		if (isSyncDue())
+		{
+			channel.force(false);
+			return true;
+		}
+		return false;
+	}
+
+	// Forces the directory entries of given directory, so a rename within it survives a crash (not supported on every platform):
+	public void syncDirectory(Path directory)
+	{
+		if (mode == Mode.ALWAYS)
+		{
+			try (var channel = FileChannel.open(directory, StandardOpenOption.READ))
+			{
+				channel.force(true);
+			}
+			catch (IOException exception)
+			{
+				// Directories can't be opened as channel on some platforms, where the rename is durable without it
+			}
+		}
+	}
+
+}
@@ -11,9 +11,9 @@ import java.awt.event.KeyEvent;
 import java.text.DateFormat;
 import java.text.NumberFormat;
 import java.util.Calendar;
-import java.util.LinkedList;
 import java.util.stream.Stream;
 
+import javax.swing.AbstractAction;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
@@ -107,7 +107,7 @@ class InputPanel extends JPanel
 			}
 		}
 
-		public CurrencyDataField(JLabel label, int fractionDigits, float initValue)
+		public CurrencyDataField(JLabel label, int fractionDigits, long initValue)
 		{
 			super(label);
 			panel = new JPanel(new GridBagLayout());
@@ -119,7 +119,7 @@ class InputPanel extends JPanel
 			constraints.weightx = 0.1;
 			constraints.gridx = 0;
 			isPositiveBalanceType = true;
-			if (initValue < 0F)
+			if (initValue < 0L)
 			{
 				initValue = -initValue;
 				isPositiveBalanceType = false;
@@ -135,10 +135,10 @@ class InputPanel extends JPanel
 			displayFormat.setMinimumFractionDigits(fractionDigits);
 			var displayFormatter = new NumberFormatter(displayFormat);
 			dataField = new JFormattedTextField(new DefaultFormatterFactory(displayFormatter, displayFormatter, new NumberFormatter(NumberFormat.getNumberInstance())));
-			dataField.setValue(initValue);
+			dataField.setValue(Money.toDecimal(initValue));
 			panel.add(dataField, constraints);
 		}
-		public CurrencyDataField(JLabel label, int fractionDigits, float initValue, boolean isPositiveBalanceType)
+		public CurrencyDataField(JLabel label, int fractionDigits, long initValue, boolean isPositiveBalanceType)
 		{
 			this(label, fractionDigits, initValue);
 			this.isPositiveBalanceType = isPositiveBalanceType;
@@ -167,7 +167,7 @@ class InputPanel extends JPanel
 		public Object getValue()
 		{
 			Number number = (Number)dataField.getValue();
-			var value = number.floatValue();
+			var value = Money.toCents(number);
 			if (isPositiveBalanceType == false)
 			{
 				value = -value;
@@ -343,34 +343,42 @@ class InputPanel extends JPanel
 
 	public static class TextDataField extends DataField
 	{
-		private static final String COMMIT_ACTION = "commit";
-		private static final String COMMIT_KEY = "ENTER";
+		private static final String NEXT_ACTION = "nextCompletion";
+		private static final String NEXT_KEY = "DOWN";
+		private static final String PREVIOUS_ACTION = "previousCompletion";
+		private static final String PREVIOUS_KEY = "UP";
 
 		private JTextField dataField;
-		private Autocomplete autocompletes[][];
-		private Autocomplete activatedAutocomplete;
+		private KeywordIndex keywordIndex;
+		private Autocomplete autocomplete;
+		private boolean isEscapeTaken = false;
 
-		public TextDataField(JLabel label, LinkedList<String>[][] keywords, int initTypeIndex, int initSubtypeIndex, String initText)
+		public TextDataField(JLabel label, KeywordIndex keywordIndex, int initTypeIndex, int initSubtypeIndex, String initText)
 		{
 			super(label);
 			dataField = new JTextField(initText);
-			// Add autocompletions:
-			autocompletes = new Autocomplete[keywords.length][];
-			for (int i = 0; i < keywords.length; i++)
+			this.keywordIndex = keywordIndex;
+			// Add one autocompletion as document listener, which gets pointed to the keywords of the selected type and subtype:
+			autocomplete = new Autocomplete(dataField, keywordIndex.getScope(initTypeIndex, initSubtypeIndex));
+			dataField.getDocument().addDocumentListener(autocomplete);
+			// Map the keys moving through the drop down list, enter and escape get passed on by the panels (see takeKeyStroke):
+			mapKey(NEXT_KEY, NEXT_ACTION, () -> autocomplete.moveSelection(1));
+			mapKey(PREVIOUS_KEY, PREVIOUS_ACTION, () -> autocomplete.moveSelection(-1));
+		}
+
+		private void mapKey(String key, String actionName, Runnable action)
+		{
+			dataField.getInputMap().put(KeyStroke.getKeyStroke(key), actionName);
+			dataField.getActionMap().put(actionName, new AbstractAction()
 			{
-				autocompletes[i] = new Autocomplete[keywords[i].length];
-				for (int j = 0; j < keywords[i].length; j++)
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public void actionPerformed(ActionEvent event)
 				{
-					// Create autocomplete and document listener:
-					autocompletes[i][j] = new Autocomplete(dataField, keywords[i][j], false);
-					dataField.getDocument().addDocumentListener(autocompletes[i][j]);
-					// Maps the commit key to the commit action, which finishes the autocomplete when given a suggestion:
-					dataField.getInputMap().put(KeyStroke.getKeyStroke(COMMIT_KEY), COMMIT_ACTION);
-					dataField.getActionMap().put(COMMIT_ACTION, autocompletes[i][j].new CommitAction());
+					action.run();
 				}
-			}
-			activatedAutocomplete = autocompletes[initTypeIndex][initSubtypeIndex];
-			activatedAutocomplete.changeActivation(true);
+			});
 		}
 
 		public JComponent getJComponent()
@@ -388,16 +396,39 @@ class InputPanel extends JPanel
 			return dataField.getText();
 		}
 
-		public void updateAutocomplete(int typeIndex, int subtypeIndex, String keyword)
+		public void activateAutocomplete(int typeIndex, int subtypeIndex)
 		{
-			autocompletes[typeIndex][subtypeIndex].addKeyword(keyword);
+			autocomplete.changeKeywords(keywordIndex.getScope(typeIndex, subtypeIndex));
 		}
 
-		public void activateAutocomplete(int typeIndex, int subtypeIndex)
+		/** Lets the shown drop down list take an enter or escape key stroke before the panel reacts on it, returns whether it got taken. */
+		public boolean takeKeyStroke(KeyEvent event)
 		{
-			activatedAutocomplete.changeActivation(false);
-			activatedAutocomplete = autocompletes[typeIndex][subtypeIndex];
-			activatedAutocomplete.changeActivation(true);
+			if (event.getKeyCode() == KeyEvent.VK_ESCAPE && event.getID() == KeyEvent.KEY_RELEASED && isEscapeTaken)
+			{
+				// The release of an escape key that hid the drop down list must not close the window
+				isEscapeTaken = false;
+				event.consume();
+				return true;
+			}
+			else if (event.getModifiersEx() != 0 || event.getID() != KeyEvent.KEY_PRESSED)
+			{
+				return false;
+			}
+			else if (event.getKeyCode() == KeyEvent.VK_ENTER && autocomplete.hasSelectedCompletion())
+			{
+				autocomplete.commit();
+				event.consume();
+				return true;
+			}
+			else if (event.getKeyCode() == KeyEvent.VK_ESCAPE && autocomplete.isPopupVisible())
+			{
+				autocomplete.hidePopup();
+				isEscapeTaken = true;
+				event.consume();
+				return true;
+			}
+			return false;
 		}
 	}
 
@@ -522,7 +553,7 @@ class InputPanel extends JPanel
 			{
 				// Extract entered values, create data entry and add it to the database:
 				int i = 0;
-				var money = (float)dataFields[i++].getValue();
+				var money = (long)dataFields[i++].getValue();
 				var type = (int)dataFields[i++].getValue();
 				var subtype = (int)dataFields[i++].getValue();
 				var name = (String)dataFields[i++].getValue();
@@ -538,8 +569,6 @@ class InputPanel extends JPanel
 					(boolean)dataFields[i++].getValue(),
 					new Date(Stream.of(((String)dataFields[i++].getValue()).split("[.]")).mapToInt(Integer::parseInt).toArray())
 					));
-				// Write database to json:
-				MainFrame.writeDatabaseFile();
 				// Refresh data panel:
 				MainFrame.refreshDataPanel();
 				MainFrame.disposeExcerptDataFrame();
@@ -566,9 +595,6 @@ class InputPanel extends JPanel
 					}
 				};
 				new java.util.Timer().schedule(task, ADD_CONFIRMATION_TIME);
-				// Update autocompletions:
-				((TextDataField)dataFields[DataEntry.DataRowType.NAME.toInt()]).updateAutocomplete(type, subtype, name);
-				((TextDataField)dataFields[DataEntry.DataRowType.LOCATION.toInt()]).updateAutocomplete(type, subtype, location);
 			}
 			catch (Exception exception)
 			{
@@ -614,10 +640,10 @@ class InputPanel extends JPanel
 						dataField = new ComboBoxDataField(label, DataEntry.SUBTYPE_NAMES[DataEntry.DEFAULT_VALUE_TYPE], DataEntry.DEFAULT_VALUE_SUBTYPE, new SubtypeDataFieldAL());
 						break;
 					case NAME:
-						dataField = new TextDataField(label, MainFrame.getDataRowValuesAsStrings(dataRowType), DataEntry.DEFAULT_VALUE_TYPE, DataEntry.DEFAULT_VALUE_SUBTYPE, DataEntry.DEFAULT_VALUE_NAME);
+						dataField = new TextDataField(label, MainFrame.getKeywordIndex(dataRowType), DataEntry.DEFAULT_VALUE_TYPE, DataEntry.DEFAULT_VALUE_SUBTYPE, DataEntry.DEFAULT_VALUE_NAME);
 						break;
 					case LOCATION:
-						dataField = new TextDataField(label, MainFrame.getDataRowValuesAsStrings(dataRowType), DataEntry.DEFAULT_VALUE_TYPE, DataEntry.DEFAULT_VALUE_SUBTYPE, DataEntry.DEFAULT_VALUE_LOCATION);
+						dataField = new TextDataField(label, MainFrame.getKeywordIndex(dataRowType), DataEntry.DEFAULT_VALUE_TYPE, DataEntry.DEFAULT_VALUE_SUBTYPE, DataEntry.DEFAULT_VALUE_LOCATION);
 						break;
 					case DATE:
 						dataField = new DateDataField(label, null, null, DataEntry.DEFAULT_VALUE_DATE, new DateDataFieldCL());
@@ -662,6 +688,14 @@ class InputPanel extends JPanel
 
 	public boolean reactOnKeyStroke(KeyboardFocusManager kfm, KeyEvent event) throws Exception
 	{
+		// Reaction of the drop down list of completions:
+		for (var dataField : dataFields)
+		{
+			if (dataField instanceof InputPanel.TextDataField && dataField.getJComponent() == kfm.getFocusOwner() && ((InputPanel.TextDataField)dataField).takeKeyStroke(event))
+			{
+				return true;
+			}
+		}
 		if (event.getKeyCode() == KeyEvent.VK_ENTER && event.getModifiersEx() == 0 && event.getID() == KeyEvent.KEY_PRESSED)
 		{
 			JComponent focusedComponent = (JComponent)kfm.getFocusOwner();
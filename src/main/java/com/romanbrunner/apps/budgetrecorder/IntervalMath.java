@@ -0,0 +1,145 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+
+/** Calendar free interval arithmetic on epoch days (days since 01.01.1970). Weeks start on monday. */
+final class IntervalMath
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	private static final int DAYS_PER_WEEK = 7;
+	private static final int MONTHS_PER_YEAR = 12;
+	private static final int EPOCH_DAY_OF_WEEK = 3;  // 01.01.1970 was a thursday (monday = 0)
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private IntervalMath() {}
+
+	// Returns the day of the week for given epoch day with monday = 0 and sunday = 6:
+	public static int getDayOfWeek(int epochDay)
+	{
+		return Math.floorMod(epochDay + EPOCH_DAY_OF_WEEK, DAYS_PER_WEEK);
+	}
+
+	// Returns given epoch day shifted by given amount of months, clamped to the end of the target month:
+	public static int addMonths(int epochDay, int months)
+	{
+		final int packedCivil = Date.toPackedCivil(epochDay);
+		final int monthIndex = Date.packedYear(packedCivil) * MONTHS_PER_YEAR + Date.packedMonth(packedCivil) - 1 + months;
+		final int year = Math.floorDiv(monthIndex, MONTHS_PER_YEAR);
+		final int month = Math.floorMod(monthIndex, MONTHS_PER_YEAR) + 1;
+		return Date.toEpochDay(Math.min(Date.packedDay(packedCivil), Date.getMonthLength(month, year)), month, year);
+	}
+
+	// Returns the start epoch day from the timeframe of given interval and epoch day:
+	public static int getStart(int epochDay, Interval interval)
+	{
+		switch (interval)
+		{
+			case WEEKLY:
+				return epochDay - getDayOfWeek(epochDay);
+			case MONTHLY:
+				return epochDay - Date.packedDay(Date.toPackedCivil(epochDay)) + 1;
+			case YEARLY:
+				return Date.toEpochDay(1, 1, Date.packedYear(Date.toPackedCivil(epochDay)));
+			default:
+				return epochDay;
+		}
+	}
+
+	// Returns the end epoch day from the timeframe of given interval and epoch day:
+	public static int getEnd(int epochDay, Interval interval)
+	{
+		switch (interval)
+		{
+			case WEEKLY:
+				return epochDay - getDayOfWeek(epochDay) + DAYS_PER_WEEK - 1;
+			case MONTHLY:
+			{
+				final int packedCivil = Date.toPackedCivil(epochDay);
+				return epochDay - Date.packedDay(packedCivil) + Date.getMonthLength(Date.packedMonth(packedCivil), Date.packedYear(packedCivil));
+			}
+			case YEARLY:
+				return Date.toEpochDay(31, 12, Date.packedYear(Date.toPackedCivil(epochDay)));
+			default:
+				return epochDay;
+		}
+	}
+
+	// Returns the next epoch day with given interval after given epoch day:
+	public static int getNext(int epochDay, Interval interval)
+	{
+		switch (interval)
+		{
+			case WEEKLY:
+				return epochDay + DAYS_PER_WEEK;
+			case MONTHLY:
+				return addMonths(epochDay, 1);
+			case YEARLY:
+				return addMonths(epochDay, MONTHS_PER_YEAR);
+			default:
+				return epochDay + 1;
+		}
+	}
+
+	// Returns the epoch day of the n-th occurrence with given interval from given origin (n = 0 is the origin itself):
+	public static int getOccurrence(int originDay, int n, Interval interval)
+	{
+		switch (interval)
+		{
+			case NEVER:
+				return originDay;
+			case WEEKLY:
+				return originDay + n * DAYS_PER_WEEK;
+			case MONTHLY:
+				return addMonths(originDay, n);
+			case YEARLY:
+				return addMonths(originDay, n * MONTHS_PER_YEAR);
+			default:
+				return originDay + n;
+		}
+	}
+
+	// Returns the index of the last occurrence with given interval from given origin at or before given epoch day (-1 if there is none):
+	public static int getOccurrenceIndex(int originDay, int epochDay, Interval interval)
+	{
+		if (epochDay < originDay)
+		{
+			return -1;
+		}
+		int n;
+		switch (interval)
+		{
+			case NEVER:
+				return 0;
+			case WEEKLY:
+				return (epochDay - originDay) / DAYS_PER_WEEK;
+			case MONTHLY:
+			case YEARLY:
+			{
+				final int originCivil = Date.toPackedCivil(originDay);
+				final int targetCivil = Date.toPackedCivil(epochDay);
+				n = (Date.packedYear(targetCivil) - Date.packedYear(originCivil)) * MONTHS_PER_YEAR + Date.packedMonth(targetCivil) - Date.packedMonth(originCivil);
+				if (interval == Interval.YEARLY)
+				{
+					n = Math.floorDiv(n, MONTHS_PER_YEAR);
+				}
+				// Step back once if the occurrence in the target month or year lies after the target day:
+				if (getOccurrence(originDay, n, interval) > epochDay)
+				{
+					n--;
+				}
+				return n;
+			}
+			default:
+				return epochDay - originDay;
+		}
+	}
+
+}
@@ -0,0 +1,447 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.CRC32;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/** Append-only journal of data entry changes next to the json database file. It gets replayed onto the snapshot it is based on at startup. */
+class Journal
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	public static final String FILE_EXTENSION = ".journal";
+	public static final int COMPACTION_THRESHOLD = 1000;  // Records
+	public static final String OUTDATED_FILE_EXTENSION = ".outdated";
+
+	private static final int CHECKSUM_BUFFER_SIZE = 1 << 16;  // Bytes
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	private static final String RECORD_BASE = "base";
+	private static final String RECORD_ADD = "add";
+	private static final String RECORD_REMOVE = "remove";
+	private static final String RECORD_MODIFY = "modify";
+	private static final String RECORD_LOAD = "load";
+
+	private static class Record  // Struct type
+	{
+		public String type = null;
+		public long id = 0L;
+		public int row = -1;  // Only written by former versions, which had no ids
+		public int year = 0;
+		public long snapshotLength = -1L;
+		public long snapshotModified = -1L;  // Only written by former versions, which had no checksum
+		public long snapshotChecksum = -1L;
+		public DataEntry dataEntry = null;
+	}
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private final File snapshotFile;
+	private final File journalFile;
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final FsyncPolicy fsyncPolicy;
+	private FileChannel channel = null;
+	private volatile boolean isSyncPending = false;  // Appended records that the interval mode of the fsync policy did not force yet
+	private File outdatedFile = null;
+
+	public Journal(File snapshotFile, File journalFile, FsyncPolicy fsyncPolicy)
+	{
+		this.snapshotFile = snapshotFile;
+		this.journalFile = journalFile;
+		this.fsyncPolicy = fsyncPolicy;
+	}
+	public Journal(File snapshotFile, File journalFile)
+	{
+		this(snapshotFile, journalFile, new FsyncPolicy(FsyncPolicy.Mode.NEVER, 0L));
+	}
+
+	/**
+	 * @return the fsync policy
+	 */
+	public FsyncPolicy getFsyncPolicy()
+	{
+		return fsyncPolicy;
+	}
+
+	/**
+	 * @return the file the journal was moved to because it did not fit the snapshot, or null
+	 */
+	public File getOutdatedFile()
+	{
+		return outdatedFile;
+	}
+
+	// Returns the CRC32 checksum of the content of given file, which unlike its modification time stays the same when the file gets copied or synced:
+	private static long getChecksum(File file) throws Exception
+	{
+		var crc = new CRC32();
+		if (file.exists())
+		{
+			try (var inputStream = new FileInputStream(file))
+			{
+				var buffer = new byte[CHECKSUM_BUFFER_SIZE];
+				int length;
+				while ((length = inputStream.read(buffer)) > 0)
+				{
+					crc.update(buffer, 0, length);
+				}
+			}
+		}
+		return crc.getValue();
+	}
+
+	private void write(byte[] bytes) throws Exception
+	{
+		var buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+	}
+
+	// Returns one record as a single json line:
+	private byte[] encodeRecord(String recordType, long id, DataEntry dataEntry) throws Exception
+	{
+		var buffer = new ByteArrayOutputStream();
+		try (var jsonGenerator = mapper.getFactory().createGenerator(buffer))
+		{
+			jsonGenerator.writeStartObject();
+			jsonGenerator.writeStringField("Record", recordType);
+			jsonGenerator.writeNumberField("Id", id);
+			if (dataEntry != null)
+			{
+				jsonGenerator.writeFieldName("Entry");
+				jsonGenerator.writeObject(dataEntry);
+			}
+			jsonGenerator.writeEndObject();
+		}
+		buffer.write('\n');
+		return buffer.toByteArray();
+	}
+
+	// Has to be called after given data entry was added to the data store:
+	public byte[] encodeAdd(DataEntry dataEntry) throws Exception
+	{
+		return encodeRecord(RECORD_ADD, dataEntry.getId(), dataEntry);
+	}
+
+	// Has to be called before given data entry gets removed from the data store:
+	public byte[] encodeRemove(DataEntry dataEntry) throws Exception
+	{
+		return encodeRecord(RECORD_REMOVE, dataEntry.getId(), null);
+	}
+
+	// Has to be called after a value of given data entry was changed:
+	public byte[] encodeModify(DataEntry dataEntry) throws Exception
+	{
+		return encodeRecord(RECORD_MODIFY, dataEntry.getId(), dataEntry);
+	}
+
+	// Has to be called after the partition of given year was appended to the data store:
+	public byte[] encodeLoad(int year) throws Exception
+	{
+		var buffer = new ByteArrayOutputStream();
+		try (var jsonGenerator = mapper.getFactory().createGenerator(buffer))
+		{
+			jsonGenerator.writeStartObject();
+			jsonGenerator.writeStringField("Record", RECORD_LOAD);
+			jsonGenerator.writeNumberField("Year", year);
+			jsonGenerator.writeEndObject();
+		}
+		buffer.write('\n');
+		return buffer.toByteArray();
+	}
+
+	// Appends given encoded records and syncs them regarding the fsync policy, so a crash can at most lose the line being written:
+	public void append(byte[] records) throws Exception
+	{
+		if (channel == null)
+		{
+			final boolean isNewJournal = (journalFile.length() == 0L);
+			channel = FileChannel.open(journalFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			if (isNewJournal)
+			{
+				// Identify the snapshot this journal is based on:
+				var buffer = new ByteArrayOutputStream();
+				try (var jsonGenerator = mapper.getFactory().createGenerator(buffer))
+				{
+					jsonGenerator.writeStartObject();
+					jsonGenerator.writeStringField("Record", RECORD_BASE);
+					jsonGenerator.writeNumberField("SnapshotLength", snapshotFile.length());
+					jsonGenerator.writeNumberField("SnapshotChecksum", getChecksum(snapshotFile));
+					jsonGenerator.writeEndObject();
+				}
+				buffer.write('\n');
+				write(buffer.toByteArray());
+			}
+		}
+		write(records);
+		isSyncPending = (fsyncPolicy.sync(channel) == false && fsyncPolicy.getMode() == FsyncPolicy.Mode.INTERVAL);
+	}
+
+	/**
+	 * @return whether appended records still have to be forced to the storage device
+	 */
+	public boolean isSyncPending()
+	{
+		return isSyncPending;
+	}
+
+	// Forces the appended records that the interval mode of the fsync policy did not force yet, which is due periodically and at shutdown:
+	public void syncPending() throws Exception
+	{
+		if (channel != null && isSyncPending)
+		{
+			channel.force(false);
+		}
+		isSyncPending = false;
+	}
+
+	// Parses one record of a single json line:
+	private Record readRecord(String line) throws Exception
+	{
+		var record = new Record();
+		try (var parser = mapper.getFactory().createParser(line))
+		{
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+			{
+				throw new Exception("ERROR: Expected json object instead of " + parser.currentToken());
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				final var fieldName = parser.getCurrentName();
+				parser.nextToken();
+				switch (fieldName)
+				{
+					case "Record":
+						record.type = parser.getText();
+						break;
+					case "Id":
+						record.id = parser.getValueAsLong();
+						break;
+					case "Row":
+						record.row = parser.getValueAsInt();
+						break;
+					case "Year":
+						record.year = parser.getValueAsInt();
+						break;
+					case "SnapshotLength":
+						record.snapshotLength = parser.getValueAsLong();
+						break;
+					case "SnapshotModified":
+						record.snapshotModified = parser.getValueAsLong();
+						break;
+					case "SnapshotChecksum":
+						record.snapshotChecksum = parser.getValueAsLong();
+						break;
+					case "Entry":
+					{
+						var entryStore = new DataStore(1);
+						record.dataEntry = entryStore.getDataEntry(DataEntry.Deserializer.readRow(parser, entryStore));
+						break;
+					}
+					default:
+						parser.skipChildren();  // Ignore unknown fields
+						break;
+				}
+			}
+			if (parser.currentToken() != JsonToken.END_OBJECT || record.type == null)
+			{
+				throw new Exception("ERROR: Incomplete record");
+			}
+		}
+		return record;
+	}
+
+	// Applies all records onto given data store, which has to hold the snapshot, and returns the amount of applied records. Load records read from given partition store (null if not partitioned):
+	public int replay(DataStore dataStore, PartitionStore partitionStore) throws Exception
+	{
+		int records = 0;
+		boolean isOutdated = false;
+		if (journalFile.exists() == false)
+		{
+			return 0;
+		}
+		try (var reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8)))
+		{
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null)
+			{
+				lineNumber++;
+				// Parse whole record before applying anything, so a partially written last line gets skipped:
+				final Record record;
+				try
+				{
+					record = readRecord(line);
+				}
+				catch (Exception exception)
+				{
+					System.out.println("WARNING: Skipped unreadable journal record in line " + lineNumber + " (" + exception.getMessage() + ")");
+					break;
+				}
+				// Apply record:
+				int row = record.row;
+				if (record.id != 0L && record.type.equals(RECORD_ADD) == false)
+				{
+					row = dataStore.getRow(record.id);
+				}
+				switch (record.type)
+				{
+					case RECORD_BASE:
+						if (record.snapshotLength != snapshotFile.length() || (record.snapshotChecksum >= 0L ? record.snapshotChecksum != getChecksum(snapshotFile) : record.snapshotModified != snapshotFile.lastModified()))
+						{
+							isOutdated = true;
+						}
+						break;
+					case RECORD_ADD:
+						if (record.dataEntry == null || (record.id != 0L ? record.dataEntry.getId() != record.id || dataStore.getRow(record.id) >= 0 : row != dataStore.size()))
+						{
+							throw new Exception("ERROR: Journal record in line " + lineNumber + " does not fit the database (add of id " + record.id + " at row " + row + " of " + dataStore.size() + ")");
+						}
+						dataStore.add(record.dataEntry);
+						break;
+					case RECORD_REMOVE:
+						if (row < 0 || row >= dataStore.size())
+						{
+							throw new Exception("ERROR: Journal record in line " + lineNumber + " does not fit the database (remove of id " + record.id + " at row " + row + " of " + dataStore.size() + ")");
+						}
+						dataStore.remove(dataStore.getDataEntry(row));
+						break;
+					case RECORD_MODIFY:
+						if (row < 0 || row >= dataStore.size() || record.dataEntry == null)
+						{
+							throw new Exception("ERROR: Journal record in line " + lineNumber + " does not fit the database (modify of id " + record.id + " at row " + row + " of " + dataStore.size() + ")");
+						}
+						dataStore.set(row, record.dataEntry);
+						break;
+					case RECORD_LOAD:
+						if (partitionStore == null || partitionStore.isLoaded(record.year))
+						{
+							throw new Exception("ERROR: Journal record in line " + lineNumber + " does not fit the database (load of year " + record.year + ")");
+						}
+						partitionStore.read(record.year, dataStore);
+						break;
+					default:
+						throw new Exception("ERROR: Invalid journal record type (" + record.type + ")");
+				}
+				if (isOutdated)
+				{
+					break;
+				}
+				if (record.type.equals(RECORD_BASE) == false)
+				{
+					records++;
+				}
+			}
+		}
+		if (isOutdated)
+		{
+			// Journal was most likely folded into the snapshot before it could be cleared, but keep it in case the snapshot got replaced by others. This happens after the reader got closed, as open files can not be moved on Windows:
+			setAside();
+			return 0;
+		}
+		return records;
+	}
+	public int replay(DataStore dataStore) throws Exception
+	{
+		return replay(dataStore, null);
+	}
+
+	// Applies given encoded records by id onto given data store, which holds changes of others instead of the snapshot, and returns the amount of applied records. Local values win for entries changed on both sides, load records are skipped. Writes what actually got applied as records that fit the data store into given stream:
+	public int merge(byte[] records, DataStore dataStore, ByteArrayOutputStream appliedRecords) throws Exception
+	{
+		int mergedRecords = 0;
+		for (var line : new String(records, StandardCharsets.UTF_8).split("\n"))
+		{
+			if (line.isEmpty())
+			{
+				continue;
+			}
+			final var record = readRecord(line);
+			if (record.id == 0L)
+			{
+				continue;  // Load record
+			}
+			final int row = dataStore.getRow(record.id);
+			switch (record.type)
+			{
+				case RECORD_ADD:
+				case RECORD_MODIFY:
+					if (row >= 0)
+					{
+						dataStore.set(row, record.dataEntry);
+						appliedRecords.write(encodeModify(dataStore.getDataEntry(row)));
+					}
+					else
+					{
+						dataStore.add(record.dataEntry);  // Keep entries modified here but removed by others
+						appliedRecords.write(encodeAdd(record.dataEntry));
+					}
+					break;
+				case RECORD_REMOVE:
+					if (row < 0)
+					{
+						continue;  // Removed on both sides
+					}
+					appliedRecords.write(encodeRemove(dataStore.getDataEntry(row)));
+					dataStore.remove(dataStore.getDataEntry(row));
+					break;
+				default:
+					throw new Exception("ERROR: Invalid journal record type (" + record.type + ")");
+			}
+			mergedRecords++;
+		}
+		return mergedRecords;
+	}
+
+	// Closes the journal file, so the next append opens it anew, e.g. after it got replaced by others:
+	public void close() throws Exception
+	{
+		if (channel != null)
+		{
+			syncPending();
+			channel.close();
+			channel = null;
+		}
+	}
+
+	// Moves the journal file next to itself, so its records are neither replayed onto nor lost with a snapshot they do not belong to:
+	private void setAside() throws Exception
+	{
+		close();
+		outdatedFile = new File(journalFile.getPath() + "_" + TIME_FORMAT.format(LocalDateTime.now()) + OUTDATED_FILE_EXTENSION);
+		Files.move(journalFile.toPath(), outdatedFile.toPath());
+		System.out.println("WARNING: Set aside journal of an outdated snapshot as " + outdatedFile.getPath());
+	}
+
+	// Deletes all records, which has to happen after they got folded into the snapshot:
+	public void clear() throws Exception
+	{
+		close();
+		if (journalFile.exists() && journalFile.delete() == false)
+		{
+			throw new Exception("ERROR: Couldn't delete journal file (" + journalFile.getPath() + ")");
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Supplier;
+
+
+/** Keywords of one text data row of all data entries with their usages, scoped by type and subtype and kept up to date with every change of the data entries. */
+class KeywordIndex
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	/** Read-only view on the keywords of one type and subtype. */
+	public interface Scope
+	{
+		List<String> getTopCompletions(String prefix);
+		String getBestCompletion(String prefix);
+	}
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private final DataEntry.DataRowType dataRowType;  // Name or location
+	private final Supplier<DataStore> dataStoreSupplier;  // Current data store, which scopes get built of
+	private KeywordTrie[][] scopes = new KeywordTrie[0][];  // By type and subtype, null until first used
+
+	public KeywordIndex(DataEntry.DataRowType dataRowType, Supplier<DataStore> dataStoreSupplier)
+	{
+		this.dataRowType = dataRowType;
+		this.dataStoreSupplier = dataStoreSupplier;
+	}
+
+	// Returns the keywords of given type and subtype or null if they were never used:
+	private KeywordTrie findTrie(int type, int subtype)
+	{
+		return (type < scopes.length && scopes[type] != null && subtype < scopes[type].length ? scopes[type][subtype] : null);
+	}
+
+	private String getKeyword(DataStore dataStore, int row)
+	{
+		return (dataRowType == DataEntry.DataRowType.NAME ? dataStore.getName(row) : dataStore.getLocation(row));
+	}
+
+	private String getKeyword(DataEntry dataEntry)
+	{
+		return (dataRowType == DataEntry.DataRowType.NAME ? dataEntry.getName() : dataEntry.getLocation());
+	}
+
+	// Returns the keywords of given type and subtype, which stay the same object and follow all later changes. They get collected on first use:
+	public Scope getScope(int type, int subtype)
+	{
+		var trie = findTrie(type, subtype);
+		if (trie != null)
+		{
+			return trie;
+		}
+		if (type >= scopes.length)
+		{
+			scopes = Arrays.copyOf(scopes, type + 1);
+		}
+		if (scopes[type] == null || subtype >= scopes[type].length)
+		{
+			scopes[type] = (scopes[type] == null ? new KeywordTrie[subtype + 1] : Arrays.copyOf(scopes[type], subtype + 1));
+		}
+		trie = new KeywordTrie();
+		final var dataStore = dataStoreSupplier.get();
+		var keywords = new ArrayList<String>();
+		for (int row = 0; row < dataStore.size(); row++)
+		{
+			if (dataStore.getType(row) == type && dataStore.getSubtype(row) == subtype)
+			{
+				keywords.add(getKeyword(dataStore, row));
+			}
+		}
+		trie.addAll(keywords);
+		scopes[type][subtype] = trie;
+		return trie;
+	}
+
+	// Has to be called after given data entry was added to the data store, scopes not used yet pick it up when they get collected:
+	public void add(DataEntry dataEntry)
+	{
+		final var trie = findTrie(dataEntry.getType(), dataEntry.getSubtype());
+		if (trie != null)
+		{
+			trie.add(getKeyword(dataEntry));
+		}
+	}
+
+	// Has to be called before given data entry gets removed from the data store:
+	public void remove(DataEntry dataEntry)
+	{
+		final var trie = findTrie(dataEntry.getType(), dataEntry.getSubtype());
+		if (trie != null)
+		{
+			trie.remove(getKeyword(dataEntry));
+		}
+	}
+
+	// Recounts the keywords of all used scopes of given data store, keeping handed out scopes valid:
+	public void rebuild(DataStore dataStore)
+	{
+		for (var tries : scopes)
+		{
+			for (int subtype = 0; tries != null && subtype < tries.length; subtype++)
+			{
+				if (tries[subtype] != null)
+				{
+					tries[subtype].clear();
+				}
+			}
+		}
+		// Collect keywords per scope first, so every scope gets ranked once:
+		var keywords = new IdentityHashMap<KeywordTrie, ArrayList<String>>();
+		for (int row = 0; row < dataStore.size(); row++)
+		{
+			final var trie = findTrie(dataStore.getType(row), dataStore.getSubtype(row));
+			if (trie != null)
+			{
+				keywords.computeIfAbsent(trie, key -> new ArrayList<String>()).add(getKeyword(dataStore, row));
+			}
+		}
+		for (var entry : keywords.entrySet())
+		{
+			entry.getKey().addAll(entry.getValue());
+		}
+	}
+
+}
@@ -0,0 +1,347 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/** Compact radix trie of keywords under their case folded form with usage counts. Every node keeps the most used keywords of its subtree, so completions of a prefix cost the prefix length. */
+class KeywordTrie implements KeywordIndex.Scope
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	public static final int TOP_COMPLETIONS = 10;  // Ranked completions kept per node
+
+	private static final Node[] NO_NODES = new Node[0];
+
+	private static class Node  // Struct type
+	{
+		public String label;  // Case folded characters of the edge leading to this node
+		public char[] childChars = new char[0];  // First label characters of the children, sorted
+		public Node[] children = NO_NODES;
+		public String keyword = null;  // Keyword ending at this node, null if none does
+		public String key = null;  // Case folded keyword
+		public int usages = 0;  // Amount of times the keyword got added
+		public Node[] top = NO_NODES;  // Nodes of the most used keywords within this subtree, ranked
+
+		public Node(String label)
+		{
+			this.label = label;
+		}
+
+		public int findChild(char c)
+		{
+			return Arrays.binarySearch(childChars, c);
+		}
+
+		public void addChild(Node child)
+		{
+			final int index = -findChild(child.label.charAt(0)) - 1;
+			childChars = Arrays.copyOf(childChars, childChars.length + 1);
+			children = Arrays.copyOf(children, children.length + 1);
+			System.arraycopy(childChars, index, childChars, index + 1, childChars.length - index - 1);
+			System.arraycopy(children, index, children, index + 1, children.length - index - 1);
+			childChars[index] = child.label.charAt(0);
+			children[index] = child;
+		}
+
+		public void removeChild(int index)
+		{
+			childChars = removeAt(childChars, index);
+			var newChildren = new Node[children.length - 1];
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(children, index + 1, newChildren, index, newChildren.length - index);
+			children = newChildren;
+		}
+
+		private static char[] removeAt(char[] chars, int index)
+		{
+			var newChars = new char[chars.length - 1];
+			System.arraycopy(chars, 0, newChars, 0, index);
+			System.arraycopy(chars, index + 1, newChars, index, newChars.length - index);
+			return newChars;
+		}
+
+		// More usages rank higher, equally used keywords rank in their case folded order:
+		private static boolean ranksBefore(Node a, Node b)
+		{
+			return a.usages > b.usages || (a.usages == b.usages && a.key.compareTo(b.key) < 0);
+		}
+
+		private static int insertRanked(Node[] ranking, int size, Node node)
+		{
+			if (size == ranking.length && ranksBefore(node, ranking[size - 1]) == false)
+			{
+				return size;
+			}
+			int i = Math.min(size, ranking.length - 1);
+			while (i > 0 && ranksBefore(node, ranking[i - 1]))
+			{
+				ranking[i] = ranking[i - 1];
+				i--;
+			}
+			ranking[i] = node;
+			return Math.min(size + 1, ranking.length);
+		}
+
+		// Merges the own keyword and the rankings of the children, which have to be up to date:
+		public void updateTop()
+		{
+			var ranking = new Node[TOP_COMPLETIONS];
+			int size = 0;
+			if (keyword != null)
+			{
+				size = insertRanked(ranking, size, this);
+			}
+			for (var child : children)
+			{
+				for (var node : child.top)
+				{
+					if (size == ranking.length && ranksBefore(node, ranking[size - 1]) == false)
+					{
+						break;  // Rest of the child ranking ranks even lower
+					}
+					size = insertRanked(ranking, size, node);
+				}
+			}
+			top = Arrays.copyOf(ranking, size);
+		}
+	}
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private Node root = new Node("");
+	private int size = 0;
+
+	// Folds the case of each character on its own, which keeps the length and therefore the positions of given string:
+	public static String fold(String string)
+	{
+		var chars = string.toCharArray();
+		for (int i = 0; i < chars.length; i++)
+		{
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public void clear()
+	{
+		root = new Node("");
+		size = 0;
+	}
+
+	// Counts one usage of given keyword and returns the nodes from the root to its node. Keywords with the same case folded form count as the first seen one:
+	private ArrayList<Node> count(String keyword)
+	{
+		final var key = fold(keyword);
+		var path = new ArrayList<Node>();
+		var node = root;
+		int i = 0;
+		while (true)
+		{
+			path.add(node);
+			if (i == key.length())
+			{
+				break;
+			}
+			final int index = node.findChild(key.charAt(i));
+			if (index < 0)
+			{
+				var leaf = new Node(key.substring(i));
+				node.addChild(leaf);
+				path.add(leaf);
+				break;
+			}
+			final var child = node.children[index];
+			int common = 1;  // First character matches already
+			while (common < child.label.length() && i + common < key.length() && child.label.charAt(common) == key.charAt(i + common))
+			{
+				common++;
+			}
+			if (common == child.label.length())
+			{
+				node = child;
+				i += common;
+				continue;
+			}
+			// Split edge where the key leaves it:
+			var middle = new Node(child.label.substring(0, common));
+			child.label = child.label.substring(common);
+			middle.addChild(child);
+			middle.updateTop();
+			node.children[index] = middle;
+			path.add(middle);
+			if (i + common < key.length())
+			{
+				var leaf = new Node(key.substring(i + common));
+				middle.addChild(leaf);
+				path.add(leaf);
+			}
+			break;
+		}
+		var target = path.get(path.size() - 1);
+		if (target.keyword == null)
+		{
+			target.keyword = keyword;
+			target.key = key;
+			size++;
+		}
+		target.usages++;
+		return path;
+	}
+
+	// Counts one usage of given keyword and returns whether it is a new keyword:
+	public boolean add(String keyword)
+	{
+		final int oldSize = size;
+		final var path = count(keyword);
+		for (int i = path.size() - 1; i >= 0; i--)
+		{
+			path.get(i).updateTop();
+		}
+		return size > oldSize;
+	}
+
+	// Counts one usage of each given keyword and ranks them afterwards at once:
+	public void addAll(Iterable<String> keywords)
+	{
+		for (var keyword : keywords)
+		{
+			count(keyword);
+		}
+		updateTops(root);
+	}
+
+	// Removes one usage of given keyword regardless of case and the keyword itself with its last usage. Returns whether it was contained:
+	public boolean remove(String keyword)
+	{
+		final var key = fold(keyword);
+		var path = new ArrayList<Node>();
+		var childIndices = new ArrayList<Integer>();  // Index of each path node within its parent
+		var node = root;
+		int i = 0;
+		path.add(node);
+		while (i < key.length())
+		{
+			final int index = node.findChild(key.charAt(i));
+			if (index < 0)
+			{
+				return false;
+			}
+			node = node.children[index];
+			if (key.startsWith(node.label, i) == false)
+			{
+				return false;
+			}
+			i += node.label.length();
+			path.add(node);
+			childIndices.add(index);
+		}
+		if (node.keyword == null)
+		{
+			return false;
+		}
+		if (--node.usages == 0)
+		{
+			node.keyword = null;
+			node.key = null;
+			size--;
+		}
+		// Drop nodes without keywords below them and merge those that only lead on to one child:
+		for (int depth = path.size() - 1; depth > 0; depth--)
+		{
+			final var current = path.get(depth);
+			final var parent = path.get(depth - 1);
+			if (current.keyword == null && current.children.length == 0)
+			{
+				parent.removeChild(childIndices.get(depth - 1));
+			}
+			else if (current.keyword == null && current.children.length == 1)
+			{
+				final var child = current.children[0];
+				child.label = current.label + child.label;
+				parent.children[childIndices.get(depth - 1)] = child;
+			}
+			else
+			{
+				current.updateTop();
+			}
+		}
+		root.updateTop();
+		return true;
+	}
+
+	private static void updateTops(Node node)
+	{
+		for (var child : node.children)
+		{
+			updateTops(child);
+		}
+		node.updateTop();
+	}
+
+	// Returns the node whose subtree contains exactly the keywords starting with given case folded prefix, or null if there is none:
+	private Node findNode(String prefix)
+	{
+		var node = root;
+		int i = 0;
+		while (i < prefix.length())
+		{
+			final int index = node.findChild(prefix.charAt(i));
+			if (index < 0)
+			{
+				return null;
+			}
+			node = node.children[index];
+			final int length = Math.min(node.label.length(), prefix.length() - i);
+			if (node.label.regionMatches(0, prefix, i, length) == false)
+			{
+				return null;
+			}
+			i += length;
+		}
+		return node;
+	}
+
+	// Returns the most used keywords starting with given prefix regardless of case, ranked by their usages:
+	@Override
+	public List<String> getTopCompletions(String prefix)
+	{
+		var completions = new ArrayList<String>(TOP_COMPLETIONS);
+		final var node = findNode(fold(prefix));
+		if (node != null)
+		{
+			for (var topNode : node.top)
+			{
+				completions.add(topNode.keyword);
+			}
+		}
+		return completions;
+	}
+
+	// Returns the most used keyword starting with given prefix regardless of case, or null if there is none:
+	@Override
+	public String getBestCompletion(String prefix)
+	{
+		final var node = findNode(fold(prefix));
+		return (node != null && node.top.length > 0 ? node.top[0].keyword : null);
+	}
+
+	public int getUsages(String keyword)
+	{
+		final var key = fold(keyword);
+		final var node = findNode(key);
+		return (node != null && key.equals(node.key) ? node.usages : 0);
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+
+/** Open addressing hash map of long keys to int values without boxing. Key 0 is reserved for empty slots. */
+final class LongIntHashMap
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	public static final int NO_VALUE = -1;  // Returned for keys that are not contained
+
+	private static final int INITIAL_CAPACITY = 16;  // Has to be a power of two
+	private static final int MAX_LOAD_PERCENT = 50;  // Short probe sequences matter more than memory
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private long[] keys;
+	private int[] values;
+	private int size = 0;
+
+	public LongIntHashMap(int expectedSize)
+	{
+		int capacity = INITIAL_CAPACITY;
+		while ((long)expectedSize * 100 > (long)capacity * MAX_LOAD_PERCENT)
+		{
+			capacity <<= 1;
+		}
+		keys = new long[capacity];
+		values = new int[capacity];
+	}
+	public LongIntHashMap()
+	{
+		this(0);
+	}
+
+	public LongIntHashMap copy()
+	{
+		var map = new LongIntHashMap();
+		map.keys = keys.clone();
+		map.values = values.clone();
+		map.size = size;
+		return map;
+	}
+
+	// Spreads the key bits over the slot index bits (finalizer of SplitMix64):
+	private static int hash(long key)
+	{
+		key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+		key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return (int)(key ^ (key >>> 33));
+	}
+
+	// Returns the slot of given key or the empty slot where it would be inserted:
+	private int findSlot(long key)
+	{
+		final int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (keys[slot] != 0L && keys[slot] != key)
+		{
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void resize(int capacity)
+	{
+		final var oldKeys = keys;
+		final var oldValues = values;
+		keys = new long[capacity];
+		values = new int[capacity];
+		for (int slot = 0; slot < oldKeys.length; slot++)
+		{
+			if (oldKeys[slot] != 0L)
+			{
+				final int newSlot = findSlot(oldKeys[slot]);
+				keys[newSlot] = oldKeys[slot];
+				values[newSlot] = oldValues[slot];
+			}
+		}
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	// Returns all contained keys in slot order:
+	public long[] keys()
+	{
+		var containedKeys = new long[size];
+		int i = 0;
+		for (var key : keys)
+		{
+			if (key != 0L)
+			{
+				containedKeys[i++] = key;
+			}
+		}
+		return containedKeys;
+	}
+
+	public boolean containsKey(long key)
+	{
+		return key != 0L && keys[findSlot(key)] == key;
+	}
+
+	public int get(long key)
+	{
+		if (key == 0L)
+		{
+			return NO_VALUE;
+		}
+		final int slot = findSlot(key);
+		return (keys[slot] == key ? values[slot] : NO_VALUE);
+	}
+
+	public void put(long key, int value)
+	{
+		if (key == 0L)
+		{
+			throw new IllegalArgumentException("Key 0 is reserved for empty slots");
+		}
+		int slot = findSlot(key);
+		if (keys[slot] != key)
+		{
+			if ((long)(size + 1) * 100 > (long)keys.length * MAX_LOAD_PERCENT)
+			{
+				resize(keys.length << 1);
+				slot = findSlot(key);
+			}
+			keys[slot] = key;
+			size++;
+		}
+		values[slot] = value;
+	}
+
+	public void remove(long key)
+	{
+		if (key == 0L)
+		{
+			return;
+		}
+		final int mask = keys.length - 1;
+		int slot = findSlot(key);
+		if (keys[slot] != key)
+		{
+			return;
+		}
+		// Shift following entries of the probe sequence back, so no tombstones are required:
+		int nextSlot = slot;
+		while (true)
+		{
+			nextSlot = (nextSlot + 1) & mask;
+			if (keys[nextSlot] == 0L)
+			{
+				break;
+			}
+			final int homeSlot = hash(keys[nextSlot]) & mask;
+			if (((nextSlot - homeSlot) & mask) >= ((nextSlot - slot) & mask))
+			{
+				keys[slot] = keys[nextSlot];
+				values[slot] = values[nextSlot];
+				slot = nextSlot;
+			}
+		}
+		keys[slot] = 0L;
+		size--;
+	}
+
+}
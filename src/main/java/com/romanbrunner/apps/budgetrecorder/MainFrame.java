@@ -4,32 +4,39 @@ import java.awt.Component;
 import java.awt.KeyEventDispatcher;
 import java.awt.KeyboardFocusManager;
 import java.awt.event.KeyEvent;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
-import java.text.DateFormat;
-import java.util.Date;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JRootPane;
 import javax.swing.SwingUtilities;
 
+import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
 
 // import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -50,10 +57,17 @@ public class MainFrame  // Singleton class
 	private static final String EXCERPT_DATA_FRAME_NAME = "Budget Recorder (Excerpt Data)";
 	private static final String LOGO_FILE_PATH = "/images/Logo.jpg";
 	private static final String CONFIG_PATH = "/config.properties";
+	private static final String SAVE_ERROR_TITLE = "Saving failed";
+	private static final String OUTDATED_JOURNAL_TITLE = "Unsaved changes set aside";
+	private static final String OUTDATED_JOURNAL_TEXT = "The database file was replaced since the last changes were recorded, e.g. by a sync client or a restore.\nThese changes were not applied and are kept in:\n<FILE>";
+	private static final String TEMP_FILE_EXTENSION = ".tmp";
+	private static final String RETIRED_FILE_EXTENSION = ".retired";
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;  // Bytes
 
-	public static final int VERSION_MAJOR = 2;
-	public static final int VERSION_MINOR = 1;
+	public static final int VERSION_MAJOR = 3;  // 3: Dates are written as single yyyymmdd numbers, which older versions can not read
+	public static final int VERSION_MINOR = 0;
 	public static final int VERSION_PATCH = 0;
+	public static final int OLDEST_READABLE_VERSION_MAJOR = 2;  // Dates as day, month and year arrays, which still get read
 
 
 	// --------------------
@@ -61,7 +75,15 @@ public class MainFrame  // Singleton class
 	// --------------------
 
 	private static MainFrame instance = null;
-	private static List<DataEntry> dataEntries = new LinkedList<DataEntry>();
+	private static DataStore dataStore = new DataStore();
+	private static DataRollups dataRollups = new DataRollups();
+	private static BalanceIndex balanceIndex = new BalanceIndex();
+	private static DateIndex dateIndex = new DateIndex();
+	private static KeywordIndex nameIndex = new KeywordIndex(DataEntry.DataRowType.NAME, () -> dataStore);
+	private static KeywordIndex locationIndex = new KeywordIndex(DataEntry.DataRowType.LOCATION, () -> dataStore);
+	private static SearchIndex searchIndex = new SearchIndex();
+	private static Journal journal;
+	private static PersistenceService persistenceService;
 	private static InputPanel inputPanel;
 	private static DataPanel dataPanel;
 	private static DataPanel excerptDataPanel;
@@ -72,6 +94,16 @@ public class MainFrame  // Singleton class
 	private static String databasePath;
 	private static String backupPath;
 	private static boolean testModeActive;
+	private static FsyncPolicy fsyncPolicy;
+	private static boolean binarySnapshotActive;
+	private static boolean loadReportActive;
+	private static BackupStore backupStore;
+	private static BackupStore partitionBackupStore;
+	private static boolean partitionedDatabaseActive;
+	private static PartitionStore partitionStore = null;  // Null if the database is a single json file
+	private static boolean databaseWatcherActive;
+	private static DatabaseWatcher databaseWatcher = null;  // Null if external changes are not watched
+	private static boolean isReloading = false;  // Only accessed on the event dispatch thread
 
 	/**
 	 * @return the instance
@@ -98,42 +130,57 @@ public class MainFrame  // Singleton class
 			this(null);
 		}
 
-		@Override
-		public void serialize(MainFrame obj, JsonGenerator jsonGenerator, SerializerProvider serializer)
+		// Writes the database object with the data entries of given data store, see DataEntry.Serializer.writeRow for the compact mode:
+		public static void writeDatabase(JsonGenerator jsonGenerator, DataStore dataStore, boolean compact) throws Exception
 		{
-			try
+			jsonGenerator.writeStartObject();
+			jsonGenerator.writeStringField("jsonType", "database");
+			// Store current version:
+			jsonGenerator.writeNumberField("versionMajor", VERSION_MAJOR);
+			jsonGenerator.writeNumberField("versionMinor", VERSION_MINOR);
+			jsonGenerator.writeNumberField("versionPatch", VERSION_PATCH);
+			writeTypes(jsonGenerator);
+			// Store data entries:
+			jsonGenerator.writeArrayFieldStart("dataEntries");
+			for (int row = 0; row < dataStore.size(); row++)
+			{
+				DataEntry.Serializer.writeRow(jsonGenerator, dataStore, row, compact);
+			}
+			jsonGenerator.writeEndArray();
+			jsonGenerator.writeEndObject();
+		}
+		public static void writeDatabase(JsonGenerator jsonGenerator, DataStore dataStore) throws Exception
+		{
+			writeDatabase(jsonGenerator, dataStore, true);
+		}
+
+		// Writes the types array field with the type and subtype names:
+		static void writeTypes(JsonGenerator jsonGenerator) throws Exception
+		{
+			jsonGenerator.writeArrayFieldStart("types");
+			for (int i = 0; i < DataEntry.TYPE_NAMES.length; i++)
 			{
 				jsonGenerator.writeStartObject();
-				jsonGenerator.writeStringField("jsonType", "database");
-				// Store current version:
-				jsonGenerator.writeNumberField("versionMajor", VERSION_MAJOR);
-				jsonGenerator.writeNumberField("versionMinor", VERSION_MINOR);
-				jsonGenerator.writeNumberField("versionPatch", VERSION_PATCH);
-				// Store type and subtype names:
-				jsonGenerator.writeArrayFieldStart("types");
-				for (int i = 0; i < DataEntry.TYPE_NAMES.length; i++)
+				jsonGenerator.writeStringField("typeName", DataEntry.TYPE_NAMES[i]);
+				jsonGenerator.writeArrayFieldStart("subtypeNames");
+				for (int j = 0; j < DataEntry.SUBTYPE_NAMES[i].length; j++)
 				{
-					jsonGenerator.writeStartObject();
-					jsonGenerator.writeStringField("typeName", DataEntry.TYPE_NAMES[i]);
-					jsonGenerator.writeArrayFieldStart("subtypeNames");
-					for (int j = 0; j < DataEntry.SUBTYPE_NAMES[i].length; j++)
-					{
-						jsonGenerator.writeString(DataEntry.SUBTYPE_NAMES[i][j]);
-					}
-					jsonGenerator.writeEndArray();
-					jsonGenerator.writeBooleanField("isPositiveBalanceType", DataEntry.IS_POSITIVE_BALANCE_TYPE[i]);
-					jsonGenerator.writeEndObject();
-				}
-				jsonGenerator.writeEndArray();
-				// Store data entries:
-				jsonGenerator.writeArrayFieldStart("dataEntries");
-				for (var dataEntry : dataEntries)
-				{
-					jsonGenerator.writeObject(dataEntry);
+					jsonGenerator.writeString(DataEntry.SUBTYPE_NAMES[i][j]);
 				}
 				jsonGenerator.writeEndArray();
+				jsonGenerator.writeBooleanField("isPositiveBalanceType", DataEntry.IS_POSITIVE_BALANCE_TYPE[i]);
 				jsonGenerator.writeEndObject();
 			}
+			jsonGenerator.writeEndArray();
+		}
+
+		@Override
+		public void serialize(MainFrame obj, JsonGenerator jsonGenerator, SerializerProvider serializer)
+		{
+			try
+			{
+				writeDatabase(jsonGenerator, dataStore);
+			}
 			catch (Exception exception)
 			{
 				exception.printStackTrace();
@@ -154,71 +201,142 @@ public class MainFrame  // Singleton class
 			this(null);
 		}
 
-		@Override
-		public MainFrame deserialize(JsonParser parser, DeserializationContext deserializer)
+		// Reads the types array at the current array start token of given parser into the type and subtype names:
+		static void readTypes(JsonParser parser) throws Exception
 		{
-			try
+			var typeNames = new LinkedList<String>();
+			var subtypeNames = new LinkedList<List<String>>();
+			var isPositiveBalanceTypes = new LinkedList<Boolean>();
+			while (parser.nextToken() == JsonToken.START_OBJECT)
 			{
-				final ObjectMapper mapper = new ObjectMapper();
-				final var codec = parser.getCodec();
-				final JsonNode node = codec.readTree(parser);
-
-				// Deserialize depending on the json-type:
-				var jsonType = node.get("jsonType").textValue();
-				if (jsonType.compareTo("database") == 0)
+				String typeName = null;
+				LinkedList<String> list = null;
+				Boolean isPositiveBalanceType = null;
+				while (parser.nextToken() == JsonToken.FIELD_NAME)
 				{
-					// Check json compatibility:
-					var versionMajor = node.get("versionMajor").intValue();
-					if (versionMajor != VERSION_MAJOR)
+					final var fieldName = parser.getCurrentName();
+					parser.nextToken();
+					switch (fieldName)
 					{
-						throw new Exception("ERROR: Target database json does not have matching major version (" + versionMajor + " instead of " + VERSION_MAJOR + ")");
+						case "typeName":
+							typeName = parser.getText();
+							break;
+						case "subtypeNames":
+							list = new LinkedList<String>();
+							while (parser.nextToken() != JsonToken.END_ARRAY)
+							{
+								list.add(parser.getText());
+							}
+							break;
+						case "isPositiveBalanceType":
+							isPositiveBalanceType = parser.getValueAsBoolean();
+							break;
+						default:
+							parser.skipChildren();  // Ignore unknown fields
+							break;
 					}
-					var versionMinor = node.get("versionMinor").intValue();
-					if (versionMinor != VERSION_MINOR)
+				}
+				if (typeName == null || list == null || isPositiveBalanceType == null)
+				{
+					throw new Exception("ERROR: Couldn't find a required json node of type " + typeNames.size());
+				}
+				typeNames.add(typeName);
+				subtypeNames.add(list);
+				isPositiveBalanceTypes.add(isPositiveBalanceType);
+			}
+			// Convert name lists to arrays:
+			DataEntry.TYPE_NAMES = typeNames.toArray(new String[0]);
+			DataEntry.SUBTYPE_NAMES = new String[subtypeNames.size()][];
+			for (int j = 0; j < subtypeNames.size(); j++)
+			{
+				DataEntry.SUBTYPE_NAMES[j] = subtypeNames.get(j).toArray(new String[0]);
+			}
+			DataEntry.IS_POSITIVE_BALANCE_TYPE = isPositiveBalanceTypes.toArray(new Boolean[0]);
+		}
+
+		// Reads the database object at the current object start token of given parser into the type names and given data store:
+		static void readDatabase(JsonParser parser, DataStore targetStore) throws Exception
+		{
+			if (parser.currentToken() != JsonToken.START_OBJECT)
+			{
+				throw new Exception("ERROR: Expected json object instead of " + parser.currentToken());
+			}
+
+			// Deserialize token by token straight into the data store:
+			var missingFields = new LinkedList<String>(Arrays.asList("jsonType", "versionMajor", "versionMinor", "versionPatch", "types", "dataEntries"));
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				final var fieldName = parser.getCurrentName();
+				parser.nextToken();
+				missingFields.remove(fieldName);
+				switch (fieldName)
+				{
+					case "jsonType":
 					{
-						System.out.println("WARNING: Target database json does not have matching minor version (" + versionMinor + " instead of " + VERSION_MINOR + ")");
+						var jsonType = parser.getText();
+						if (jsonType.compareTo("database") != 0)
+						{
+							throw new Exception("ERROR: Invalid json type (" + jsonType + ")");
+						}
+						break;
 					}
-					var versionPatch = node.get("versionPatch").intValue();
-					if (versionPatch != VERSION_PATCH)
+					case "versionMajor":
 					{
-						System.out.println("WARNING: Target database json does not have matching patch version (" + versionPatch + " instead of " + VERSION_PATCH + ")");
+						// Check json compatibility:
+						var versionMajor = parser.getValueAsInt();
+						if (versionMajor < OLDEST_READABLE_VERSION_MAJOR || versionMajor > VERSION_MAJOR)
+						{
+							throw new Exception("ERROR: Target database json does not have matching major version (" + versionMajor + " instead of " + OLDEST_READABLE_VERSION_MAJOR + " to " + VERSION_MAJOR + ")");
+						}
+						break;
 					}
-					// Extract type and subtype names:
-					var typeNames = new LinkedList<String>();
-					var subtypeNames = new LinkedList<List<String>>();
-					var isPositiveBalanceTypes = new LinkedList<Boolean>();
-					var typesNode = node.get("types");
-					for (var typeNode : typesNode)
+					case "versionMinor":
 					{
-						typeNames.add(typeNode.get("typeName").asText());
-						var list = new LinkedList<String>();
-						var iterator = typeNode.get("subtypeNames").elements();
-						while (iterator.hasNext())
+						var versionMinor = parser.getValueAsInt();
+						if (versionMinor != VERSION_MINOR)
 						{
-							list.add(iterator.next().asText());
+							System.out.println("WARNING: Target database json does not have matching minor version (" + versionMinor + " instead of " + VERSION_MINOR + ")");
 						}
-						subtypeNames.add(list);
-						isPositiveBalanceTypes.add(typeNode.get("isPositiveBalanceType").booleanValue());
+						break;
 					}
-					// Convert name lists to arrays:
-					DataEntry.TYPE_NAMES = typeNames.toArray(new String[0]);
-					DataEntry.SUBTYPE_NAMES = new String[subtypeNames.size()][];
-					for (int j = 0; j < subtypeNames.size(); j++)
+					case "versionPatch":
 					{
-						DataEntry.SUBTYPE_NAMES[j] = subtypeNames.get(j).toArray(new String[0]);
+						var versionPatch = parser.getValueAsInt();
+						if (versionPatch != VERSION_PATCH)
+						{
+							System.out.println("WARNING: Target database json does not have matching patch version (" + versionPatch + " instead of " + VERSION_PATCH + ")");
+						}
+						break;
 					}
-					DataEntry.IS_POSITIVE_BALANCE_TYPE = isPositiveBalanceTypes.toArray(new Boolean[0]);
-					// Extract and create data entries:
-					var dataEntriesNode = node.get("dataEntries");
-					for (var dataEntryNode : dataEntriesNode)
+					case "types":
+						readTypes(parser);
+						break;
+					case "dataEntries":
 					{
-						dataEntries.add(mapper.treeToValue(dataEntryNode, DataEntry.class));
+						// Extract data entries directly into new rows:
+						while (parser.nextToken() != JsonToken.END_ARRAY)
+						{
+							DataEntry.Deserializer.readRow(parser, targetStore);
+						}
+						break;
 					}
+					default:
+						parser.skipChildren();  // Ignore unknown fields
+						break;
 				}
-				else
-				{
-					throw new Exception("ERROR: Invalid json type (" + jsonType + ")");
-				}
+			}
+			if (missingFields.isEmpty() == false)
+			{
+				throw new Exception("ERROR: Couldn't find a required json node (" + String.join(", ", missingFields) + ")");
+			}
+		}
+
+		@Override
+		public MainFrame deserialize(JsonParser parser, DeserializationContext deserializer)
+		{
+			try
+			{
+				readDatabase(parser, dataStore);
 			}
 			catch (Exception exception)
 			{
@@ -292,6 +410,20 @@ public class MainFrame  // Singleton class
 				databasePath = prop.getProperty("databasePath");
 				backupPath = prop.getProperty("backupPath");
 			}
+			backupStore = new BackupStore(new File(backupPath), databaseName);
+			partitionBackupStore = new BackupStore(new File(backupPath), databaseName + PartitionStore.DIRECTORY_EXTENSION);
+			// Extract durability settings:
+			fsyncPolicy = FsyncPolicy.parse(prop.getProperty("fsyncPolicy"), prop.getProperty("fsyncInterval"));
+			// Extract startup settings:
+			partitionedDatabaseActive = "true".equals(prop.getProperty("partitionedDatabaseActive"));
+			binarySnapshotActive = "true".equals(prop.getProperty("binarySnapshotActive"));
+			if (binarySnapshotActive && partitionedDatabaseActive)
+			{
+				System.out.println("WARNING: Binary snapshot is not used for a partitioned database, which already loads only what is needed");
+				binarySnapshotActive = false;
+			}
+			databaseWatcherActive = "true".equals(prop.getProperty("databaseWatcherActive"));
+			loadReportActive = "true".equals(prop.getProperty("loadReportActive"));
 		}
 		else
 		{
@@ -299,14 +431,135 @@ public class MainFrame  // Singleton class
 		}
 	}
 
+	private static void readJsonDatabaseFile(File databaseFile) throws Exception
+	{
+		var mapper = new ObjectMapper();
+		mapper.configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, false);
+		DatabaseLoader.read(databaseFile, mapper, dataStore, loadReportActive);
+	}
+
+	// Tells the user where the records of given journal are kept if they did not fit the snapshot:
+	private static void warnOfOutdatedJournal(Journal journal)
+	{
+		final var outdatedFile = journal.getOutdatedFile();
+		if (outdatedFile != null)
+		{
+			JOptionPane.showMessageDialog(dataFrame, OUTDATED_JOURNAL_TEXT.replace("<FILE>", outdatedFile.getPath()), OUTDATED_JOURNAL_TITLE, JOptionPane.WARNING_MESSAGE);
+		}
+	}
+
+	// Renames the json database file and its journal after they got split into partitions, so no diverging copy of the database is left behind:
+	private static void retireJsonDatabaseFile(File databaseFile, File journalFile) throws Exception
+	{
+		Files.move(databaseFile.toPath(), new File(databaseFile.getPath() + RETIRED_FILE_EXTENSION).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		if (journalFile.exists())
+		{
+			Files.move(journalFile.toPath(), new File(journalFile.getPath() + RETIRED_FILE_EXTENSION).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
 	private static void readDatabaseFile() throws Exception
 	{
 		final var databaseFile = new File(databasePath + "/" + databaseName + ".json");
+		var journalFile = new File(databasePath + "/" + databaseName + Journal.FILE_EXTENSION);
+		final var binaryFile = new File(databasePath + "/" + databaseName + BinarySnapshot.FILE_EXTENSION);
+		var snapshotFile = databaseFile;
 
-		// Load database from json database file:
-		var mapper = new ObjectMapper();
-		mapper.configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, false);
-		mapper.readValue(databaseFile, MainFrame.class);
+		DataStore binaryDataStore = null;
+		int assignedIds = 0;
+		if (partitionedDatabaseActive)
+		{
+			final var partitionDirectory = new File(databasePath + "/" + databaseName + PartitionStore.DIRECTORY_EXTENSION);
+			partitionStore = new PartitionStore(partitionDirectory, fsyncPolicy, partitionBackupStore);
+			if (partitionStore.exists())
+			{
+				if (databaseFile.exists())
+				{
+					// Either the split got interrupted or the json database file got restored, so which one is newer is unknown:
+					throw new Exception("ERROR: Database exists both as " + databaseFile.getName() + " and as partitions, remove the outdated one");
+				}
+				// Load only the repeating entries and the newest years, older years get loaded on demand:
+				partitionStore.readManifest();
+				partitionStore.readEager(dataStore);
+			}
+			else
+			{
+				// Split json database file including its journal into partitions once:
+				readJsonDatabaseFile(databaseFile);
+				dataStore.assignMissingIds(0L, 0);
+				var jsonJournal = new Journal(databaseFile, journalFile, fsyncPolicy);
+				jsonJournal.replay(dataStore);
+				warnOfOutdatedJournal(jsonJournal);
+				partitionStore.create(dataStore);
+				jsonJournal.close();
+				retireJsonDatabaseFile(databaseFile, journalFile);
+			}
+			snapshotFile = partitionStore.getManifestFile();
+			journalFile = new File(partitionDirectory, databaseName + Journal.FILE_EXTENSION);
+		}
+		else
+		{
+			if (databaseFile.exists() == false && new File(databaseFile.getPath() + RETIRED_FILE_EXTENSION).exists())
+			{
+				throw new Exception("ERROR: Database was split into partitions, activate partitionedDatabaseActive in the config or restore " + databaseFile.getName() + RETIRED_FILE_EXTENSION);
+			}
+			// Load database from binary snapshot if it is up to date, otherwise from json database file:
+			if (binarySnapshotActive)
+			{
+				binaryDataStore = BinarySnapshot.read(binaryFile, databaseFile);
+			}
+			if (binaryDataStore != null)
+			{
+				dataStore = binaryDataStore;
+			}
+			else
+			{
+				readJsonDatabaseFile(databaseFile);
+			}
+			// Database files of former versions have no ids, which get derived of the entry positions until the file gets written:
+			assignedIds = dataStore.assignMissingIds(0L, 0);
+		}
+		// Replay changes since the last snapshot:
+		journal = new Journal(snapshotFile, journalFile, fsyncPolicy);
+		final int replayedRecords = journal.replay(dataStore, partitionStore);
+		warnOfOutdatedJournal(journal);
+		persistenceService = new PersistenceService(journal);
+		persistenceService.setStatusListener(MainFrame::showSaveStatus);
+		Runtime.getRuntime().addShutdownHook(new Thread(persistenceService::shutdown));
+		if (databaseWatcherActive)
+		{
+			// Reload changes made by others, e.g. a sync client, but not the own writes:
+			databaseWatcher = new DatabaseWatcher(journalFile.getParentFile(), Arrays.asList(snapshotFile, journalFile), () -> SwingUtilities.invokeLater(MainFrame::reloadExternalChanges));
+			persistenceService.setWriteListener(databaseWatcher::rememberOwnState);
+			databaseWatcher.start();
+		}
+		// Create data bundle rollups and indices:
+		dataRollups.rebuild(dataStore);
+		balanceIndex.rebuild(dataStore);
+		dateIndex.rebuild(dataStore);
+		nameIndex.rebuild(dataStore);
+		locationIndex.rebuild(dataStore);
+		searchIndex.rebuild(dataStore);
+		if (partitionStore != null)
+		{
+			for (var year : partitionStore.getColdYears())
+			{
+				addPartitionAggregates(year, 1);
+			}
+		}
+		// Fold replayed changes and assigned ids into a new snapshot:
+		if (replayedRecords > 0 || assignedIds > 0 || (partitionStore != null && partitionStore.hasDirty()))
+		{
+			if (partitionStore != null)
+			{
+				partitionStore.markDirty(dataStore);
+			}
+			compactDatabaseFile();
+		}
+		else if (binarySnapshotActive && binaryDataStore == null)
+		{
+			persistenceService.writeBinarySnapshot(dataStore.copy());
+		}
 	}
 
 	private static void createInputFrame() throws Exception
@@ -382,6 +635,33 @@ public class MainFrame  // Singleton class
 		{
 			// Load settings from config file:
 			readConfigFile();
+			// Handle backup commands instead of starting the application if given:
+			if (args.length == 1 && args[0].equals("--list-backups"))
+			{
+				for (var backupName : backupStore.getBackupNames())
+				{
+					System.out.println(backupName);
+				}
+				for (var backupName : partitionBackupStore.getBackupNames())
+				{
+					System.out.println(backupName);
+				}
+				return;
+			}
+			if (args.length == 3 && args[0].equals("--restore-backup"))
+			{
+				// Backups of the partitions restore all their files into a directory:
+				if (partitionBackupStore.getBackupNames().contains(args[1]))
+				{
+					partitionBackupStore.restoreFiles(args[1], new File(args[2]));
+				}
+				else
+				{
+					backupStore.restore(args[1], new File(args[2]));
+				}
+				System.out.println("Restored backup " + args[1] + " into " + args[2]);
+				return;
+			}
 			// Load database from json file:
 			readDatabaseFile();
 			// Schedule a job for the event dispatch thread:
@@ -446,72 +726,515 @@ public class MainFrame  // Singleton class
 		}
 	}
 
+	private static void indexDataEntry(DataEntry e)
+	{
+		dataRollups.add(e);
+		balanceIndex.add(e);
+		dateIndex.add(e);
+		nameIndex.add(e);
+		locationIndex.add(e);
+		searchIndex.add(e);
+	}
+
+	private static void unindexDataEntry(DataEntry e)
+	{
+		dataRollups.remove(e);
+		balanceIndex.remove(e);
+		dateIndex.remove(e);
+		nameIndex.remove(e);
+		locationIndex.remove(e);
+		searchIndex.remove(e);
+	}
+
+	// Adds (sign = 1) or subtracts (sign = -1) the monthly aggregates of given cold year to the rollups and balance index:
+	private static void addPartitionAggregates(int year, int sign)
+	{
+		final var monthBalances = partitionStore.getMonthBalances(year);
+		final var monthEntries = partitionStore.getMonthEntries(year);
+		for (int month = 1; month <= monthEntries.length; month++)
+		{
+			if (monthEntries[month - 1] != 0)
+			{
+				final int startDay = Date.toEpochDay(1, month, year);
+				dataRollups.addAggregate(startDay, sign * monthBalances[month - 1], sign * monthEntries[month - 1]);
+				balanceIndex.addAggregate(startDay, sign * monthBalances[month - 1], sign * monthEntries[month - 1]);
+			}
+		}
+	}
+
+	// Appends the data entries of given cold year to the data store and replaces its aggregates by them:
+	private static void loadPartition(int year) throws Exception
+	{
+		final int firstRow = dataStore.size();
+		partitionStore.read(year, dataStore);
+		addPartitionAggregates(year, -1);
+		for (int row = firstRow; row < dataStore.size(); row++)
+		{
+			indexDataEntry(dataStore.getDataEntry(row));
+		}
+		persistenceService.record(journal.encodeLoad(year));
+	}
+
+	// Loads all cold years between given epoch days (inclusive):
+	private static void ensureLoaded(int startDay, int endDay) throws Exception
+	{
+		if (partitionStore != null)
+		{
+			for (var year : partitionStore.getColdYears(PartitionStore.getYear(startDay), PartitionStore.getYear(endDay)))
+			{
+				loadPartition(year);
+			}
+		}
+	}
+
+	private static void ensureLoaded(DataEntry e) throws Exception
+	{
+		if (partitionStore != null && partitionStore.isLoaded(PartitionStore.getKey(e)) == false)
+		{
+			loadPartition(PartitionStore.getKey(e));
+		}
+	}
+
+	private static void ensureAllLoaded() throws Exception
+	{
+		if (partitionStore != null)
+		{
+			for (var year : partitionStore.getColdYears())
+			{
+				loadPartition(year);
+			}
+		}
+	}
+
+	private static void markDirty(DataEntry e)
+	{
+		if (partitionStore != null)
+		{
+			partitionStore.markDirty(e);
+		}
+	}
+
 	public static void addDataEntry(DataEntry e) throws Exception
 	{
-		dataEntries.add(e);
+		ensureLoaded(e);
+		markDirty(e);
+		dataStore.add(e);
+		indexDataEntry(e);
+		persistenceService.record(journal.encodeAdd(e));
+		compactDatabaseFileIfRequired();
 	}
 
 	public static void removeDataEntry(DataEntry e) throws Exception
 	{
-		dataEntries.remove(e);
+		if (e.getStore() != dataStore || dataStore.getRow(e.getId()) != e.getRow())
+		{
+			throw new Exception("ERROR: Data entry " + e.getId() + " is not part of the database");
+		}
+		markDirty(e);
+		persistenceService.record(journal.encodeRemove(e));
+		unindexDataEntry(e);
+		dataStore.remove(e);
+		compactDatabaseFileIfRequired();
+	}
+
+	public static void setDataEntryValue(DataEntry e, DataEntry.DataRowType dataRowType, Object value) throws Exception
+	{
+		// Take entry out of rollups and indices while it is changed, so only the parts of the old and new values get adjusted:
+		markDirty(e);
+		unindexDataEntry(e);
+		try
+		{
+			e.setValue(dataRowType, value);
+		}
+		finally
+		{
+			indexDataEntry(e);
+		}
+		ensureLoaded(e);  // Changed into a cold year
+		markDirty(e);
+		persistenceService.record(journal.encodeModify(e));
+		compactDatabaseFileIfRequired();
 	}
 
 	public static LinkedList<DataEntry> getDataEntries() throws Exception
 	{
-		return new LinkedList<>(dataEntries);
+		return dataStore.getDataEntries();
 	}
-	public static LinkedList<DataEntry> getDataEntries(com.romanbrunner.apps.budgetrecorder.Date start, com.romanbrunner.apps.budgetrecorder.Date end) throws Exception
+	// Returns the given amount of first data entries regarding given sorting:
+	public static LinkedList<DataEntry> getSortedDataEntries(DataEntry.DataRowSorting sorting, int limit) throws Exception
 	{
-		var filteredDataEntries = new LinkedList<DataEntry>();
-		for (var dataEntry : dataEntries)
+		var dataEntries = new LinkedList<DataEntry>();
+		int[] rows = dataStore.getSortedRows(sorting);
+		if (sorting.row == DataEntry.DataRowType.DATE && sorting.mode == DataEntry.DataRowSorting.Mode.DOWNWARD)
 		{
-			if (dataEntry.getDate().isInTimeframe(start, end) || dataEntry.isRepeatedIntoTimeframe(start, end))
+			// Load cold years from the newest one until the first data entries are all newer:
+			LinkedList<Integer> coldYears;
+			while (partitionStore != null && (coldYears = partitionStore.getColdYears()).isEmpty() == false
+				&& (rows.length < limit || PartitionStore.getYear(dataStore.getDate(rows[limit - 1])) <= coldYears.getLast()))
 			{
-				filteredDataEntries.add(dataEntry);
+				loadPartition(coldYears.getLast());
+				rows = dataStore.getSortedRows(sorting);
 			}
 		}
-		return filteredDataEntries;
+		else
+		{
+			ensureAllLoaded();
+			rows = dataStore.getSortedRows(sorting);
+		}
+		for (int i = 0; i < rows.length && i < limit; i++)
+		{
+			dataEntries.add(dataStore.getDataEntry(rows[i]));
+		}
+		return dataEntries;
+	}
+	// Returns the given amount of first data entries regarding given sorting, whose name or location contains given filter text while tolerating typing errors:
+	public static LinkedList<DataEntry> getSortedDataEntries(DataEntry.DataRowSorting sorting, int limit, String filter) throws Exception
+	{
+		if (SearchIndex.normalize(filter).isEmpty())
+		{
+			return getSortedDataEntries(sorting, limit);
+		}
+		ensureAllLoaded();
+		final var ids = searchIndex.search(filter);
+		var rows = new int[ids.length];
+		for (int i = 0; i < ids.length; i++)
+		{
+			rows[i] = dataStore.getRow(ids[i]);
+		}
+		// Only the matching rows get sorted:
+		rows = dataStore.getSortedRows(sorting, rows);
+		var dataEntries = new LinkedList<DataEntry>();
+		for (int i = 0; i < rows.length && i < limit; i++)
+		{
+			dataEntries.add(dataStore.getDataEntry(rows[i]));
+		}
+		return dataEntries;
+	}
+	public static LinkedList<DataEntry> getDataEntries(Date start, Date end) throws Exception
+	{
+		ensureLoaded(start.getEpochDay(), end.getEpochDay());
+		return dateIndex.getDataEntries(start.getEpochDay(), end.getEpochDay());
 	}
 
-	@SuppressWarnings("unchecked")
-	public static LinkedList<String>[][] getDataRowValuesAsStrings(DataEntry.DataRowType dataRowType) throws Exception
+	public static LinkedList<DataBundle> getDataBundles(Interval interval, boolean showEmptyEntries) throws Exception
 	{
-		// Create and initialise keywords lists:
-		LinkedList<String>[][] keywords = new LinkedList[DataEntry.TYPE_NAMES.length][];
-		for (int i = 0; i < DataEntry.TYPE_NAMES.length; i++)
+		// Cold years only have monthly aggregates:
+		if (interval.toInt() < Interval.MONTHLY.toInt())
 		{
-			var subtypeLength = DataEntry.SUBTYPE_NAMES[i].length;
-			keywords[i] = new LinkedList[subtypeLength];
-			for (int j = 0; j < subtypeLength; j++)
-			{
-				keywords[i][j] = new LinkedList<String>();
-			}
+			ensureAllLoaded();
 		}
-		// Fill lists with data entries:
-		for (var dataEntry : dataEntries)
+		return dataRollups.getDataBundles(interval, showEmptyEntries);
+	}
+
+	public static long getBalance(Date start, Date end) throws Exception
+	{
+		ensureLoaded(start.getEpochDay(), end.getEpochDay());
+		return balanceIndex.getBalance(start.getEpochDay(), end.getEpochDay());
+	}
+
+	public static int getEntryCount(Date start, Date end) throws Exception
+	{
+		ensureLoaded(start.getEpochDay(), end.getEpochDay());
+		return balanceIndex.getEntries(start.getEpochDay(), end.getEpochDay());
+	}
+
+	public static long getRunningBalance(Date date) throws Exception
+	{
+		ensureLoaded(date.getEpochDay(), date.getEpochDay());  // Aggregates of cold years are only exact for whole months
+		return balanceIndex.getRunningBalance(date.getEpochDay());
+	}
+
+	// Returns the keywords of the name or location of all data entries, which follow every later change:
+	public static KeywordIndex getKeywordIndex(DataEntry.DataRowType dataRowType) throws Exception
+	{
+		switch (dataRowType)
+		{
+			case NAME:
+				return nameIndex;
+			case LOCATION:
+				return locationIndex;
+			default:
+				throw new Exception("ERROR: Keywords only exist for name and location (" + dataRowType.toString() + ")");
+		}
+	}
+
+	// Writes given data store into a temporary file next to given json database file, syncs it regarding given fsync policy and replaces the database file with it. The file gets replaced atomically, so a crash leaves either the old or the new version:
+	public static void writeJsonFile(File databaseFile, DataStore snapshotStore, FsyncPolicy fsyncPolicy) throws Exception
+	{
+		final var tempFile = new File(databaseFile.getPath() + TEMP_FILE_EXTENSION);
+
+		// Write database to a temporary file in the same directory:
+		var mapper = new ObjectMapper();
+		try (var channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
 		{
-			var type = dataEntry.getType();
-			var subtype = dataEntry.getSubtype();
-			var newKeyword = dataEntry.getDataRowValueAsString(dataRowType);
-			if (keywords[type][subtype].contains(newKeyword) == false)
+			var outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+			try (var jsonGenerator = mapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8))
 			{
-				keywords[type][subtype].add(newKeyword);
+				jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);  // Keep channel open for the sync
+				Serializer.writeDatabase(jsonGenerator, snapshotStore, true);
 			}
+			outputStream.flush();
+			fsyncPolicy.sync(channel);
+		}
+		// Replace json database file with the temporary file:
+		try
+		{
+			Files.move(tempFile.toPath(), databaseFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException exception)
+		{
+			System.out.println("WARNING: Atomic move is not supported for the database path, the database file gets replaced non-atomically");
+			Files.move(tempFile.toPath(), databaseFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 		}
-		return keywords;
+		fsyncPolicy.syncDirectory(databaseFile.getAbsoluteFile().getParentFile().toPath());
 	}
 
-	public static void writeDatabaseFile() throws Exception
+	// Writes given data store as json database file, which happens on the background persistence thread:
+	public static void writeDatabaseFile(DataStore snapshotStore) throws Exception
 	{
 		final var databaseFile = new File(databasePath + "/" + databaseName + ".json");
-		final var backupFile = new File(backupPath + "/" + databaseName + "_" + DateFormat.getDateInstance(DateFormat.SHORT).format(new Date()) + ".json");
 
-		// Create a backup of the json database file:
-		Files.copy(databaseFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-		// Write database to json database file:
+		// Create a deduplicated backup point of the json database file if the last one is old enough:
+		backupStore.backupIfDue(databaseFile);
+		writeJsonFile(databaseFile, snapshotStore, fsyncPolicy);
+		// Keep binary snapshot in sync with the new json database file:
+		if (binarySnapshotActive)
+		{
+			writeBinarySnapshotFile(snapshotStore);
+		}
+	}
+
+	// Writes all data entries as pretty-printed json database file with dates as arrays, which is meant to be read by humans:
+	public static void exportDatabaseFile(File exportFile) throws Exception
+	{
+		ensureAllLoaded();
 		var mapper = new ObjectMapper();
-		mapper.configure(SerializationFeature.INDENT_OUTPUT, true);
-		mapper.writeValue(databaseFile, getInstance());
+		try (var jsonGenerator = mapper.getFactory().createGenerator(new BufferedOutputStream(Files.newOutputStream(exportFile.toPath()), WRITE_BUFFER_SIZE), JsonEncoding.UTF8))
+		{
+			jsonGenerator.useDefaultPrettyPrinter();
+			Serializer.writeDatabase(jsonGenerator, dataStore, false);
+		}
+	}
+
+	// Writes given data store as binary snapshot of the current json database file, which happens on the background persistence thread:
+	public static void writeBinarySnapshotFile(DataStore snapshotStore) throws Exception
+	{
+		final var databaseFile = new File(databasePath + "/" + databaseName + ".json");
+		final var binaryFile = new File(databasePath + "/" + databaseName + BinarySnapshot.FILE_EXTENSION);
+		BinarySnapshot.write(binaryFile, databaseFile, snapshotStore, fsyncPolicy);
+	}
+
+	// Lets the background persistence write a new json database file (or the changed partitions) containing all journal records and clear the journal afterwards:
+	public static void compactDatabaseFile()
+	{
+		final var snapshotStore = dataStore.copy();
+		if (partitionStore != null)
+		{
+			// Only rewrite the partitions changed since the last compaction:
+			final var dirtyKeys = partitionStore.takeDirty();
+			final var writtenStore = partitionStore;
+			persistenceService.compact(() -> writtenStore.write(snapshotStore, dirtyKeys));
+		}
+		else
+		{
+			persistenceService.compact(() -> writeDatabaseFile(snapshotStore));
+		}
+	}
+
+	private static void compactDatabaseFileIfRequired()
+	{
+		if (persistenceService.getRecords() >= Journal.COMPACTION_THRESHOLD)
+		{
+			compactDatabaseFile();
+		}
+	}
+
+	// Lets the persistence stop writing into the changed database files before they get merged, without waiting for it on the event dispatch thread:
+	private static void reloadExternalChanges()
+	{
+		if (isReloading || databaseWatcher.hasExternalChanges() == false)
+		{
+			return;
+		}
+		isReloading = true;
+		persistenceService.detachJournal(MainFrame::mergeExternalChanges);
+	}
+
+	// Replaces the data store by the changed database files merged with the local changes since the last compaction, rebinding the data entries by id and updating the indices only for changed ones:
+	private static void mergeExternalChanges()
+	{
+		final var localRecords = persistenceService.takeLocalRecords();
+		boolean isMerged = false;
+		try
+		{
+			// Read changed database files into a staging store:
+			var stagingStore = new DataStore();
+			PartitionStore stagingPartitionStore = null;
+			File snapshotFile;
+			File journalFile;
+			if (partitionStore != null)
+			{
+				final var partitionDirectory = new File(databasePath + "/" + databaseName + PartitionStore.DIRECTORY_EXTENSION);
+				stagingPartitionStore = new PartitionStore(partitionDirectory, fsyncPolicy, partitionBackupStore);
+				stagingPartitionStore.readManifest();
+				stagingPartitionStore.readEager(stagingStore);
+				snapshotFile = stagingPartitionStore.getManifestFile();
+				journalFile = new File(partitionDirectory, databaseName + Journal.FILE_EXTENSION);
+			}
+			else
+			{
+				snapshotFile = new File(databasePath + "/" + databaseName + ".json");
+				journalFile = new File(databasePath + "/" + databaseName + Journal.FILE_EXTENSION);
+				var mapper = new ObjectMapper();
+				mapper.configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, false);
+				DatabaseLoader.read(snapshotFile, mapper, stagingStore, loadReportActive);
+				stagingStore.assignMissingIds(0L, 0);
+			}
+			// Only replay a journal of others, as the own one holds nothing but the local records merged below:
+			final boolean isOwnJournal = (databaseWatcher.hasExternalChange(journalFile) == false);
+			int replayedRecords = 0;
+			if (isOwnJournal == false)
+			{
+				final var stagingJournal = new Journal(snapshotFile, journalFile);
+				replayedRecords = stagingJournal.replay(stagingStore, stagingPartitionStore);
+				warnOfOutdatedJournal(stagingJournal);
+			}
+			var extraYears = new LinkedList<Integer>();
+			if (stagingPartitionStore != null)
+			{
+				// Keep the years loaded that were loaded before:
+				final var loadedYears = partitionStore.getLoadedYears();
+				for (var year : stagingPartitionStore.getColdYears())
+				{
+					if (loadedYears.contains(year))
+					{
+						stagingPartitionStore.read(year, stagingStore);
+						extraYears.add(year);
+					}
+				}
+			}
+			// Merge local changes by id, so the changes of both sides are kept:
+			var appliedRecords = new ByteArrayOutputStream();
+			final int mergedRecords = journal.merge(localRecords, stagingStore, appliedRecords);
+			if (stagingPartitionStore != null && (replayedRecords > 0 || mergedRecords > 0))
+			{
+				stagingPartitionStore.markDirty(stagingStore);
+			}
+			// Match data entries by id, so they keep their identity, and take over changed values:
+			var isUnchanged = new boolean[stagingStore.size()];
+			int removedEntries = 0;
+			int changedEntries = 0;
+			for (int row = 0; row < dataStore.size(); row++)
+			{
+				final int stagingRow = stagingStore.getRow(dataStore.getId(row));
+				final var dataEntry = dataStore.getDataEntry(row);
+				if (stagingRow < 0)
+				{
+					unindexDataEntry(dataEntry);
+					removedEntries++;
+					continue;
+				}
+				if (dataStore.hasEqualValues(row, stagingStore, stagingRow))
+				{
+					isUnchanged[stagingRow] = true;
+				}
+				else
+				{
+					unindexDataEntry(dataEntry);
+					changedEntries++;
+				}
+				stagingStore.attach(stagingRow, dataEntry);
+			}
+			// Swap stores including the aggregates of not loaded years:
+			if (partitionStore != null)
+			{
+				for (var year : partitionStore.getColdYears())
+				{
+					addPartitionAggregates(year, -1);
+				}
+				partitionStore = stagingPartitionStore;
+				for (var year : partitionStore.getColdYears())
+				{
+					addPartitionAggregates(year, 1);
+				}
+			}
+			dataStore = stagingStore;
+			isMerged = true;
+			int addedEntries = -changedEntries;
+			for (int row = 0; row < dataStore.size(); row++)
+			{
+				if (isUnchanged[row] == false)
+				{
+					indexDataEntry(dataStore.getDataEntry(row));
+					addedEntries++;
+				}
+			}
+			// Continue with a journal of the changed files, into which the merged local records get written again:
+			if (isOwnJournal)
+			{
+				journal.clear();  // Based on the replaced snapshot
+			}
+			persistenceService.attachJournal();
+			if (appliedRecords.size() > 0)
+			{
+				persistenceService.record(appliedRecords.toByteArray());
+			}
+			for (var year : extraYears)
+			{
+				persistenceService.record(journal.encodeLoad(year));
+			}
+			databaseWatcher.rememberOwnState();
+			if (replayedRecords > 0 || mergedRecords > 0)
+			{
+				compactDatabaseFile();
+			}
+			System.out.println("Reloaded external database changes (" + addedEntries + " data entries added, " + changedEntries + " changed, " + removedEntries + " removed, " + mergedRecords + " local changes merged)");
+			if (addedEntries > 0 || changedEntries > 0 || removedEntries > 0)
+			{
+				dataPanel.refreshPanel();
+				if (excerptDataFrame != null && excerptDataFrame.isDisplayable())
+				{
+					excerptDataPanel.refreshPanel();
+				}
+			}
+		}
+		catch (Exception exception)
+		{
+			exception.printStackTrace();
+			if (isMerged == false)
+			{
+				// The data store still holds all local changes, which is better written over the unreadable files of others than lost:
+				System.out.println("WARNING: Couldn't merge the external database changes, they get overwritten by the local state");
+				persistenceService.attachJournal();
+				if (partitionStore != null)
+				{
+					partitionStore.markDirty(dataStore);
+				}
+				compactDatabaseFile();
+			}
+		}
+		finally
+		{
+			persistenceService.attachJournal();
+			isReloading = false;
+		}
+	}
+
+	// Shows the state of the last background save in the frame titles:
+	public static void showSaveStatus(String status, boolean isError)
+	{
+		if (inputFrame != null)
+		{
+			inputFrame.setTitle(INPUT_FRAME_NAME + " - " + status);
+		}
+		if (dataFrame != null)
+		{
+			dataFrame.setTitle(DATA_FRAME_NAME + " - " + status);
+		}
+		if (isError)
+		{
+			JOptionPane.showMessageDialog(dataFrame, status, SAVE_ERROR_TITLE, JOptionPane.ERROR_MESSAGE);
+		}
 	}
 
 	public static void refreshDataPanel()
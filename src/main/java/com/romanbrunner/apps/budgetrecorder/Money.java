@@ -0,0 +1,49 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+
+/** Conversions of money values, which are stored and summed as long cents to stay exact. */
+final class Money
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	private static final int FRACTION_DIGITS = 2;
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private Money() {}
+
+	public static BigDecimal toDecimal(long cents)
+	{
+		return BigDecimal.valueOf(cents, FRACTION_DIGITS);
+	}
+
+	// Returns the cents of given decimal value rounded half up to the nearest cent:
+	public static long toCents(BigDecimal decimal)
+	{
+		return decimal.setScale(FRACTION_DIGITS, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	// Returns the cents of given number by its exact decimal representation:
+	public static long toCents(Number number)
+	{
+		if (number instanceof BigDecimal)
+		{
+			return toCents((BigDecimal)number);
+		}
+		return toCents(new BigDecimal(number.toString()));
+	}
+
+	public static String toText(long cents)
+	{
+		return String.format("%.2f", toDecimal(cents)) + " €";
+	}
+
+}
@@ -0,0 +1,569 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+
+/** Database split into one json file per year of plain entries, one for all repeating entries and a manifest with the type names and monthly aggregates of each year. */
+class PartitionStore
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	public static final String DIRECTORY_EXTENSION = ".partitions";
+	public static final int EAGER_PARTITIONS = 2;  // Newest years that get loaded at startup
+	public static final int REPEATS = Integer.MIN_VALUE;  // Partition key of the repeating entries, all other keys are years
+
+	private static final String MANIFEST_FILE_NAME = "manifest.json";
+	private static final String REPEATS_STEM = "repeats";
+	private static final String TEMP_FILE_EXTENSION = ".tmp";
+	private static final int MONTHS_PER_YEAR = 12;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;  // Bytes
+
+	private static class Partition  // Struct type
+	{
+		public final String fileName;
+		public final long[] monthBalances = new long[MONTHS_PER_YEAR];  // Cents of the plain entries per month
+		public final int[] monthEntries = new int[MONTHS_PER_YEAR];  // Amount of plain entries per month
+
+		public Partition(String fileName)
+		{
+			this.fileName = fileName;
+		}
+	}
+
+	private interface JsonWriter
+	{
+		void write(JsonGenerator jsonGenerator) throws Exception;
+	}
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private final File directory;
+	private final File manifestFile;
+	private final FsyncPolicy fsyncPolicy;
+	private final BackupStore backupStore;  // Null to skip backups
+	private final ObjectMapper mapper = new ObjectMapper();
+	private TreeMap<Integer, Partition> partitions = new TreeMap<Integer, Partition>();  // Guarded by this
+	private long generation = 0L;  // Guarded by this, increases with every write so files never get overwritten
+	private final TreeSet<Integer> dirtyKeys = new TreeSet<Integer>();  // Guarded by this
+	private final HashSet<Integer> loadedKeys = new HashSet<Integer>();
+
+	public PartitionStore(File directory, FsyncPolicy fsyncPolicy, BackupStore backupStore)
+	{
+		this.directory = directory;
+		this.manifestFile = new File(directory, MANIFEST_FILE_NAME);
+		this.fsyncPolicy = fsyncPolicy;
+		this.backupStore = backupStore;
+	}
+
+	public static int getYear(int epochDay)
+	{
+		return Date.packedYear(Date.toPackedCivil(epochDay));
+	}
+
+	private static int getKey(DataStore dataStore, int row)
+	{
+		return (dataStore.getRepeat(row) == Interval.NEVER ? getYear(dataStore.getDate(row)) : REPEATS);
+	}
+
+	public static int getKey(DataEntry dataEntry)
+	{
+		return (dataEntry.getRepeat() == Interval.NEVER ? getYear(dataEntry.getDateDay()) : REPEATS);
+	}
+
+	private static String getStem(int key)
+	{
+		return (key == REPEATS ? REPEATS_STEM : Integer.toString(key));
+	}
+
+	/**
+	 * @return the manifest file, which identifies the current state of all partitions
+	 */
+	public File getManifestFile()
+	{
+		return manifestFile;
+	}
+
+	public boolean exists()
+	{
+		return manifestFile.exists();
+	}
+
+	// Checks the json type and major version fields of a partition json and skips all others:
+	private static void readHeaderField(JsonParser parser, String fieldName, String expectedJsonType) throws Exception
+	{
+		switch (fieldName)
+		{
+			case "jsonType":
+			{
+				var jsonType = parser.getText();
+				if (jsonType.compareTo(expectedJsonType) != 0)
+				{
+					throw new Exception("ERROR: Invalid json type (" + jsonType + ")");
+				}
+				break;
+			}
+			case "versionMajor":
+			{
+				var versionMajor = parser.getValueAsInt();
+				if (versionMajor < MainFrame.OLDEST_READABLE_VERSION_MAJOR || versionMajor > MainFrame.VERSION_MAJOR)
+				{
+					throw new Exception("ERROR: Target partition json does not have matching major version (" + versionMajor + " instead of " + MainFrame.OLDEST_READABLE_VERSION_MAJOR + " to " + MainFrame.VERSION_MAJOR + ")");
+				}
+				break;
+			}
+			default:
+				parser.skipChildren();  // Ignore unknown fields
+				break;
+		}
+	}
+
+	private static void writeHeader(JsonGenerator jsonGenerator, String jsonType) throws Exception
+	{
+		jsonGenerator.writeStringField("jsonType", jsonType);
+		jsonGenerator.writeNumberField("versionMajor", MainFrame.VERSION_MAJOR);
+		jsonGenerator.writeNumberField("versionMinor", MainFrame.VERSION_MINOR);
+		jsonGenerator.writeNumberField("versionPatch", MainFrame.VERSION_PATCH);
+	}
+
+	// Reads the manifest and sets the type and subtype names:
+	public synchronized void readManifest() throws Exception
+	{
+		var newPartitions = new TreeMap<Integer, Partition>();
+		try (var parser = mapper.getFactory().createParser(manifestFile))
+		{
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+			{
+				throw new Exception("ERROR: Expected json object instead of " + parser.currentToken());
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				final var fieldName = parser.getCurrentName();
+				parser.nextToken();
+				switch (fieldName)
+				{
+					case "generation":
+						generation = parser.getValueAsLong();
+						break;
+					case "types":
+						MainFrame.Deserializer.readTypes(parser);
+						break;
+					case "repeatsFile":
+						newPartitions.put(REPEATS, new Partition(parser.getText()));
+						break;
+					case "partitions":
+						while (parser.nextToken() == JsonToken.START_OBJECT)
+						{
+							Integer year = null;
+							String fileName = null;
+							var balances = new LinkedList<Long>();
+							var entries = new LinkedList<Integer>();
+							while (parser.nextToken() == JsonToken.FIELD_NAME)
+							{
+								final var partitionFieldName = parser.getCurrentName();
+								parser.nextToken();
+								switch (partitionFieldName)
+								{
+									case "year":
+										year = parser.getValueAsInt();
+										break;
+									case "file":
+										fileName = parser.getText();
+										break;
+									case "monthBalances":
+										while (parser.nextToken() != JsonToken.END_ARRAY)
+										{
+											balances.add(Money.toCents(parser.getDecimalValue()));
+										}
+										break;
+									case "monthEntries":
+										while (parser.nextToken() != JsonToken.END_ARRAY)
+										{
+											entries.add(parser.getValueAsInt());
+										}
+										break;
+									default:
+										parser.skipChildren();  // Ignore unknown fields
+										break;
+								}
+							}
+							if (year == null || fileName == null || balances.size() != MONTHS_PER_YEAR || entries.size() != MONTHS_PER_YEAR)
+							{
+								throw new Exception("ERROR: Couldn't find a required json node of partition " + newPartitions.size());
+							}
+							var partition = new Partition(fileName);
+							for (int i = 0; i < MONTHS_PER_YEAR; i++)
+							{
+								partition.monthBalances[i] = balances.get(i);
+								partition.monthEntries[i] = entries.get(i);
+							}
+							newPartitions.put(year, partition);
+						}
+						break;
+					default:
+						readHeaderField(parser, fieldName, "partitionManifest");
+						break;
+				}
+			}
+		}
+		if (newPartitions.containsKey(REPEATS) == false)
+		{
+			throw new Exception("ERROR: Couldn't find a required json node (repeatsFile)");
+		}
+		partitions = newPartitions;
+	}
+
+	// Reads the repeating entries and the newest years into given data store, which has to be empty so the rows are the same for every startup with this manifest:
+	public void readEager(DataStore dataStore) throws Exception
+	{
+		read(REPEATS, dataStore);
+		var eagerYears = new ArrayList<Integer>();
+		synchronized (this)
+		{
+			for (var year : partitions.descendingKeySet())
+			{
+				if (year != REPEATS && eagerYears.size() < EAGER_PARTITIONS)
+				{
+					eagerYears.add(year);
+				}
+			}
+		}
+		for (int i = eagerYears.size() - 1; i >= 0; i--)
+		{
+			read(eagerYears.get(i), dataStore);
+		}
+	}
+
+	// Appends the rows of given partition to given data store:
+	public void read(int key, DataStore dataStore) throws Exception
+	{
+		if (loadedKeys.contains(key))
+		{
+			throw new Exception("ERROR: Partition " + getStem(key) + " is already loaded");
+		}
+		Partition partition;
+		synchronized (this)
+		{
+			partition = partitions.get(key);
+		}
+		if (partition == null)
+		{
+			throw new Exception("ERROR: Partition " + getStem(key) + " does not exist");
+		}
+		final int firstRow = dataStore.size();
+		try (var parser = mapper.getFactory().createParser(new File(directory, partition.fileName)))
+		{
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+			{
+				throw new Exception("ERROR: Expected json object instead of " + parser.currentToken());
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME)
+			{
+				final var fieldName = parser.getCurrentName();
+				parser.nextToken();
+				if (fieldName.equals("dataEntries"))
+				{
+					while (parser.nextToken() != JsonToken.END_ARRAY)
+					{
+						DataEntry.Deserializer.readRow(parser, dataStore);
+					}
+				}
+				else
+				{
+					readHeaderField(parser, fieldName, "partition");
+				}
+			}
+		}
+		loadedKeys.add(key);
+		// Partitions of former versions have no ids, which get derived of their position until the partition gets written:
+		if (dataStore.assignMissingIds(key, firstRow) > 0)
+		{
+			synchronized (this)
+			{
+				dirtyKeys.add(key);
+			}
+		}
+	}
+
+	// Returns whether all data entries of given partition key are in the data store:
+	public boolean isLoaded(int key)
+	{
+		synchronized (this)
+		{
+			if (partitions.containsKey(key) == false)
+			{
+				return true;  // Partition gets created with the next write
+			}
+		}
+		return loadedKeys.contains(key);
+	}
+
+	// Returns the years whose data entries are in the data store:
+	public TreeSet<Integer> getLoadedYears()
+	{
+		var loadedYears = new TreeSet<Integer>(loadedKeys);
+		loadedYears.remove(REPEATS);
+		return loadedYears;
+	}
+
+	// Returns the years between given years (inclusive) whose data entries are not loaded yet:
+	public synchronized LinkedList<Integer> getColdYears(int fromYear, int toYear)
+	{
+		var coldYears = new LinkedList<Integer>();
+		if (toYear < fromYear)
+		{
+			return coldYears;
+		}
+		for (var year : partitions.subMap(fromYear, true, toYear, true).keySet())
+		{
+			if (year != REPEATS && loadedKeys.contains(year) == false)
+			{
+				coldYears.add(year);
+			}
+		}
+		return coldYears;
+	}
+	public LinkedList<Integer> getColdYears()
+	{
+		return getColdYears(REPEATS + 1, Integer.MAX_VALUE);
+	}
+
+	public synchronized long[] getMonthBalances(int year)
+	{
+		return partitions.get(year).monthBalances.clone();
+	}
+
+	public synchronized int[] getMonthEntries(int year)
+	{
+		return partitions.get(year).monthEntries.clone();
+	}
+
+	// Marks the partition of given data entry to be written with the next write:
+	public synchronized void markDirty(DataEntry dataEntry)
+	{
+		dirtyKeys.add(getKey(dataEntry));
+	}
+
+	// Marks all loaded partitions and those of all rows in given data store to be written with the next write:
+	public synchronized void markDirty(DataStore dataStore)
+	{
+		dirtyKeys.addAll(loadedKeys);
+		for (int row = 0; row < dataStore.size(); row++)
+		{
+			dirtyKeys.add(getKey(dataStore, row));
+		}
+	}
+
+	public synchronized boolean hasDirty()
+	{
+		return dirtyKeys.isEmpty() == false;
+	}
+
+	// Takes the dirty partition keys, which the caller has to write or put back:
+	public synchronized TreeSet<Integer> takeDirty()
+	{
+		var keys = new TreeSet<Integer>(dirtyKeys);
+		dirtyKeys.clear();
+		return keys;
+	}
+
+	// Writes all partitions of given data store, e.g. when splitting a json database file:
+	public synchronized void create(DataStore dataStore) throws Exception
+	{
+		markDirty(dataStore);
+		dirtyKeys.add(REPEATS);
+		write(dataStore, takeDirty());
+		loadedKeys.addAll(partitions.keySet());
+	}
+
+	private void moveAtomically(File sourceFile, File targetFile) throws Exception
+	{
+		try
+		{
+			Files.move(sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException exception)
+		{
+			Files.move(sourceFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private void writeFile(File file, JsonWriter jsonWriter) throws Exception
+	{
+		try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			var outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+			try (var jsonGenerator = mapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8))
+			{
+				jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);  // Keep channel open for the sync
+				jsonWriter.write(jsonGenerator);
+			}
+			outputStream.flush();
+			fsyncPolicy.sync(channel);
+		}
+	}
+
+	private void writeManifest(TreeMap<Integer, Partition> newPartitions, long newGeneration) throws Exception
+	{
+		final var tempFile = new File(directory, MANIFEST_FILE_NAME + TEMP_FILE_EXTENSION);
+		writeFile(tempFile, jsonGenerator ->
+		{
+			jsonGenerator.writeStartObject();
+			writeHeader(jsonGenerator, "partitionManifest");
+			jsonGenerator.writeNumberField("generation", newGeneration);
+			MainFrame.Serializer.writeTypes(jsonGenerator);
+			jsonGenerator.writeStringField("repeatsFile", newPartitions.get(REPEATS).fileName);
+			jsonGenerator.writeArrayFieldStart("partitions");
+			for (var entry : newPartitions.tailMap(REPEATS, false).entrySet())
+			{
+				final var partition = entry.getValue();
+				jsonGenerator.writeStartObject();
+				jsonGenerator.writeNumberField("year", entry.getKey());
+				jsonGenerator.writeStringField("file", partition.fileName);
+				jsonGenerator.writeArrayFieldStart("monthBalances");
+				for (var balance : partition.monthBalances)
+				{
+					jsonGenerator.writeNumber(Money.toDecimal(balance));
+				}
+				jsonGenerator.writeEndArray();
+				jsonGenerator.writeArrayFieldStart("monthEntries");
+				for (var entries : partition.monthEntries)
+				{
+					jsonGenerator.writeNumber(entries);
+				}
+				jsonGenerator.writeEndArray();
+				jsonGenerator.writeEndObject();
+			}
+			jsonGenerator.writeEndArray();
+			jsonGenerator.writeEndObject();
+		});
+		moveAtomically(tempFile, manifestFile);
+		fsyncPolicy.syncDirectory(directory.toPath());
+	}
+
+	// Writes the given partitions of given immutable snapshot into new files and switches the manifest to them, which happens on the background persistence thread. Untouched partitions keep their files:
+	public synchronized void write(DataStore snapshotStore, Set<Integer> keys) throws Exception
+	{
+		try
+		{
+			if (directory.exists() == false && directory.mkdirs() == false)
+			{
+				throw new Exception("ERROR: Couldn't create partition directory (" + directory.getPath() + ")");
+			}
+			// Group the rows of the given partitions:
+			var rowsByKey = new HashMap<Integer, ArrayList<Integer>>();
+			for (var key : keys)
+			{
+				rowsByKey.put(key, new ArrayList<Integer>());
+			}
+			for (int row = 0; row < snapshotStore.size(); row++)
+			{
+				var rows = rowsByKey.get(getKey(snapshotStore, row));
+				if (rows != null)
+				{
+					rows.add(row);
+				}
+			}
+			// Back up the current manifest together with the files it references, which never get overwritten and thus form one consistent restore point:
+			if (backupStore != null && manifestFile.exists())
+			{
+				var fileNames = new ArrayList<String>();
+				for (var partition : partitions.values())
+				{
+					fileNames.add(partition.fileName);
+				}
+				fileNames.add(MANIFEST_FILE_NAME);  // Last, so a restore only switches to the partition files once they are all in place
+				backupStore.backupIfDue(directory, fileNames);
+			}
+			// Write new files next to the current ones, so a crash leaves the manifest consistent:
+			final long newGeneration = generation + 1L;
+			var newPartitions = new TreeMap<Integer, Partition>(partitions);
+			for (var key : keys)
+			{
+				final var rows = rowsByKey.get(key);
+				if (rows.isEmpty() && key != REPEATS)
+				{
+					newPartitions.remove(key);
+					continue;
+				}
+				var partition = new Partition(getStem(key) + "-" + newGeneration + ".json");
+				for (var row : rows)
+				{
+					if (key != REPEATS)
+					{
+						final int month = Date.packedMonth(Date.toPackedCivil(snapshotStore.getDate(row))) - 1;
+						partition.monthBalances[month] += snapshotStore.getMoney(row);
+						partition.monthEntries[month] += 1;
+					}
+				}
+				writeFile(new File(directory, partition.fileName), jsonGenerator ->
+				{
+					jsonGenerator.writeStartObject();
+					writeHeader(jsonGenerator, "partition");
+					jsonGenerator.writeArrayFieldStart("dataEntries");
+					for (var row : rows)
+					{
+						DataEntry.Serializer.writeRow(jsonGenerator, snapshotStore, row, true);
+					}
+					jsonGenerator.writeEndArray();
+					jsonGenerator.writeEndObject();
+				});
+				newPartitions.put(key, partition);
+			}
+			if (newPartitions.containsKey(REPEATS) == false)
+			{
+				throw new Exception("ERROR: Partition of the repeating entries was not written");
+			}
+			fsyncPolicy.syncDirectory(directory.toPath());
+			// Switch to the new files:
+			writeManifest(newPartitions, newGeneration);
+			partitions = newPartitions;
+			generation = newGeneration;
+		}
+		catch (Exception exception)
+		{
+			dirtyKeys.addAll(keys);  // Retry with the next write
+			throw exception;
+		}
+		// Delete files that are not referenced anymore, including those of interrupted writes:
+		var fileNames = new HashSet<String>();
+		fileNames.add(MANIFEST_FILE_NAME);
+		for (var partition : partitions.values())
+		{
+			fileNames.add(partition.fileName);
+		}
+		for (var file : directory.listFiles())
+		{
+			if (file.isFile() && file.getName().endsWith(".json") && fileNames.contains(file.getName()) == false && file.delete() == false)
+			{
+				System.out.println("WARNING: Couldn't delete unused partition file (" + file.getPath() + ")");
+			}
+		}
+	}
+
+}
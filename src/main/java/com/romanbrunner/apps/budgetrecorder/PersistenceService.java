@@ -0,0 +1,400 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.io.ByteArrayOutputStream;
+import java.text.DateFormat;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+
+/** Writes journal records and database snapshots on a background thread and coalesces bursts of changes into single writes. */
+class PersistenceService
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	public static final long DEBOUNCE_DELAY = 500L;  // Milliseconds of quiet before queued records get written
+	public static final long MAX_DELAY = 5000L;  // Milliseconds a queued record waits at most
+	public static final long RETRY_DELAY = 1000L;  // Milliseconds before the first retry of a failed write, doubled with each further failure
+	public static final long MAX_RETRY_DELAY = 60000L;  // Milliseconds between two retries at most
+	private static final long SHUTDOWN_TIMEOUT = 30L;  // Seconds
+
+	public interface SnapshotWriter
+	{
+		void write() throws Exception;
+	}
+
+	public interface StatusListener
+	{
+		void showStatus(String status, boolean isError);
+	}
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private final Journal journal;
+	private final ScheduledExecutorService executor;
+	private final ByteArrayOutputStream pendingRecords = new ByteArrayOutputStream();  // Guarded by this
+	private final ByteArrayOutputStream journaledRecords = new ByteArrayOutputStream();  // Guarded by this, written since the last compaction
+	private ScheduledFuture<?> pendingFlush = null;  // Guarded by this
+	private long pendingSince;  // Guarded by this
+	private int records = 0;  // Guarded by this
+	private int activeWrites = 0;  // Guarded by this, taken batches and compactions not written yet
+	private long retryDelay = RETRY_DELAY;  // Guarded by this
+	private boolean isDetached = false;  // Guarded by this, nothing gets written while others' changes get merged
+	private volatile Runnable writeListener = null;
+	private volatile StatusListener statusListener = null;
+
+	public PersistenceService(Journal journal)
+	{
+		this.journal = journal;
+		executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			var thread = new Thread(runnable, "persistence");
+			thread.setDaemon(true);  // Shutdown hook flushes instead
+			return thread;
+		});
+		// Force the journal records that the interval mode did not force when they got written, even if no further write comes along:
+		final var fsyncPolicy = journal.getFsyncPolicy();
+		if (fsyncPolicy.getMode() == FsyncPolicy.Mode.INTERVAL)
+		{
+			final long interval = Math.max(fsyncPolicy.getInterval(), 1L);
+			executor.scheduleWithFixedDelay(this::syncJournal, interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// Sets what shows the state of the last write on the event dispatch thread, nothing is shown without one:
+	public void setStatusListener(StatusListener statusListener)
+	{
+		this.statusListener = statusListener;
+	}
+
+	private void reportStatus(String status, boolean isError)
+	{
+		final var listener = statusListener;
+		if (listener != null)
+		{
+			SwingUtilities.invokeLater(() -> listener.showStatus(status, isError));
+		}
+	}
+
+	private void reportSaved()
+	{
+		reportStatus("Saved " + DateFormat.getTimeInstance(DateFormat.MEDIUM).format(new java.util.Date()), false);
+	}
+
+	private void reportFailure(Exception exception)
+	{
+		exception.printStackTrace();
+		reportStatus("Saving failed (" + exception.getMessage() + ")", true);
+	}
+
+	// Sets what runs on the persistence thread after each write to the database files:
+	public void setWriteListener(Runnable writeListener)
+	{
+		this.writeListener = writeListener;
+	}
+
+	private void reportWritten()
+	{
+		final var listener = writeListener;
+		if (listener != null)
+		{
+			listener.run();
+		}
+	}
+
+	// Returns whether there are changes that are not written to the database files yet:
+	public synchronized boolean hasUnsavedChanges()
+	{
+		return pendingRecords.size() > 0 || activeWrites > 0;
+	}
+
+	private synchronized void finishWrite()
+	{
+		activeWrites--;
+	}
+
+	/**
+	 * @return the amount of records since the last compaction
+	 */
+	public synchronized int getRecords()
+	{
+		return records;
+	}
+
+	// Takes the queued records, which the caller has to write or put back:
+	private synchronized byte[] takePendingRecords()
+	{
+		if (pendingFlush != null)
+		{
+			pendingFlush.cancel(false);
+			pendingFlush = null;
+		}
+		final var batch = pendingRecords.toByteArray();
+		pendingRecords.reset();
+		activeWrites++;
+		return batch;
+	}
+
+	private synchronized void putBackPendingRecords(byte[] batch)
+	{
+		final var newerRecords = pendingRecords.toByteArray();
+		pendingRecords.reset();
+		pendingRecords.write(batch, 0, batch.length);
+		pendingRecords.write(newerRecords, 0, newerRecords.length);
+	}
+
+	// Schedules a write of the put back records, waiting longer after each failure in a row so a failing disk does not get hammered:
+	private synchronized void scheduleRetry()
+	{
+		if (pendingRecords.size() > 0 && pendingFlush == null && executor.isShutdown() == false)
+		{
+			pendingFlush = executor.schedule(this::flushRecords, retryDelay, TimeUnit.MILLISECONDS);
+		}
+		retryDelay = Math.min(retryDelay * 2L, MAX_RETRY_DELAY);
+	}
+
+	private synchronized void resetRetryDelay()
+	{
+		retryDelay = RETRY_DELAY;
+	}
+
+	private synchronized void putBackRecords(int compactedRecords)
+	{
+		records += compactedRecords;
+	}
+
+	private synchronized void addJournaledRecords(byte[] batch)
+	{
+		journaledRecords.write(batch, 0, batch.length);
+	}
+
+	private synchronized void clearJournaledRecords()
+	{
+		journaledRecords.reset();
+	}
+
+	private synchronized boolean isDetached()
+	{
+		if (isDetached)
+		{
+			pendingFlush = null;  // Records stay queued until the journal gets attached again
+		}
+		return isDetached;
+	}
+
+	private void flushRecords()
+	{
+		if (isDetached())
+		{
+			return;
+		}
+		final var batch = takePendingRecords();
+		if (batch.length == 0)
+		{
+			finishWrite();
+			return;
+		}
+		try
+		{
+			journal.append(batch);
+			addJournaledRecords(batch);
+			resetRetryDelay();
+			reportWritten();
+			reportSaved();
+		}
+		catch (Exception exception)
+		{
+			putBackPendingRecords(batch);
+			reportFailure(exception);
+			scheduleRetry();
+		}
+		finally
+		{
+			finishWrite();
+		}
+	}
+
+	private void syncJournal()
+	{
+		try
+		{
+			journal.syncPending();
+		}
+		catch (Exception exception)
+		{
+			reportFailure(exception);
+		}
+	}
+
+	// Queues given journal record and postpones the write until edits pause:
+	public synchronized void record(byte[] journalRecord)
+	{
+		final long now = System.currentTimeMillis();
+		if (pendingRecords.size() == 0)
+		{
+			pendingSince = now;
+		}
+		pendingRecords.write(journalRecord, 0, journalRecord.length);
+		records++;
+		if (pendingFlush != null)
+		{
+			if (now - pendingSince >= MAX_DELAY)
+			{
+				return;  // Keep the scheduled write, so continuous edits still get saved
+			}
+			pendingFlush.cancel(false);
+		}
+		pendingFlush = executor.schedule(this::flushRecords, DEBOUNCE_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	// Lets given writer store an immutable snapshot as new database file and clears the journal. Records queued before are contained in the snapshot. Does nothing while the journal is detached:
+	public synchronized void compact(SnapshotWriter snapshotWriter)
+	{
+		if (isDetached)
+		{
+			return;
+		}
+		final var batch = takePendingRecords();
+		final int compactedRecords = records;
+		records = 0;
+		executor.execute(() ->
+		{
+			boolean isAppended = false;
+			try
+			{
+				// Keep the records in the journal until the snapshot is written:
+				if (batch.length > 0)
+				{
+					journal.append(batch);
+				}
+				isAppended = true;
+				snapshotWriter.write();
+				journal.clear();
+				clearJournaledRecords();
+				resetRetryDelay();
+				reportWritten();
+				reportSaved();
+			}
+			catch (Exception exception)
+			{
+				// Records stay in the journal or get written with the next try, and the next compaction is due as if this one never happened:
+				if (isAppended == false)
+				{
+					putBackPendingRecords(batch);
+				}
+				else
+				{
+					addJournaledRecords(batch);
+				}
+				putBackRecords(compactedRecords);
+				reportFailure(exception);
+				scheduleRetry();
+			}
+			finally
+			{
+				finishWrite();
+			}
+		});
+	}
+
+	// Stops all writes after the one in progress and closes the journal file, which others may have replaced, on the persistence thread. Runs given listener on the event dispatch thread afterwards:
+	public void detachJournal(Runnable detachListener)
+	{
+		executor.execute(() ->
+		{
+			synchronized (this)
+			{
+				isDetached = true;
+				if (pendingFlush != null)
+				{
+					pendingFlush.cancel(false);
+					pendingFlush = null;
+				}
+			}
+			try
+			{
+				journal.close();
+			}
+			catch (Exception exception)
+			{
+				exception.printStackTrace();
+			}
+			SwingUtilities.invokeLater(detachListener);
+		});
+	}
+
+	// Takes all local records since the last compaction, written or queued, so the caller can merge them with changes of others. Has to be called while the journal is detached:
+	public synchronized byte[] takeLocalRecords()
+	{
+		var localRecords = new ByteArrayOutputStream();
+		localRecords.write(journaledRecords.toByteArray(), 0, journaledRecords.size());
+		localRecords.write(pendingRecords.toByteArray(), 0, pendingRecords.size());
+		journaledRecords.reset();
+		pendingRecords.reset();
+		return localRecords.toByteArray();
+	}
+
+	// Lets the persistence write into the journal file again, which gets opened anew with the next write:
+	public synchronized void attachJournal()
+	{
+		isDetached = false;
+		if (pendingRecords.size() > 0 && pendingFlush == null)
+		{
+			pendingFlush = executor.schedule(this::flushRecords, DEBOUNCE_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	// Writes given immutable snapshot as binary snapshot of the unchanged json database file:
+	public void writeBinarySnapshot(DataStore snapshotStore)
+	{
+		executor.execute(() ->
+		{
+			try
+			{
+				MainFrame.writeBinarySnapshotFile(snapshotStore);
+			}
+			catch (Exception exception)
+			{
+				reportFailure(exception);
+			}
+		});
+	}
+
+	// Writes all queued records, forces those the fsync policy did not force yet and waits until every write is done:
+	public void shutdown()
+	{
+		synchronized (this)
+		{
+			// Write right away instead of waiting for a scheduled write or retry, even into a detached journal as the records would be lost otherwise:
+			isDetached = false;
+			if (pendingFlush != null)
+			{
+				pendingFlush.cancel(false);
+				pendingFlush = null;
+			}
+		}
+		executor.execute(this::flushRecords);
+		executor.execute(this::syncJournal);
+		executor.shutdown();
+		try
+		{
+			if (executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS) == false)
+			{
+				System.out.println("ERROR: Pending database writes did not finish within " + SHUTDOWN_TIMEOUT + " seconds");
+			}
+		}
+		catch (InterruptedException exception)
+		{
+			exception.printStackTrace();
+		}
+	}
+
+}
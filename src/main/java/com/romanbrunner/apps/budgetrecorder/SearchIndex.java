@@ -0,0 +1,234 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+
+/** Inverted index of the names and locations of all data entries by their normalized grams of up to three characters, which finds entries containing a query while tolerating typing errors. */
+class SearchIndex
+{
+	// --------------------
+	// Data code
+	// --------------------
+
+	public static final int GRAM_LENGTH = 3;
+	public static final int CHARS_PER_TYPING_ERROR = 4;  // Queries tolerate one typing error per this amount of characters
+
+	private static class Keyword  // Struct type
+	{
+		public final String text;  // Normalized name or location
+		public final HashSet<String> grams;  // Of all lengths up to the trigrams, so queries shorter than a trigram are found directly
+		public final LongIntHashMap entries = new LongIntHashMap();  // Usages by data entry id, which are two for equal name and location
+
+		public Keyword(String text)
+		{
+			this.text = text;
+			grams = new HashSet<String>();
+			for (int length = 1; length <= GRAM_LENGTH; length++)
+			{
+				grams.addAll(getGrams(text, length));
+			}
+		}
+	}
+
+
+	// --------------------
+	// Functional code
+	// --------------------
+
+	private final HashMap<String, Keyword> keywords = new HashMap<String, Keyword>();  // By normalized text, so entries with the same name share the grams
+	private final HashMap<String, HashSet<Keyword>> keywordsByGram = new HashMap<String, HashSet<Keyword>>();  // Grams of different lengths never share a key
+
+	// Drops accents, folds the case and separates the letter and digit tokens by single spaces:
+	public static String normalize(String string)
+	{
+		final var decomposed = Normalizer.normalize(string, Normalizer.Form.NFD);
+		var builder = new StringBuilder(decomposed.length());
+		boolean isSeparated = false;
+		for (int i = 0; i < decomposed.length(); i++)
+		{
+			final char c = decomposed.charAt(i);
+			if (Character.isLetterOrDigit(c))
+			{
+				if (isSeparated && builder.length() > 0)
+				{
+					builder.append(' ');
+				}
+				builder.append(c);
+				isSeparated = false;
+			}
+			else if (Character.getType(c) != Character.NON_SPACING_MARK)
+			{
+				isSeparated = true;
+			}
+		}
+		return KeywordTrie.fold(builder.toString());
+	}
+
+	private static HashSet<String> getGrams(String text, int length)
+	{
+		var grams = new HashSet<String>();
+		for (int i = 0; i + length <= text.length(); i++)
+		{
+			grams.add(text.substring(i, i + length));
+		}
+		return grams;
+	}
+
+	// Returns the fewest edits that turn given query into any substring of given text, where swapping two adjacent characters counts as one edit:
+	public static int getSubstringDistance(String query, String text)
+	{
+		var beforePrevious = new int[query.length() + 1];
+		var previous = new int[query.length() + 1];
+		var current = new int[query.length() + 1];
+		for (int i = 0; i <= query.length(); i++)
+		{
+			previous[i] = i;
+		}
+		int distance = query.length();
+		for (int j = 1; j <= text.length(); j++)
+		{
+			current[0] = 0;  // Substrings may start at any position of the text
+			for (int i = 1; i <= query.length(); i++)
+			{
+				final int replaceCost = (query.charAt(i - 1) == text.charAt(j - 1) ? 0 : 1);
+				current[i] = Math.min(Math.min(previous[i] + 1, current[i - 1] + 1), previous[i - 1] + replaceCost);
+				if (i > 1 && j > 1 && query.charAt(i - 1) == text.charAt(j - 2) && query.charAt(i - 2) == text.charAt(j - 1))
+				{
+					current[i] = Math.min(current[i], beforePrevious[i - 2] + 1);
+				}
+			}
+			distance = Math.min(distance, current[query.length()]);
+			final var swap = beforePrevious;
+			beforePrevious = previous;
+			previous = current;
+			current = swap;
+		}
+		return distance;
+	}
+
+	private void add(long id, String string)
+	{
+		final var text = normalize(string);
+		if (text.isEmpty())
+		{
+			return;
+		}
+		var keyword = keywords.get(text);
+		if (keyword == null)
+		{
+			keyword = new Keyword(text);
+			keywords.put(text, keyword);
+			for (var gram : keyword.grams)
+			{
+				keywordsByGram.computeIfAbsent(gram, key -> new HashSet<Keyword>()).add(keyword);
+			}
+		}
+		keyword.entries.put(id, Math.max(keyword.entries.get(id), 0) + 1);
+	}
+
+	private void remove(long id, String string)
+	{
+		final var keyword = keywords.get(normalize(string));
+		if (keyword == null)
+		{
+			return;
+		}
+		final int usages = keyword.entries.get(id);
+		if (usages > 1)
+		{
+			keyword.entries.put(id, usages - 1);
+			return;
+		}
+		keyword.entries.remove(id);
+		if (keyword.entries.size() == 0)
+		{
+			keywords.remove(keyword.text);
+			for (var gram : keyword.grams)
+			{
+				final var gramKeywords = keywordsByGram.get(gram);
+				gramKeywords.remove(keyword);
+				if (gramKeywords.isEmpty())
+				{
+					keywordsByGram.remove(gram);
+				}
+			}
+		}
+	}
+
+	// Has to be called after given data entry was added to the data store:
+	public void add(DataEntry dataEntry)
+	{
+		add(dataEntry.getId(), dataEntry.getName());
+		add(dataEntry.getId(), dataEntry.getLocation());
+	}
+
+	// Has to be called before given data entry gets removed from the data store:
+	public void remove(DataEntry dataEntry)
+	{
+		remove(dataEntry.getId(), dataEntry.getName());
+		remove(dataEntry.getId(), dataEntry.getLocation());
+	}
+
+	public void rebuild(DataStore dataStore)
+	{
+		keywords.clear();
+		keywordsByGram.clear();
+		for (int row = 0; row < dataStore.size(); row++)
+		{
+			add(dataStore.getId(row), dataStore.getName(row));
+			add(dataStore.getId(row), dataStore.getLocation(row));
+		}
+	}
+
+	// Returns the ids of all data entries whose name or location contains given query after normalization, tolerating one typing error per four characters:
+	public long[] search(String query)
+	{
+		final var normalizedQuery = normalize(query);
+		final int maxTypingErrors = normalizedQuery.length() / CHARS_PER_TYPING_ERROR;
+		Collection<Keyword> candidates;
+		if (normalizedQuery.length() < GRAM_LENGTH)
+		{
+			// Too short for a typing error, so the keywords containing it are found by the query itself:
+			candidates = keywordsByGram.getOrDefault(normalizedQuery, new HashSet<Keyword>());
+		}
+		else
+		{
+			// Each typing error breaks at most four trigrams of the query (swaps included), so matching keywords contain all others. Queries shorter than seven characters need at least one intact trigram instead of scanning all keywords:
+			final var queryGrams = getGrams(normalizedQuery, GRAM_LENGTH);
+			final int requiredGrams = Math.max(queryGrams.size() - (GRAM_LENGTH + 1) * maxTypingErrors, 1);
+			var sharedGrams = new HashMap<Keyword, Integer>();
+			for (var gram : queryGrams)
+			{
+				for (var keyword : keywordsByGram.getOrDefault(gram, new HashSet<Keyword>()))
+				{
+					sharedGrams.merge(keyword, 1, Integer::sum);
+				}
+			}
+			candidates = new ArrayList<Keyword>();
+			for (var entry : sharedGrams.entrySet())
+			{
+				if (entry.getValue() >= requiredGrams)
+				{
+					candidates.add(entry.getKey());
+				}
+			}
+		}
+		var matches = new LongIntHashMap();
+		for (var keyword : candidates)
+		{
+			if (getSubstringDistance(normalizedQuery, keyword.text) <= maxTypingErrors)
+			{
+				for (var id : keyword.entries.keys())
+				{
+					matches.put(id, 0);
+				}
+			}
+		}
+		return matches.keys();
+	}
+
+}
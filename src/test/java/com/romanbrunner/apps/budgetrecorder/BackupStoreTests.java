@@ -0,0 +1,120 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BackupStoreTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static int countChunks(File backupDirectory) {
+		int chunks = 0;
+		for (var chunkDirectory : new File(backupDirectory, "chunks").listFiles()) {
+			chunks += chunkDirectory.list().length;
+		}
+		return chunks;
+	}
+
+	@Test
+	public void restoresDeduplicatedBackups() throws Exception {
+		var backupDirectory = folder.newFolder("backups");
+		var file = folder.newFile("database.json");
+		var backupStore = new BackupStore(backupDirectory, "database");
+		var random = new Random(5L);
+		var content = new byte[1 << 20];
+		random.nextBytes(content);
+		Files.write(file.toPath(), content);
+		var firstName = backupStore.backup(file, LocalDateTime.of(2020, 1, 1, 10, 0));
+		int firstChunks = countChunks(backupDirectory);
+		// Insert a few bytes in the middle, which only changes the chunks around the insertion:
+		var changedContent = new byte[content.length + 3];
+		System.arraycopy(content, 0, changedContent, 0, content.length / 2);
+		System.arraycopy(content, content.length / 2, changedContent, content.length / 2 + 3, content.length - content.length / 2);
+		Files.write(file.toPath(), changedContent);
+		var secondName = backupStore.backup(file, LocalDateTime.of(2020, 1, 1, 11, 0));
+		assertTrue(countChunks(backupDirectory) - firstChunks <= 3);
+		assertArrayEquals(content, backupStore.restore(firstName));
+		assertArrayEquals(changedContent, backupStore.restore(secondName));
+	}
+
+	@Test
+	public void keepsBackupsOfRetentionTiers() throws Exception {
+		var backupDirectory = folder.newFolder("backups");
+		var file = folder.newFile("database.json");
+		var backupStore = new BackupStore(backupDirectory, "database");
+		var now = LocalDateTime.of(2020, 6, 15, 12, 0);
+		for (int hours = 0; hours < 24 * 400; hours += 5) {
+			Files.write(file.toPath(), Integer.toString(hours).getBytes());
+			backupStore.backup(file, now.minusHours(hours));
+		}
+		backupStore.applyRetention(now);
+		var backupNames = backupStore.getBackupNames();
+		assertTrue(backupNames.contains("database_20200615-120000"));  // Newest
+		assertTrue(backupNames.contains("database_20200615-070000"));  // Hourly tier
+		assertEquals(false, backupNames.contains("database_20200614-120000"));  // Same day as a newer backup beyond hourly tier
+		assertEquals(false, backupNames.stream().anyMatch(backupName -> backupName.compareTo("database_20190615") < 0));  // Beyond monthly tier
+		assertEquals(backupNames.size(), countChunks(backupDirectory));
+		for (var backupName : Arrays.asList(backupNames.get(0), backupNames.get(backupNames.size() - 1))) {
+			backupStore.restore(backupName);
+		}
+	}
+
+	@Test
+	public void ignoresBackupsOfSimilarlyNamedDatabases() throws Exception {
+		var backupDirectory = folder.newFolder("backups");
+		var file = folder.newFile("database.json");
+		Files.write(file.toPath(), "{}".getBytes());
+		var backupStore = new BackupStore(backupDirectory, "database");
+		var otherBackupStore = new BackupStore(backupDirectory, "database_old");
+		var now = LocalDateTime.of(2020, 6, 15, 12, 0);
+		final var otherName = otherBackupStore.backup(file, now.minusYears(2));
+		final var name = backupStore.backup(file, now);
+		final var manifestsDirectory = new File(backupDirectory, "manifests");
+		Files.copy(new File(manifestsDirectory, name + ".manifest").toPath(), new File(manifestsDirectory, "database_20201315-120000.manifest").toPath());  // Impossible month
+		assertEquals(Arrays.asList(name), backupStore.getBackupNames());
+		backupStore.applyRetention(now);
+		backupStore.backupIfDue(file);
+		assertEquals(Arrays.asList(otherName), otherBackupStore.getBackupNames());
+	}
+
+	@Test
+	public void restoresFilesOfOneBackupTogether() throws Exception {
+		var backupDirectory = folder.newFolder("backups");
+		var directory = folder.newFolder("database.partitions");
+		Files.write(new File(directory, "2019-1.json").toPath(), "{\"year\":2019}".getBytes());
+		Files.write(new File(directory, "2020-1.json").toPath(), "{\"year\":2020}".getBytes());
+		Files.write(new File(directory, "manifest.json").toPath(), "{\"generation\":1}".getBytes());
+		var backupStore = new BackupStore(backupDirectory, "database.partitions");
+		final var name = backupStore.backup(directory, Arrays.asList("2019-1.json", "2020-1.json", "manifest.json"), LocalDateTime.of(2020, 1, 1, 10, 0));
+		assertEquals(Arrays.asList(name), backupStore.getBackupNames());
+		assertEquals(0, new BackupStore(backupDirectory, "database").getBackupNames().size());
+		// All files come back from the same backup point:
+		var restoreDirectory = new File(folder.getRoot(), "restored");
+		backupStore.restoreFiles(name, restoreDirectory);
+		for (var fileName : Arrays.asList("2019-1.json", "2020-1.json", "manifest.json")) {
+			assertArrayEquals(Files.readAllBytes(new File(directory, fileName).toPath()), Files.readAllBytes(new File(restoreDirectory, fileName).toPath()));
+		}
+		assertEquals(3, restoreDirectory.list().length);
+		// A backup point of several files does not restore into a single file:
+		try {
+			backupStore.restore(name);
+			fail("Backup of several files got restored into a single file");
+		} catch (Exception exception) {
+			assertTrue(exception.getMessage().contains("several files"));
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Test;
+
+public class BalanceIndexTests {
+
+	private static void assertMatchesScan(DataStore dataStore, BalanceIndex balanceIndex, Random random) {
+		for (int i = 0; i < 20; i++) {
+			final int startDay = TestEntries.FIRST_DAY - 100 + random.nextInt(TestEntries.DAYS + 200);
+			final int endDay = startDay + random.nextInt(TestEntries.DAYS);
+			assertEquals(TestEntries.getBalance(dataStore, startDay, endDay), balanceIndex.getBalance(startDay, endDay));
+			assertEquals(TestEntries.getEntries(dataStore, startDay, endDay), balanceIndex.getEntries(startDay, endDay));
+		}
+		final int lastDay = TestEntries.FIRST_DAY + TestEntries.DAYS;
+		assertEquals(TestEntries.getBalance(dataStore, Integer.MIN_VALUE, lastDay), balanceIndex.getRunningBalance(lastDay));
+	}
+
+	@Test
+	public void followsAddedRemovedAndModifiedEntries() throws Exception {
+		final var random = new Random(6L);
+		var dataStore = TestEntries.createRandomDataStore(random, 150);
+		var balanceIndex = new BalanceIndex();
+		balanceIndex.rebuild(dataStore);
+		assertMatchesScan(dataStore, balanceIndex, random);
+		for (int step = 0; step < 60; step++) {
+			switch (step % 3) {
+				case 0:
+					var dataEntry = TestEntries.createRandomDataEntry(random);
+					dataStore.add(dataEntry);
+					balanceIndex.add(dataEntry);
+					break;
+				case 1:
+					dataEntry = dataStore.getDataEntry(random.nextInt(dataStore.size()));
+					balanceIndex.remove(dataEntry);
+					dataStore.remove(dataEntry);
+					break;
+				default:
+					// Modifications go through remove and add like in the main frame, which turns plain entries into repeating ones and back:
+					dataEntry = dataStore.getDataEntry(random.nextInt(dataStore.size()));
+					balanceIndex.remove(dataEntry);
+					dataEntry.setValue(DataEntry.DataRowType.REPEAT, random.nextInt(Interval.Data.length));
+					dataEntry.setValue(DataEntry.DataRowType.MONEY, (long)random.nextInt(1000));
+					balanceIndex.add(dataEntry);
+					break;
+			}
+			assertMatchesScan(dataStore, balanceIndex, random);
+		}
+	}
+
+	@Test
+	public void growsBelowAndAboveCoveredDays() {
+		var dataStore = new DataStore();
+		var balanceIndex = new BalanceIndex();
+		final int[] days = { TestEntries.FIRST_DAY, TestEntries.FIRST_DAY - 5000, TestEntries.FIRST_DAY + 20000, TestEntries.FIRST_DAY - 1, TestEntries.FIRST_DAY + 2047, TestEntries.FIRST_DAY - 2048 };
+		for (int i = 0; i < days.length; i++) {
+			var dataEntry = TestEntries.createDataEntry(i + 1L, days[i], Interval.NEVER, true, days[i]);
+			dataStore.add(dataEntry);
+			balanceIndex.add(dataEntry);
+			for (int j = 0; j <= i; j++) {
+				assertEquals(TestEntries.getBalance(dataStore, days[j], days[j]), balanceIndex.getBalance(days[j], days[j]));
+				assertEquals(TestEntries.getBalance(dataStore, Integer.MIN_VALUE, days[j]), balanceIndex.getRunningBalance(days[j]));
+			}
+		}
+		assertEquals(21L, balanceIndex.getBalance(TestEntries.FIRST_DAY - 10000, TestEntries.FIRST_DAY + 30000));
+		assertEquals(days.length, balanceIndex.getEntries(TestEntries.FIRST_DAY - 10000, TestEntries.FIRST_DAY + 30000));
+	}
+
+	@Test
+	public void keepsDaysOfMistypedYearsInOverflow() {
+		var dataStore = new DataStore();
+		var balanceIndex = new BalanceIndex();
+		final int[] days = { Date.toEpochDay(1, 1, 20245), TestEntries.FIRST_DAY, Date.toEpochDay(3, 4, 201), TestEntries.FIRST_DAY + 100, Date.toEpochDay(1, 1, 20245) };
+		for (int i = 0; i < days.length; i++) {
+			dataStore.add(TestEntries.createDataEntry(i + 1L, days[i], Interval.NEVER, true, days[i]));
+		}
+		balanceIndex.rebuild(dataStore);
+		var dataEntry = TestEntries.createDataEntry(100L, Date.toEpochDay(2, 2, 9999), Interval.NEVER, true, Date.toEpochDay(2, 2, 9999));
+		dataStore.add(dataEntry);
+		balanceIndex.add(dataEntry);
+		for (var day : days) {
+			assertEquals(TestEntries.getBalance(dataStore, day, day), balanceIndex.getBalance(day, day));
+			assertEquals(TestEntries.getBalance(dataStore, Integer.MIN_VALUE, day), balanceIndex.getRunningBalance(day));
+		}
+		assertEquals(TestEntries.getBalance(dataStore, Integer.MIN_VALUE + 1, Integer.MAX_VALUE), balanceIndex.getBalance(Integer.MIN_VALUE + 1, Integer.MAX_VALUE));
+		assertEquals(dataStore.size(), balanceIndex.getEntries(Integer.MIN_VALUE + 1, Integer.MAX_VALUE));
+		// Removed again, the overflow days do not count anymore:
+		balanceIndex.remove(dataEntry);
+		dataStore.remove(dataEntry);
+		balanceIndex.remove(dataStore.getDataEntry(0));
+		dataStore.remove(dataStore.getDataEntry(0));
+		assertEquals(TestEntries.getBalance(dataStore, Integer.MIN_VALUE + 1, Integer.MAX_VALUE), balanceIndex.getBalance(Integer.MIN_VALUE + 1, Integer.MAX_VALUE));
+		assertEquals(dataStore.size(), balanceIndex.getEntries(Integer.MIN_VALUE + 1, Integer.MAX_VALUE));
+	}
+
+}
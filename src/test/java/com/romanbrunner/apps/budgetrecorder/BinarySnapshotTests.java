@@ -0,0 +1,74 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BinarySnapshotTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File jsonFile;
+	private File binaryFile;
+	private DataStore dataStore;
+
+	@Before
+	public void setUp() throws Exception {
+		DataEntry.TYPE_NAMES = new String[] { "Einnahmen", "Ausgaben" };
+		DataEntry.SUBTYPE_NAMES = new String[][] { { "Lohn" }, { "Essen", "Miete" } };
+		DataEntry.IS_POSITIVE_BALANCE_TYPE = new Boolean[] { true, false };
+		jsonFile = folder.newFile("database.json");
+		Files.write(jsonFile.toPath(), "{}".getBytes());
+		binaryFile = new File(folder.getRoot(), "database" + BinarySnapshot.FILE_EXTENSION);
+		var random = new Random(3L);
+		dataStore = new DataStore();
+		for (int i = 0; i < 1000; i++) {
+			var date = Date.fromEpochDay(Date.toEpochDay(1, 1, 2020) + random.nextInt(1000));
+			dataStore.add(new DataEntry(random.nextLong() % 1000000L, 1, random.nextInt(2), "Name ä" + random.nextInt(50), "Ort" + random.nextInt(5), date, Interval.byIndex(random.nextInt(5)), random.nextBoolean(), date));
+		}
+		BinarySnapshot.write(binaryFile, jsonFile, dataStore, new FsyncPolicy(FsyncPolicy.Mode.NEVER, 0L));
+	}
+
+	@Test
+	public void readsWrittenSnapshot() throws Exception {
+		DataEntry.TYPE_NAMES = null;
+		var readStore = BinarySnapshot.read(binaryFile, jsonFile);
+		assertEquals(dataStore.size(), readStore.size());
+		for (int row = 0; row < dataStore.size(); row++) {
+			for (var dataRowType : DataEntry.DataRowType.Data.values) {
+				assertEquals(dataStore.getDataEntry(row).getDataRowValueAsString(dataRowType), readStore.getDataEntry(row).getDataRowValueAsString(dataRowType));
+			}
+		}
+		assertEquals("Miete", DataEntry.SUBTYPE_NAMES[1][1]);
+	}
+
+	@Test
+	public void rejectsStaleSnapshot() throws Exception {
+		Files.write(jsonFile.toPath(), "{ }".getBytes());
+		assertNull(BinarySnapshot.read(binaryFile, jsonFile));
+	}
+
+	@Test
+	public void rejectsCorruptSnapshot() throws Exception {
+		try (var file = new RandomAccessFile(binaryFile, "rw")) {
+			file.seek(file.length() / 2);
+			int value = file.read();
+			file.seek(file.length() / 2);
+			file.write(value ^ 0xFF);
+		}
+		assertNull(BinarySnapshot.read(binaryFile, jsonFile));
+	}
+
+}
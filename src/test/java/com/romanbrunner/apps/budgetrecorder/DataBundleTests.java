@@ -0,0 +1,58 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Test;
+
+public class DataBundleTests {
+
+	private static final Interval[] BUNDLE_INTERVALS = { Interval.DAILY, Interval.WEEKLY, Interval.MONTHLY, Interval.YEARLY };
+
+	@Test
+	public void matchesScanOfAllOccurrences() {
+		final var random = new Random(4L);
+		final var dataStore = TestEntries.createRandomDataStore(random, 300);
+		final int endDay = TestEntries.FIRST_DAY + TestEntries.DAYS + 100;
+		for (var interval : BUNDLE_INTERVALS) {
+			final var expected = TestEntries.scanBundles(dataStore, interval, endDay);
+			// Without empty bundles exactly the scanned ones remain:
+			var dataBundles = DataBundle.createDataBundles(dataStore, interval, false, endDay);
+			assertEquals(expected.size(), dataBundles.size());
+			for (var dataBundle : dataBundles) {
+				final int startDay = dataBundle.getStart().getEpochDay();
+				assertEquals(IntervalMath.getEnd(startDay, interval), dataBundle.getEnd().getEpochDay());
+				assertEquals(expected.get(startDay)[0], dataBundle.getBalance());
+				assertEquals(expected.get(startDay)[1], (long)dataBundle.getEntries());
+			}
+			// With empty bundles they are consecutive from the first to the last occurrence:
+			dataBundles = DataBundle.createDataBundles(dataStore, interval, true, endDay);
+			int nextStartDay = expected.firstKey();
+			for (var dataBundle : dataBundles) {
+				final int startDay = dataBundle.getStart().getEpochDay();
+				assertEquals(nextStartDay, startDay);
+				assertEquals(expected.getOrDefault(startDay, new long[2])[0], dataBundle.getBalance());
+				nextStartDay = dataBundle.getEnd().getEpochDay() + 1;
+			}
+			assertEquals(expected.lastKey().intValue(), dataBundles.getLast().getStart().getEpochDay());
+		}
+	}
+
+	@Test
+	public void splitsRepeatsAtBundleBoundaries() {
+		var dataStore = new DataStore();
+		final int startDay = Date.toEpochDay(30, 1, 2019);
+		dataStore.add(TestEntries.createDataEntry(100L, startDay, Interval.DAILY, false, Date.toEpochDay(2, 2, 2019)));
+		dataStore.add(TestEntries.createDataEntry(-50L, Date.toEpochDay(31, 1, 2019), Interval.MONTHLY, false, Date.toEpochDay(31, 5, 2019)));
+		final var dataBundles = DataBundle.createDataBundles(dataStore, Interval.MONTHLY, false, Date.toEpochDay(31, 12, 2019));
+		assertEquals(5, dataBundles.size());
+		assertEquals(150L, dataBundles.get(0).getBalance());  // Two daily and one monthly occurrence in January
+		assertEquals(150L, dataBundles.get(1).getBalance());  // Two daily and one monthly occurrence on the last day of February
+		assertEquals(-50L, dataBundles.get(4).getBalance());
+		assertEquals(Date.toEpochDay(1, 5, 2019), dataBundles.get(4).getStart().getEpochDay());
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Test;
+
+public class DataRollupsTests {
+
+	private static final Interval[] ROLLUP_INTERVALS = { Interval.DAILY, Interval.WEEKLY, Interval.MONTHLY, Interval.YEARLY };
+
+	private static void assertMatchesScan(DataStore dataStore, DataRollups dataRollups) {
+		int lastDay = Integer.MIN_VALUE;
+		for (int row = 0; row < dataStore.size(); row++) {
+			lastDay = Math.max(lastDay, dataStore.getDate(row));
+		}
+		for (var interval : ROLLUP_INTERVALS) {
+			final var expected = TestEntries.scanBundles(dataStore, interval, IntervalMath.getEnd(lastDay, interval));
+			final var dataBundles = dataRollups.getDataBundles(interval, false);
+			assertEquals(interval.toString(), expected.size(), dataBundles.size());
+			for (var dataBundle : dataBundles) {
+				final var bundle = expected.get(dataBundle.getStart().getEpochDay());
+				assertEquals(interval.toString(), bundle[0], dataBundle.getBalance());
+				assertEquals(interval.toString(), bundle[1], (long)dataBundle.getEntries());
+			}
+		}
+	}
+
+	@Test
+	public void followsAddedRemovedAndModifiedEntries() throws Exception {
+		final var random = new Random(5L);
+		var dataStore = TestEntries.createRandomDataStore(random, 150);
+		var dataRollups = new DataRollups();
+		dataRollups.rebuild(dataStore);
+		assertMatchesScan(dataStore, dataRollups);
+		for (int step = 0; step < 60; step++) {
+			switch (step % 3) {
+				case 0:
+					var dataEntry = TestEntries.createRandomDataEntry(random);
+					dataStore.add(dataEntry);
+					dataRollups.add(dataEntry);
+					break;
+				case 1:
+					dataEntry = dataStore.getDataEntry(random.nextInt(dataStore.size()));
+					dataRollups.remove(dataEntry);
+					dataStore.remove(dataEntry);
+					break;
+				default:
+					// Modifications go through remove and add like in the main frame:
+					dataEntry = dataStore.getDataEntry(random.nextInt(dataStore.size()));
+					dataRollups.remove(dataEntry);
+					dataEntry.setValue(DataEntry.DataRowType.REPEAT, random.nextInt(Interval.Data.length));
+					dataEntry.setValue(DataEntry.DataRowType.DATE, Date.fromEpochDay(TestEntries.FIRST_DAY + random.nextInt(TestEntries.DAYS)).toString());
+					dataRollups.add(dataEntry);
+					break;
+			}
+			assertMatchesScan(dataStore, dataRollups);
+		}
+	}
+
+	@Test
+	public void extendsRepeatsToLaterLastDate() {
+		var dataStore = new DataStore();
+		var dataRollups = new DataRollups();
+		var dataEntry = TestEntries.createDataEntry(100L, Date.toEpochDay(15, 3, 2019), Interval.MONTHLY, true, 0);
+		dataStore.add(dataEntry);
+		dataRollups.add(dataEntry);
+		assertEquals(1, dataRollups.getDataBundles(Interval.MONTHLY, false).size());  // Bundles end with the last date
+		// A plain entry two years later moves the horizon of the infinitely repeated entry:
+		dataEntry = TestEntries.createDataEntry(-30L, Date.toEpochDay(1, 6, 2021), Interval.NEVER, true, 0);
+		dataStore.add(dataEntry);
+		dataRollups.add(dataEntry);
+		assertMatchesScan(dataStore, dataRollups);
+		assertEquals(28, dataRollups.getDataBundles(Interval.MONTHLY, false).size());
+		dataRollups.remove(dataEntry);
+		dataStore.remove(dataEntry);
+		assertMatchesScan(dataStore, dataRollups);
+	}
+
+}
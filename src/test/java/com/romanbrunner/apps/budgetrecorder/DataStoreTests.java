@@ -0,0 +1,139 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Test;
+
+public class DataStoreTests {
+
+	private static final String[] NAMES = { "Migros", "Coop", "Manor", "migros", "" };
+
+	private static DataStore createDataStore(Random random, int size) {
+		var dataStore = new DataStore();
+		for (int i = 0; i < size; i++) {
+			var dataEntry = TestEntries.createRandomDataEntry(random);
+			dataEntry.getStore().setName(dataEntry.getRow(), NAMES[random.nextInt(NAMES.length)]);
+			dataEntry.getStore().setLocation(dataEntry.getRow(), NAMES[random.nextInt(NAMES.length)]);
+			dataStore.add(dataEntry);
+		}
+		return dataStore;
+	}
+
+	private static String getValues(DataEntry dataEntry) throws Exception {
+		var values = new StringBuilder();
+		for (var dataRowType : DataEntry.DataRowType.Data.values) {
+			values.append(dataEntry.getDataRowValueAsString(dataRowType)).append('|');
+		}
+		return values.toString();
+	}
+
+	@Test
+	public void removesBySwappingInLastRow() throws Exception {
+		final var random = new Random(8L);
+		var dataStore = createDataStore(random, 100);
+		var dataEntries = new ArrayList<DataEntry>(dataStore.getDataEntries());
+		var ids = new ArrayList<Long>();
+		var values = new ArrayList<String>();
+		for (var dataEntry : dataEntries) {
+			ids.add(dataEntry.getId());
+			values.add(getValues(dataEntry));
+		}
+		while (dataEntries.isEmpty() == false) {
+			final int index = random.nextInt(dataEntries.size());
+			final var dataEntry = dataEntries.remove(index);
+			final long id = ids.remove(index);
+			final var value = values.remove(index);
+			dataStore.remove(dataEntry);
+			// Removed entry keeps its values and id in a store of its own:
+			assertTrue(dataEntry.getStore() != dataStore);
+			assertEquals(id, dataEntry.getId());
+			assertEquals(value, getValues(dataEntry));
+			assertEquals(-1, dataStore.getRow(id));
+			// Remaining entries still view their own values and are found by their ids:
+			assertEquals(dataEntries.size(), dataStore.size());
+			for (int i = 0; i < dataEntries.size(); i++) {
+				final var remainingEntry = dataEntries.get(i);
+				final int row = dataStore.getRow(ids.get(i));
+				assertSame(dataStore, remainingEntry.getStore());
+				assertEquals(row, remainingEntry.getRow());
+				assertSame(remainingEntry, dataStore.getDataEntry(row));
+				assertEquals(ids.get(i).longValue(), dataStore.getId(row));
+				assertEquals(values.get(i), getValues(remainingEntry));
+			}
+		}
+	}
+
+	@Test
+	public void sortsRowsLikeComparator() {
+		final var random = new Random(9L);
+		var dataStore = createDataStore(random, 200);
+		for (var dataRowType : DataEntry.DataRowType.Data.values) {
+			for (var mode : DataEntry.DataRowSorting.Mode.values()) {
+				final var sorting = new DataEntry.DataRowSorting(dataRowType, mode);
+				final var comparator = new DataEntry.DataComparator(sorting);
+				final int[] rows = dataStore.getSortedRows(sorting);
+				final int[] sortedRows = rows.clone();
+				Arrays.sort(sortedRows);
+				for (int row = 0; row < sortedRows.length; row++) {
+					assertEquals(row, sortedRows[row]);  // Every row once
+				}
+				for (int i = 1; i < rows.length; i++) {
+					assertTrue(sorting.row + " " + mode, comparator.compare(dataStore.getDataEntry(rows[i - 1]), dataStore.getDataEntry(rows[i])) <= 0);
+				}
+				// Sorting a part of the rows keeps their order within all rows:
+				final int[] someRows = { rows[5], rows[150], rows[0], rows[99] };
+				assertArrayEquals(new int[] { rows[0], rows[5], rows[99], rows[150] }, dataStore.getSortedRows(sorting, someRows));
+			}
+		}
+	}
+
+	@Test
+	public void copiesAndAppendsWithIds() throws Exception {
+		final var random = new Random(10L);
+		var dataStore = createDataStore(random, 50);
+		final var copy = dataStore.copy();
+		var other = createDataStore(random, 20);
+		other.append(copy);
+		assertEquals(70, other.size());
+		for (int row = 0; row < dataStore.size(); row++) {
+			final int otherRow = other.getRow(dataStore.getId(row));
+			assertEquals(20 + row, otherRow);
+			assertTrue(dataStore.hasEqualValues(row, other, otherRow));
+		}
+		try {
+			other.append(copy);
+			fail("Appending the same ids twice has to fail");
+		}
+		catch (Exception exception) {
+			assertEquals(70, other.size());
+		}
+		// A taken id behind new ones leaves the new ones unmapped:
+		var partlyTaken = createDataStore(random, 5);
+		partlyTaken.add(copy.getDataEntry(0));
+		try {
+			other.append(partlyTaken);
+			fail("Appending a taken id has to fail");
+		}
+		catch (Exception exception) {
+			assertEquals(70, other.size());
+			for (int row = 0; row < 5; row++) {
+				assertEquals(-1, other.getRow(partlyTaken.getId(row)));
+			}
+		}
+		// Entries added to the copy do not show up in the original:
+		copy.add(TestEntries.createDataEntry(1L, TestEntries.FIRST_DAY, Interval.NEVER, true, TestEntries.FIRST_DAY));
+		assertEquals(51, copy.size());
+		assertEquals(50, dataStore.size());
+	}
+
+}
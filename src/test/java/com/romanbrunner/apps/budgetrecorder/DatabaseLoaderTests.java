@@ -0,0 +1,115 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DatabaseLoaderTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File databaseFile;
+	private DataStore dataStore;
+
+	@Before
+	public void setUp() throws Exception {
+		DataEntry.TYPE_NAMES = new String[] { "Einnahmen", "Ausgaben" };
+		DataEntry.SUBTYPE_NAMES = new String[][] { { "Lohn" }, { "Essen", "Miete" } };
+		DataEntry.IS_POSITIVE_BALANCE_TYPE = new Boolean[] { true, false };
+		databaseFile = folder.newFile("database.json");
+		var random = new Random(5L);
+		dataStore = new DataStore();
+		for (int i = 0; i < 20000; i++) {
+			var date = Date.fromEpochDay(Date.toEpochDay(1, 1, 2020) + random.nextInt(1000));
+			// Names with json structure characters must not confuse the chunk boundaries:
+			dataStore.add(new DataEntry(random.nextInt(100000), 1, random.nextInt(2), "Name {[\"" + random.nextInt(50) + "\\", "Ort" + random.nextInt(5), date, Interval.NEVER, true, DataEntry.DEFAULT_VALUE_UNTIL));
+		}
+	}
+
+	private void writeDatabaseFile(boolean compact) throws Exception {
+		try (var jsonGenerator = new ObjectMapper().getFactory().createGenerator(databaseFile, JsonEncoding.UTF8)) {
+			if (compact == false) {
+				jsonGenerator.useDefaultPrettyPrinter();
+			}
+			MainFrame.Serializer.writeDatabase(jsonGenerator, dataStore, compact);
+		}
+	}
+
+	private void assertReadsEntriesInOriginalOrder() throws Exception {
+		var readStore = new DataStore();
+		DatabaseLoader.read(databaseFile, new ObjectMapper(), readStore, false);
+		assertEquals(dataStore.size(), readStore.size());
+		for (int row = 0; row < dataStore.size(); row++) {
+			for (var dataRowType : DataEntry.DataRowType.Data.values) {
+				assertEquals(dataStore.getDataEntry(row).getDataRowValueAsString(dataRowType), readStore.getDataEntry(row).getDataRowValueAsString(dataRowType));
+			}
+		}
+	}
+
+	@Test
+	public void readsCompactEntries() throws Exception {
+		writeDatabaseFile(true);
+		assertReadsEntriesInOriginalOrder();
+	}
+
+	@Test
+	public void readsPrettyPrintedEntries() throws Exception {
+		writeDatabaseFile(false);
+		assertReadsEntriesInOriginalOrder();
+	}
+
+	@Test
+	public void rejectsInvalidDate() throws Exception {
+		writeDatabaseFile(false);
+		var json = new String(Files.readAllBytes(databaseFile.toPath()), "UTF-8");
+		final int dateIndex = json.lastIndexOf("\"Date\"");
+		final int arrayStart = json.indexOf('[', dateIndex);
+		final int arrayEnd = json.indexOf(']', arrayStart);
+		Files.write(databaseFile.toPath(), (json.substring(0, arrayStart) + "[ 30, 2, 2021 ]" + json.substring(arrayEnd + 1)).getBytes("UTF-8"));
+		try {
+			DatabaseLoader.read(databaseFile, new ObjectMapper(), new DataStore(), false);
+			fail();
+		} catch (Exception exception) {
+			assertTrue(exception.getMessage().contains("Invalid data entry " + (dataStore.size() - 1)));
+		}
+	}
+
+	private void replaceVersionMajor(int versionMajor) throws Exception {
+		var json = new String(Files.readAllBytes(databaseFile.toPath()), "UTF-8");
+		Files.write(databaseFile.toPath(), json.replaceFirst("\"versionMajor\" : \\d+", "\"versionMajor\" : " + versionMajor).getBytes("UTF-8"));
+	}
+
+	@Test
+	public void readsArrayDatesOfFormerMajorVersion() throws Exception {
+		writeDatabaseFile(false);
+		replaceVersionMajor(MainFrame.OLDEST_READABLE_VERSION_MAJOR);
+		assertReadsEntriesInOriginalOrder();
+	}
+
+	@Test
+	public void rejectsNewerMajorVersion() throws Exception {
+		writeDatabaseFile(false);
+		replaceVersionMajor(MainFrame.VERSION_MAJOR + 1);
+		try {
+			DatabaseLoader.read(databaseFile, new ObjectMapper(), new DataStore(), false);
+			fail();
+		} catch (Exception exception) {
+			assertTrue(exception.getMessage().contains("major version"));
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DatabaseWatcherTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void ignoresOwnWritesAndReportsExternalOnes() throws Exception {
+		var databaseFile = new File(folder.getRoot(), "database.json");
+		var journalFile = new File(folder.getRoot(), "database" + Journal.FILE_EXTENSION);
+		Files.write(databaseFile.toPath(), "{}".getBytes());
+		var watcher = new DatabaseWatcher(folder.getRoot(), Arrays.asList(databaseFile, journalFile), () -> {});
+		watcher.rememberOwnState();
+		assertFalse(watcher.hasExternalChanges());
+		Files.write(journalFile.toPath(), "{}\n".getBytes());
+		assertTrue(watcher.hasExternalChanges());
+		watcher.rememberOwnState();
+		assertFalse(watcher.hasExternalChanges());
+		journalFile.delete();
+		assertTrue(watcher.hasExternalChanges());
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Test;
+
+public class DateIndexTests {
+
+	private static Set<DataEntry> scanDataEntries(DataStore dataStore, int startDay, int endDay) {
+		var dataEntries = Collections.newSetFromMap(new IdentityHashMap<DataEntry, Boolean>());
+		for (var dataEntry : dataStore.getDataEntries()) {
+			for (var day : TestEntries.getOccurrenceDays(dataEntry, endDay)) {
+				if (day >= startDay) {
+					dataEntries.add(dataEntry);
+				}
+			}
+		}
+		return dataEntries;
+	}
+
+	private static void assertMatchesScan(DataStore dataStore, DateIndex dateIndex, Random random) {
+		for (int i = 0; i < 20; i++) {
+			final int startDay = TestEntries.FIRST_DAY - 100 + random.nextInt(TestEntries.DAYS + 200);
+			final int endDay = startDay + random.nextInt(60);
+			final var dataEntries = dateIndex.getDataEntries(startDay, endDay);
+			var foundDataEntries = Collections.newSetFromMap(new IdentityHashMap<DataEntry, Boolean>());
+			foundDataEntries.addAll(dataEntries);
+			assertEquals(foundDataEntries.size(), dataEntries.size());  // Every entry once
+			assertEquals(scanDataEntries(dataStore, startDay, endDay), foundDataEntries);
+		}
+	}
+
+	@Test
+	public void followsAddedRemovedAndModifiedEntries() throws Exception {
+		final var random = new Random(7L);
+		var dataStore = TestEntries.createRandomDataStore(random, 150);
+		var dateIndex = new DateIndex();
+		dateIndex.rebuild(dataStore);
+		assertMatchesScan(dataStore, dateIndex, random);
+		for (int step = 0; step < 60; step++) {
+			switch (step % 3) {
+				case 0:
+					var dataEntry = TestEntries.createRandomDataEntry(random);
+					dataStore.add(dataEntry);
+					dateIndex.add(dataEntry);
+					break;
+				case 1:
+					dataEntry = dataStore.getDataEntry(random.nextInt(dataStore.size()));
+					dateIndex.remove(dataEntry);
+					dataStore.remove(dataEntry);
+					break;
+				default:
+					// Modifications go through remove and add like in the main frame:
+					dataEntry = dataStore.getDataEntry(random.nextInt(dataStore.size()));
+					dateIndex.remove(dataEntry);
+					dataEntry.setValue(DataEntry.DataRowType.REPEAT, random.nextInt(Interval.Data.length));
+					dataEntry.setValue(DataEntry.DataRowType.DATE, Date.fromEpochDay(TestEntries.FIRST_DAY + random.nextInt(TestEntries.DAYS)).toString());
+					dateIndex.add(dataEntry);
+					break;
+			}
+			assertMatchesScan(dataStore, dateIndex, random);
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FsyncPolicyTests {
+
+	private static final long HOUR = 3600L;  // Seconds
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() {
+		DataEntry.TYPE_NAMES = new String[] { "Einnahmen", "Ausgaben" };
+		DataEntry.SUBTYPE_NAMES = new String[][] { { "Lohn" }, { "Essen", "Miete" } };
+		DataEntry.IS_POSITIVE_BALANCE_TYPE = new Boolean[] { true, false };
+	}
+
+	private static DataStore createDataStore(long seed, int size) {
+		var random = new Random(seed);
+		var dataStore = new DataStore();
+		for (int i = 0; i < size; i++) {
+			var date = Date.fromEpochDay(Date.toEpochDay(1, 1, 2020) + random.nextInt(1000));
+			dataStore.add(new DataEntry(random.nextInt(10000) - 5000, 1, random.nextInt(2), "Name" + random.nextInt(50), "Ort", date, Interval.NEVER, true, DataEntry.DEFAULT_VALUE_UNTIL));
+		}
+		return dataStore;
+	}
+
+	private static void assertReadsStore(DataStore dataStore, File databaseFile) throws Exception {
+		var readStore = new DataStore();
+		DatabaseLoader.read(databaseFile, new ObjectMapper(), readStore, false);
+		assertEquals(dataStore.size(), readStore.size());
+		for (int row = 0; row < dataStore.size(); row++) {
+			assertEquals(dataStore.getId(row), readStore.getId(row));
+			assertEquals(dataStore.getMoney(row), readStore.getMoney(row));
+		}
+	}
+
+	private boolean[] syncTwice(FsyncPolicy fsyncPolicy) throws Exception {
+		try (var channel = FileChannel.open(folder.newFile().toPath(), StandardOpenOption.WRITE)) {
+			return new boolean[] { fsyncPolicy.sync(channel), fsyncPolicy.sync(channel) };
+		}
+	}
+
+	@Test
+	public void parsesConfigValues() throws Exception {
+		var fsyncPolicy = FsyncPolicy.parse(" interval", "5 ");
+		assertEquals(FsyncPolicy.Mode.INTERVAL, fsyncPolicy.getMode());
+		assertEquals(5000L, fsyncPolicy.getInterval());
+		fsyncPolicy = FsyncPolicy.parse(null, null);
+		assertEquals(FsyncPolicy.DEFAULT_MODE, fsyncPolicy.getMode());
+		assertEquals(FsyncPolicy.DEFAULT_INTERVAL * 1000L, fsyncPolicy.getInterval());
+		try {
+			FsyncPolicy.parse("sometimes", null);
+			fail("Unknown fsync policy got accepted");
+		} catch (Exception exception) {
+			assertTrue(exception.getMessage().contains("sometimes"));
+		}
+	}
+
+	@Test
+	public void syncsRegardingMode() throws Exception {
+		var synced = syncTwice(new FsyncPolicy(FsyncPolicy.Mode.ALWAYS, HOUR));
+		assertTrue(synced[0] && synced[1]);
+		synced = syncTwice(new FsyncPolicy(FsyncPolicy.Mode.NEVER, HOUR));
+		assertTrue(synced[0] == false && synced[1] == false);
+		// Only the first sync of an interval forces:
+		synced = syncTwice(new FsyncPolicy(FsyncPolicy.Mode.INTERVAL, HOUR));
+		assertTrue(synced[0] && synced[1] == false);
+	}
+
+	@Test
+	public void replacesDatabaseFileThroughTempFile() throws Exception {
+		for (var mode : FsyncPolicy.Mode.values()) {
+			var fsyncPolicy = new FsyncPolicy(mode, HOUR);
+			var directory = folder.newFolder(mode.toString());
+			var databaseFile = new File(directory, "database.json");
+			MainFrame.writeJsonFile(databaseFile, createDataStore(1L, 100), fsyncPolicy);
+			var dataStore = createDataStore(2L, 150);
+			MainFrame.writeJsonFile(databaseFile, dataStore, fsyncPolicy);
+			assertReadsStore(dataStore, databaseFile);
+			// Nothing but the database file is left behind:
+			assertEquals(1, directory.list().length);
+		}
+	}
+
+	@Test
+	public void keepsDatabaseFileOfFailedWrite() throws Exception {
+		var fsyncPolicy = new FsyncPolicy(FsyncPolicy.Mode.ALWAYS, HOUR);
+		var databaseFile = folder.newFile("database.json");
+		var dataStore = createDataStore(3L, 100);
+		MainFrame.writeJsonFile(databaseFile, dataStore, fsyncPolicy);
+		final var content = Files.readAllBytes(databaseFile.toPath());
+		// A temporary file that can't be written stops the write before the database file gets replaced:
+		assertTrue(new File(databaseFile.getPath() + ".tmp").mkdir());
+		try {
+			MainFrame.writeJsonFile(databaseFile, createDataStore(4L, 150), fsyncPolicy);
+			fail("Write into a directory succeeded");
+		} catch (Exception exception) {
+			assertTrue(Files.isDirectory(new File(databaseFile.getPath() + ".tmp").toPath()));
+		}
+		assertEquals(new String(content, "UTF-8"), new String(Files.readAllBytes(databaseFile.toPath()), "UTF-8"));
+		assertReadsStore(dataStore, databaseFile);
+	}
+
+	@Test
+	public void keepsJournalRecordsPendingInIntervalMode() throws Exception {
+		var snapshotFile = folder.newFile("database.json");
+		var dataStore = createDataStore(5L, 2);
+		for (var mode : FsyncPolicy.Mode.values()) {
+			var journal = new Journal(snapshotFile, new File(folder.getRoot(), mode + Journal.FILE_EXTENSION), new FsyncPolicy(mode, HOUR));
+			journal.append(journal.encodeAdd(dataStore.getDataEntry(0)));
+			journal.append(journal.encodeAdd(dataStore.getDataEntry(1)));
+			assertEquals(mode == FsyncPolicy.Mode.INTERVAL, journal.isSyncPending());
+			journal.syncPending();
+			assertEquals(false, journal.isSyncPending());
+			journal.close();
+		}
+	}
+
+}
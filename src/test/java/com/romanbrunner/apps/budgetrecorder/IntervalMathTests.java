@@ -0,0 +1,130 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Test;
+
+public class IntervalMathTests {
+
+	private static final int SAMPLES = 200000;
+	private static final int FIRST_YEAR = 1700;
+	private static final int LAST_YEAR = 2400;
+
+	// Reference implementation with the calendar based interval arithmetic that IntervalMath replaces:
+	private static Calendar toCalendar(int epochDay) {
+		int packedCivil = Date.toPackedCivil(epochDay);
+		var calendar = new GregorianCalendar();
+		calendar.setGregorianChange(new java.util.Date(Long.MIN_VALUE));  // Proleptic gregorian calendar
+		calendar.setFirstDayOfWeek(Calendar.MONDAY);
+		calendar.clear();
+		calendar.set(Date.packedYear(packedCivil), Date.packedMonth(packedCivil) - 1, Date.packedDay(packedCivil));
+		return calendar;
+	}
+
+	private static int toEpochDay(Calendar calendar) {
+		return Date.toEpochDay(calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.YEAR));
+	}
+
+	private static Calendar addInterval(Calendar calendar, Interval interval) {
+		switch (interval) {
+			case WEEKLY:
+				calendar.add(Calendar.WEEK_OF_MONTH, 1);
+				break;
+			case MONTHLY:
+				calendar.add(Calendar.MONTH, 1);
+				break;
+			case YEARLY:
+				calendar.add(Calendar.YEAR, 1);
+				break;
+			default:
+				calendar.add(Calendar.DAY_OF_YEAR, 1);
+				break;
+		}
+		return calendar;
+	}
+
+	private static int referenceStart(int epochDay, Interval interval) {
+		var calendar = toCalendar(epochDay);
+		switch (interval) {
+			case WEEKLY:
+				calendar.add(Calendar.DAY_OF_YEAR, -((calendar.get(Calendar.DAY_OF_WEEK) - Calendar.MONDAY + 7) % 7));  // Avoid lenient field resolution of set(DAY_OF_WEEK)
+				break;
+			case MONTHLY:
+				calendar.set(Calendar.DAY_OF_MONTH, 1);
+				break;
+			case YEARLY:
+				calendar.set(Calendar.DAY_OF_YEAR, 1);
+				break;
+			default:
+				break;
+		}
+		return toEpochDay(calendar);
+	}
+
+	private static int referenceEnd(int epochDay, Interval interval) {
+		var calendar = addInterval(toCalendar(referenceStart(epochDay, interval)), interval);
+		calendar.add(Calendar.DAY_OF_YEAR, -1);
+		return toEpochDay(calendar);
+	}
+
+	private static int referenceNext(int epochDay, Interval interval) {
+		return toEpochDay(addInterval(toCalendar(epochDay), interval));
+	}
+
+	@Test
+	public void matchesCalendarArithmetic() {
+		var random = new Random(42L);
+		int firstDay = Date.toEpochDay(1, 1, FIRST_YEAR);
+		int lastDay = Date.toEpochDay(31, 12, LAST_YEAR);
+		for (int i = 0; i < SAMPLES; i++) {
+			int epochDay = firstDay + random.nextInt(lastDay - firstDay);
+			for (var interval : Interval.Data.values) {
+				String message = interval + " at " + Date.fromEpochDay(epochDay);
+				assertEquals(message, referenceStart(epochDay, interval), IntervalMath.getStart(epochDay, interval));
+				assertEquals(message, referenceEnd(epochDay, interval), IntervalMath.getEnd(epochDay, interval));
+				assertEquals(message, referenceNext(epochDay, interval), IntervalMath.getNext(epochDay, interval));
+			}
+		}
+	}
+
+	@Test
+	public void clampsToMonthEnd() throws Exception {
+		for (int year = FIRST_YEAR; year <= LAST_YEAR; year++) {
+			for (int month = 1; month <= 12; month++) {
+				int epochDay = Date.toEpochDay(Date.getMonthLength(month, year), month, year);
+				assertEquals(referenceNext(epochDay, Interval.MONTHLY), IntervalMath.getNext(epochDay, Interval.MONTHLY));
+				assertEquals(referenceNext(epochDay, Interval.YEARLY), IntervalMath.getNext(epochDay, Interval.YEARLY));
+			}
+		}
+		assertEquals(new Date(28, 2, 2021), Interval.getIntervalNextDate(new Date(29, 2, 2020), Interval.YEARLY));
+		assertEquals(new Date(29, 2, 2024), Interval.getIntervalNextDate(new Date(31, 1, 2024), Interval.MONTHLY));
+	}
+
+	@Test
+	public void findsOccurrenceIndexWithoutIterating() {
+		var random = new Random(7L);
+		int firstDay = Date.toEpochDay(1, 1, FIRST_YEAR);
+		for (int i = 0; i < SAMPLES / 100; i++) {
+			int originDay = firstDay + random.nextInt(LAST_YEAR - FIRST_YEAR) * 365;
+			for (var interval : Interval.Data.values) {
+				if (interval == Interval.NEVER) {
+					continue;
+				}
+				int n = 0;
+				for (int epochDay = originDay - 1; epochDay < originDay + 800; epochDay++) {
+					while (IntervalMath.getOccurrence(originDay, n, interval) <= epochDay) {
+						n++;
+					}
+					assertEquals(interval + " from " + Date.fromEpochDay(originDay), n - 1, IntervalMath.getOccurrenceIndex(originDay, epochDay, interval));
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	// Creates a data entry with only the values that the json format keeps:
+	private static DataEntry createDataEntry(Random random) {
+		var date = Date.fromEpochDay(Date.toEpochDay(1, 1, 2020) + random.nextInt(1000));
+		var repeat = Interval.byIndex(random.nextInt(5));
+		boolean duration = (repeat == Interval.NEVER || random.nextBoolean());
+		var until = (duration ? DataEntry.DEFAULT_VALUE_UNTIL : date);
+		return new DataEntry(random.nextInt(10000) - 5000, 0, 0, "Name" + random.nextInt(10), "Location", date, repeat, duration, until);
+	}
+
+	private static void assertSameRows(DataStore expected, DataStore actual) throws Exception {
+		assertEquals(expected.size(), actual.size());
+		for (int row = 0; row < expected.size(); row++) {
+			assertEquals(expected.getId(row), actual.getId(row));
+			assertEquals(row, actual.getRow(actual.getId(row)));
+			for (var dataRowType : DataEntry.DataRowType.Data.values) {
+				assertEquals(expected.getDataEntry(row).getDataRowValueAsString(dataRowType), actual.getDataEntry(row).getDataRowValueAsString(dataRowType));
+			}
+		}
+	}
+
+	@Test
+	public void replaysRecordsOntoSnapshot() throws Exception {
+		var snapshotFile = folder.newFile("database.json");
+		var journalFile = new File(folder.getRoot(), "database" + Journal.FILE_EXTENSION);
+		var random = new Random(7L);
+		var dataStore = new DataStore();
+		for (int i = 0; i < 20; i++) {
+			dataStore.add(createDataEntry(random));
+		}
+		var snapshotStore = dataStore.copy();
+		// Record random changes:
+		var journal = new Journal(snapshotFile, journalFile);
+		for (int i = 0; i < 500; i++) {
+			int operation = random.nextInt(3);
+			if (operation == 0 || dataStore.size() == 0) {
+				var dataEntry = createDataEntry(random);
+				dataStore.add(dataEntry);
+				journal.append(journal.encodeAdd(dataEntry));
+			} else if (operation == 1) {
+				var dataEntry = dataStore.getDataEntry(random.nextInt(dataStore.size()));
+				journal.append(journal.encodeRemove(dataEntry));
+				dataStore.remove(dataEntry);
+			} else {
+				var dataEntry = dataStore.getDataEntry(random.nextInt(dataStore.size()));
+				dataEntry.setValue(DataEntry.DataRowType.NAME, "Modified" + i);
+				journal.append(journal.encodeModify(dataEntry));
+			}
+		}
+		// Replay them including a partially written last record:
+		Files.write(journalFile.toPath(), "{\"Record\":\"add\",\"Ro".getBytes(), java.nio.file.StandardOpenOption.APPEND);
+		assertEquals(500, new Journal(snapshotFile, journalFile).replay(snapshotStore));
+		assertSameRows(dataStore, snapshotStore);
+	}
+
+	@Test
+	public void keepsJournalOfSnapshotWithChangedModificationTime() throws Exception {
+		var snapshotFile = folder.newFile("database.json");
+		Files.write(snapshotFile.toPath(), "{}".getBytes());
+		var journalFile = new File(folder.getRoot(), "database" + Journal.FILE_EXTENSION);
+		var dataEntry = createDataEntry(new Random(2L));
+		new DataStore().add(dataEntry);
+		var journal = new Journal(snapshotFile, journalFile);
+		journal.append(journal.encodeAdd(dataEntry));
+		journal.close();
+		// Simulate a sync client that rewrites the snapshot with the same content:
+		snapshotFile.setLastModified(snapshotFile.lastModified() - 60000L);
+		var dataStore = new DataStore();
+		var replayedJournal = new Journal(snapshotFile, journalFile);
+		assertEquals(1, replayedJournal.replay(dataStore));
+		assertEquals(null, replayedJournal.getOutdatedFile());
+		assertEquals(dataEntry.getId(), dataStore.getId(0));
+	}
+
+	@Test
+	public void setsAsideJournalOfOutdatedSnapshot() throws Exception {
+		var snapshotFile = folder.newFile("database.json");
+		var journalFile = new File(folder.getRoot(), "database" + Journal.FILE_EXTENSION);
+		var dataStore = new DataStore();
+		var dataEntry = createDataEntry(new Random(1L));
+		dataStore.add(dataEntry);
+		var journal = new Journal(snapshotFile, journalFile);
+		journal.append(journal.encodeAdd(dataEntry));
+		journal.close();
+		final var records = Files.readAllBytes(journalFile.toPath());
+		// Simulate a compaction that crashed before the journal got cleared:
+		Files.write(snapshotFile.toPath(), "{}".getBytes());
+		var replayedJournal = new Journal(snapshotFile, journalFile);
+		assertEquals(0, replayedJournal.replay(new DataStore()));
+		assertEquals(false, journalFile.exists());
+		assertArrayEquals(records, Files.readAllBytes(replayedJournal.getOutdatedFile().toPath()));
+	}
+
+	@Test
+	public void mergesRecordsByIdOntoChangesOfOthers() throws Exception {
+		var random = new Random(3L);
+		var dataStore = new DataStore();
+		for (int i = 0; i < 4; i++) {
+			dataStore.add(createDataEntry(random));
+		}
+		var otherStore = dataStore.copy();
+		var journal = new Journal(folder.newFile("database.json"), new File(folder.getRoot(), "database" + Journal.FILE_EXTENSION));
+		var records = new ByteArrayOutputStream();
+		// Local changes:
+		var addedEntry = createDataEntry(random);
+		dataStore.add(addedEntry);
+		records.write(journal.encodeAdd(addedEntry));
+		var modifiedEntry = dataStore.getDataEntry(0);
+		modifiedEntry.setValue(DataEntry.DataRowType.NAME, "Local");
+		records.write(journal.encodeModify(modifiedEntry));
+		var removedEntry = dataStore.getDataEntry(1);
+		records.write(journal.encodeRemove(removedEntry));
+		dataStore.remove(removedEntry);
+		var keptEntry = dataStore.getDataEntry(2);
+		keptEntry.setValue(DataEntry.DataRowType.NAME, "Kept");
+		records.write(journal.encodeModify(keptEntry));
+		// Changes of others, which remove the locally modified entry and add one of their own:
+		otherStore.getDataEntry(3).setValue(DataEntry.DataRowType.NAME, "Other");
+		otherStore.remove(otherStore.getDataEntry(otherStore.getRow(keptEntry.getId())));
+		var otherEntry = createDataEntry(random);
+		otherStore.add(otherEntry);
+		var appliedRecords = new ByteArrayOutputStream();
+		var replayedStore = otherStore.copy();
+		assertEquals(4, journal.merge(records.toByteArray(), otherStore, appliedRecords));
+		assertEquals(5, otherStore.size());
+		assertEquals("Local", otherStore.getDataEntry(otherStore.getRow(modifiedEntry.getId())).getName());
+		assertEquals("Kept", otherStore.getDataEntry(otherStore.getRow(keptEntry.getId())).getName());
+		assertEquals(-1, otherStore.getRow(removedEntry.getId()));
+		assertTrue(otherStore.getRow(addedEntry.getId()) >= 0);
+		assertTrue(otherStore.getRow(otherEntry.getId()) >= 0);
+		// Applied records fit the changes of others, so they can be journaled onto them:
+		var journalFile = new File(folder.getRoot(), "merged" + Journal.FILE_EXTENSION);
+		var otherSnapshotFile = folder.newFile("other.json");
+		var mergedJournal = new Journal(otherSnapshotFile, journalFile);
+		mergedJournal.append(appliedRecords.toByteArray());
+		mergedJournal.close();
+		assertEquals(4, new Journal(otherSnapshotFile, journalFile).replay(replayedStore));
+		assertSameRows(otherStore, replayedStore);
+	}
+
+}
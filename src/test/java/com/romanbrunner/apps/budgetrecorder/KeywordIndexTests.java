@@ -0,0 +1,39 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Test;
+
+public class KeywordIndexTests {
+
+	private static DataEntry createDataEntry(int type, int subtype, String name) {
+		return new DataEntry(100L, type, subtype, name, "Location", Date.CURRENT_DATE, Interval.NEVER, true, DataEntry.DEFAULT_VALUE_UNTIL);
+	}
+
+	@Test
+	public void followsChangesOfDataEntries() throws Exception {
+		var dataStore = new DataStore();
+		dataStore.add(createDataEntry(0, 0, "Migros"));
+		dataStore.add(createDataEntry(0, 0, "Migrolino"));
+		dataStore.add(createDataEntry(0, 1, "Manor"));
+		var nameIndex = new KeywordIndex(DataEntry.DataRowType.NAME, () -> dataStore);
+		var scope = nameIndex.getScope(0, 0);
+		assertEquals(Arrays.asList("Migrolino", "Migros"), scope.getTopCompletions("m"));
+		assertEquals(Arrays.asList("Manor"), nameIndex.getScope(0, 1).getTopCompletions("m"));
+		// Edits go through remove and add like in the main frame:
+		var dataEntry = dataStore.getDataEntry(1);
+		nameIndex.remove(dataEntry);
+		dataEntry.setValue(DataEntry.DataRowType.NAME, "Migros");
+		nameIndex.add(dataEntry);
+		assertEquals(Arrays.asList("Migros"), scope.getTopCompletions("mig"));
+		nameIndex.remove(dataStore.getDataEntry(0));
+		nameIndex.remove(dataEntry);
+		assertNull(scope.getBestCompletion("m"));
+	}
+
+}
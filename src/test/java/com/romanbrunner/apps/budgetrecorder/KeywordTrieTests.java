@@ -0,0 +1,116 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class KeywordTrieTests {
+
+	private static String createKeyword(Random random, int maxLength) {
+		var keyword = new StringBuilder();
+		for (int length = 1 + random.nextInt(maxLength); length > 0; length--) {
+			keyword.append("abAB c".charAt(random.nextInt(6)));
+		}
+		return keyword.toString();
+	}
+
+	@Test
+	public void completesRegardlessOfCapitalisation() {
+		var trie = new KeywordTrie();
+		trie.add("Migros");
+		trie.add("Migrolino");
+		trie.add("Coop City");
+		trie.add("Coop");
+		assertFalse(trie.add("coop"));
+		assertEquals(4, trie.size());
+		assertEquals(2, trie.getUsages("COOP"));
+		assertEquals("Migrolino", trie.getBestCompletion("mig"));
+		assertEquals("Migros", trie.getBestCompletion("MIGROS"));
+		assertEquals("Coop", trie.getBestCompletion("co"));
+		assertEquals("Coop City", trie.getBestCompletion("coop "));
+		assertNull(trie.getBestCompletion("Denner"));
+		assertNull(trie.getBestCompletion("Migrosx"));
+	}
+
+	@Test
+	public void ranksCompletionsByUsages() {
+		var trie = new KeywordTrie();
+		trie.addAll(Arrays.asList("Migros", "Migrolino", "Migros", "Coop", "Migros", "Migrolino", "Manor"));
+		assertEquals(Arrays.asList("Migros", "Migrolino", "Manor"), trie.getTopCompletions("m"));
+		trie.add("Manor");
+		trie.add("Manor");
+		assertEquals(Arrays.asList("Manor", "Migros", "Migrolino"), trie.getTopCompletions("M"));
+		assertEquals("Manor", trie.getBestCompletion(""));
+	}
+
+	@Test
+	public void removesUsagesAndKeywords() {
+		var random = new Random(9L);
+		var trie = new KeywordTrie();
+		var added = new ArrayList<String>();
+		for (int i = 0; i < 5000; i++) {
+			final var keyword = createKeyword(random, 6);
+			trie.add(keyword);
+			added.add(keyword);
+		}
+		var usages = new TreeMap<String, Integer>();
+		for (int i = 0; i < added.size(); i++) {
+			if (i % 3 == 0) {
+				assertTrue(trie.remove(added.get(i)));
+			} else {
+				usages.merge(KeywordTrie.fold(added.get(i)), 1, Integer::sum);
+			}
+		}
+		assertFalse(trie.remove("x"));
+		assertEquals(usages.size(), trie.size());
+		for (var entry : usages.entrySet()) {
+			assertEquals((int)entry.getValue(), trie.getUsages(entry.getKey()));
+		}
+		for (var keyword : added) {
+			while (trie.remove(keyword));
+		}
+		assertEquals(0, trie.size());
+		assertTrue(trie.getTopCompletions("").isEmpty());
+	}
+
+	@Test
+	public void findsSameTopCompletionsAsSortedMap() {
+		var random = new Random(5L);
+		var trie = new KeywordTrie();
+		var keywords = new TreeMap<String, String>();
+		var usages = new TreeMap<String, Integer>();
+		var bulkKeywords = new ArrayList<String>();
+		for (int i = 0; i < 20000; i++) {
+			final var keyword = createKeyword(random, 8);
+			final var key = KeywordTrie.fold(keyword);
+			if (i < 10000) {
+				bulkKeywords.add(keyword);
+			} else {
+				assertEquals(keywords.containsKey(key) == false, trie.add(keyword));
+			}
+			if (i == 9999) {
+				trie.addAll(bulkKeywords);
+			}
+			keywords.putIfAbsent(key, keyword);
+			usages.merge(key, 1, Integer::sum);
+		}
+		assertEquals(keywords.size(), trie.size());
+		for (int i = 0; i < 2000; i++) {
+			final var prefix = createKeyword(random, 5);
+			final var key = KeywordTrie.fold(prefix);
+			var expected = new ArrayList<String>(keywords.subMap(key, key + Character.MAX_VALUE).keySet());
+			expected.sort((a, b) -> (usages.get(a).equals(usages.get(b)) ? a.compareTo(b) : usages.get(b) - usages.get(a)));
+			expected.replaceAll(keywords::get);
+			assertEquals(expected.subList(0, Math.min(expected.size(), KeywordTrie.TOP_COMPLETIONS)), trie.getTopCompletions(prefix));
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongIntHashMapTests {
+
+	@Test
+	public void behavesLikeHashMapUnderRandomOperations() {
+		var random = new Random(3L);
+		var map = new LongIntHashMap();
+		var expected = new HashMap<Long, Integer>();
+		for (int i = 0; i < 100000; i++) {
+			long key = 1L + random.nextInt(2000);  // Few keys, so removals hit long probe sequences
+			if (random.nextInt(3) == 0) {
+				map.remove(key);
+				expected.remove(key);
+			} else {
+				map.put(key, i);
+				expected.put(key, i);
+			}
+		}
+		assertEquals(expected.size(), map.size());
+		for (long key = 1L; key <= 2000L; key++) {
+			assertEquals((int)expected.getOrDefault(key, LongIntHashMap.NO_VALUE), map.get(key));
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+
+public class MoneyTests {
+
+	@Test
+	public void convertsDecimalsExactly() {
+		assertEquals(1234L, Money.toCents(new BigDecimal("12.34")));
+		assertEquals(-10L, Money.toCents(Double.valueOf(-0.1)));
+		assertEquals(1L, Money.toCents(new BigDecimal("0.005")));
+		assertEquals(1000000000000L, Money.toCents(Long.valueOf(10000000000L)));
+		assertEquals("-0.05", Money.toDecimal(-5L).toPlainString());
+	}
+
+	@Test
+	public void sumsWithoutDrift() throws Exception {
+		var dataBundle = new DataBundle(0L, 0, Date.CURRENT_DATE, Date.CURRENT_DATE);
+		for (int i = 0; i < 100000; i++) {
+			dataBundle.addEntry(Money.toCents(Double.valueOf(0.1)));
+		}
+		assertEquals(1000000L, dataBundle.getBalance());
+	}
+
+	@Test
+	public void keepsJsonFormat() throws Exception {
+		var mapper = new ObjectMapper();
+		mapper.configure(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS, true);
+		var dataEntry = new DataEntry(-199L, 0, 0, "Name", "Location", Date.CURRENT_DATE, Date.Interval.NEVER, true, Date.CURRENT_DATE);
+		var json = mapper.writeValueAsString(dataEntry);
+		assertEquals(true, json.contains("\"Money\":-1.99,"));
+		assertEquals(-199L, mapper.readValue(json, DataEntry.class).getMoney());
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PartitionStoreTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+	private final FsyncPolicy fsyncPolicy = new FsyncPolicy(FsyncPolicy.Mode.NEVER, 0L);
+
+	private static DataEntry createDataEntry(long money, int day, int month, int year, Interval repeat) {
+		var date = Date.fromEpochDay(Date.toEpochDay(day, month, year));
+		return new DataEntry(money, 0, 0, "Name", "Location", date, repeat, true, DataEntry.DEFAULT_VALUE_UNTIL);
+	}
+
+	private Set<String> getFileNames() {
+		return new TreeSet<String>(Arrays.asList(directory.list()));
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		DataEntry.TYPE_NAMES = new String[] { "Einnahmen" };
+		DataEntry.SUBTYPE_NAMES = new String[][] { { "Lohn" } };
+		DataEntry.IS_POSITIVE_BALANCE_TYPE = new Boolean[] { true };
+		directory = new File(folder.getRoot(), "database" + PartitionStore.DIRECTORY_EXTENSION);
+		var dataStore = new DataStore();
+		dataStore.add(createDataEntry(100L, 3, 2, 2019, Interval.NEVER));
+		dataStore.add(createDataEntry(250L, 28, 2, 2019, Interval.NEVER));
+		dataStore.add(createDataEntry(-50L, 31, 12, 2019, Interval.NEVER));
+		dataStore.add(createDataEntry(700L, 1, 6, 2020, Interval.NEVER));
+		dataStore.add(createDataEntry(900L, 1, 6, 2021, Interval.NEVER));
+		dataStore.add(createDataEntry(10L, 15, 1, 2019, Interval.MONTHLY));
+		new PartitionStore(directory, fsyncPolicy, null).create(dataStore);
+	}
+
+	@Test
+	public void loadsNewestYearsEagerlyAndKeepsAggregatesOfOthers() throws Exception {
+		var partitionStore = new PartitionStore(directory, fsyncPolicy, null);
+		partitionStore.readManifest();
+		var dataStore = new DataStore();
+		partitionStore.readEager(dataStore);
+		assertEquals(3, dataStore.size());
+		assertEquals(Interval.MONTHLY, dataStore.getRepeat(0));
+		assertEquals(Arrays.asList(2019), partitionStore.getColdYears());
+		assertArrayEquals(new long[] { 0L, 350L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, 0L, -50L }, partitionStore.getMonthBalances(2019));
+		assertArrayEquals(new int[] { 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1 }, partitionStore.getMonthEntries(2019));
+		partitionStore.read(2019, dataStore);
+		assertEquals(6, dataStore.size());
+		assertTrue(partitionStore.getColdYears().isEmpty());
+	}
+
+	@Test
+	public void rewritesOnlyDirtyPartitions() throws Exception {
+		var partitionStore = new PartitionStore(directory, fsyncPolicy, null);
+		partitionStore.readManifest();
+		var dataStore = new DataStore();
+		partitionStore.readEager(dataStore);
+		var oldFileNames = getFileNames();
+		var dataEntry = dataStore.getDataEntry(dataStore.size() - 1);
+		partitionStore.markDirty(dataEntry);
+		dataStore.remove(dataEntry);
+		partitionStore.write(dataStore.copy(), partitionStore.takeDirty());
+		var newFileNames = getFileNames();
+		assertFalse(newFileNames.contains("2021-1.json"));
+		assertTrue(newFileNames.contains("2019-1.json"));
+		assertTrue(newFileNames.contains("2020-1.json"));
+		assertTrue(newFileNames.contains("repeats-1.json"));
+		assertEquals(oldFileNames.size() - 1, newFileNames.size());
+		// Eager years follow the newest remaining partitions:
+		var reopenedStore = new PartitionStore(directory, fsyncPolicy, null);
+		reopenedStore.readManifest();
+		var reopenedDataStore = new DataStore();
+		reopenedStore.readEager(reopenedDataStore);
+		assertEquals(5, reopenedDataStore.size());
+		assertTrue(reopenedStore.getColdYears().isEmpty());
+	}
+
+}
@@ -0,0 +1,140 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PersistenceServiceTests {
+
+	private static final long TIMEOUT = 10000L;  // Milliseconds
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static DataEntry createDataEntry(DataStore dataStore, Random random) {
+		var date = Date.fromEpochDay(Date.toEpochDay(1, 1, 2020) + random.nextInt(1000));
+		var dataEntry = new DataEntry(random.nextInt(10000) - 5000, 0, 0, "Name", "Location", date, Interval.NEVER, true, date);
+		dataStore.add(dataEntry);
+		return dataEntry;
+	}
+
+	private static void awaitSaved(PersistenceService persistenceService) throws Exception {
+		final long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (persistenceService.hasUnsavedChanges()) {
+			assertTrue("Records did not get written in time", System.currentTimeMillis() < deadline);
+			Thread.sleep(50L);
+		}
+	}
+
+	@Test
+	public void retriesFailedJournalWrites() throws Exception {
+		var snapshotFile = folder.newFile("database.json");
+		var journalDirectory = new File(folder.getRoot(), "missing");
+		var journalFile = new File(journalDirectory, "database" + Journal.FILE_EXTENSION);
+		var journal = new Journal(snapshotFile, journalFile);
+		var persistenceService = new PersistenceService(journal);
+		var dataStore = new DataStore();
+		var random = new Random(12L);
+		persistenceService.record(journal.encodeAdd(createDataEntry(dataStore, random)));
+		Thread.sleep(PersistenceService.DEBOUNCE_DELAY + 200L);
+		// Writing fails until the directory exists, but the records are kept for the retry:
+		assertTrue(persistenceService.hasUnsavedChanges());
+		assertTrue(journalDirectory.mkdir());
+		persistenceService.record(journal.encodeAdd(createDataEntry(dataStore, random)));
+		awaitSaved(persistenceService);
+		var replayedStore = new DataStore();
+		assertEquals(2, new Journal(snapshotFile, journalFile).replay(replayedStore));
+		assertEquals(dataStore.getId(1), replayedStore.getId(1));
+		persistenceService.shutdown();
+	}
+
+	@Test
+	public void keepsRecordsOfFailedCompaction() throws Exception {
+		var snapshotFile = folder.newFile("database.json");
+		var journalFile = new File(folder.getRoot(), "database" + Journal.FILE_EXTENSION);
+		var journal = new Journal(snapshotFile, journalFile);
+		var persistenceService = new PersistenceService(journal);
+		var dataStore = new DataStore();
+		var random = new Random(13L);
+		for (int i = 0; i < 3; i++) {
+			persistenceService.record(journal.encodeAdd(createDataEntry(dataStore, random)));
+		}
+		persistenceService.compact(() -> {
+			throw new Exception("ERROR: Disk full");
+		});
+		awaitSaved(persistenceService);
+		// Records stay in the journal and count towards the next compaction:
+		assertEquals(3, persistenceService.getRecords());
+		persistenceService.shutdown();
+		assertEquals(3, new Journal(snapshotFile, journalFile).replay(new DataStore()));
+	}
+
+	@Test
+	public void handsOverLocalRecordsWhileDetached() throws Exception {
+		var snapshotFile = folder.newFile("database.json");
+		var journalFile = new File(folder.getRoot(), "database" + Journal.FILE_EXTENSION);
+		var journal = new Journal(snapshotFile, journalFile);
+		var persistenceService = new PersistenceService(journal);
+		var dataStore = new DataStore();
+		var random = new Random(14L);
+		persistenceService.record(journal.encodeAdd(createDataEntry(dataStore, random)));
+		awaitSaved(persistenceService);
+		final long journalLength = journalFile.length();
+		var detached = new CountDownLatch(1);
+		persistenceService.detachJournal(detached::countDown);
+		assertTrue(detached.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		// Records queued while detached are not written, but handed over with the written ones:
+		persistenceService.record(journal.encodeAdd(createDataEntry(dataStore, random)));
+		Thread.sleep(PersistenceService.DEBOUNCE_DELAY + 200L);
+		assertEquals(journalLength, journalFile.length());
+		var mergedStore = new DataStore();
+		assertEquals(2, journal.merge(persistenceService.takeLocalRecords(), mergedStore, new ByteArrayOutputStream()));
+		assertEquals(0, persistenceService.takeLocalRecords().length);
+		// Writing continues once attached again:
+		persistenceService.attachJournal();
+		persistenceService.record(journal.encodeAdd(createDataEntry(dataStore, random)));
+		awaitSaved(persistenceService);
+		assertTrue(journalFile.length() > journalLength);
+		persistenceService.shutdown();
+	}
+
+	@Test
+	public void forcesPendingJournalRecordsInIntervalMode() throws Exception {
+		var snapshotFile = folder.newFile("database.json");
+		var dataStore = new DataStore();
+		var random = new Random(15L);
+		// Periodically, even without a further write:
+		var journal = new Journal(snapshotFile, new File(folder.getRoot(), "periodic" + Journal.FILE_EXTENSION), new FsyncPolicy(FsyncPolicy.Mode.INTERVAL, 1L));
+		journal.append(journal.encodeAdd(createDataEntry(dataStore, random)));
+		journal.append(journal.encodeAdd(createDataEntry(dataStore, random)));
+		var persistenceService = new PersistenceService(journal);
+		final long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (journal.isSyncPending()) {
+			assertTrue("Journal did not get forced in time", System.currentTimeMillis() < deadline);
+			Thread.sleep(50L);
+		}
+		persistenceService.shutdown();
+		// At shutdown, long before the interval passed:
+		journal = new Journal(snapshotFile, new File(folder.getRoot(), "shutdown" + Journal.FILE_EXTENSION), new FsyncPolicy(FsyncPolicy.Mode.INTERVAL, 3600L));
+		persistenceService = new PersistenceService(journal);
+		persistenceService.record(journal.encodeAdd(createDataEntry(dataStore, random)));
+		awaitSaved(persistenceService);
+		persistenceService.record(journal.encodeAdd(createDataEntry(dataStore, random)));
+		awaitSaved(persistenceService);
+		assertTrue(journal.isSyncPending());
+		persistenceService.shutdown();
+		assertEquals(false, journal.isSyncPending());
+	}
+
+}
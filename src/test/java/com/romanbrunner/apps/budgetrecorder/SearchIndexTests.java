@@ -0,0 +1,92 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+import org.junit.Test;
+
+public class SearchIndexTests {
+
+	private static DataStore createDataStore(String... names) {
+		var dataStore = new DataStore();
+		for (var name : names) {
+			dataStore.add(new DataEntry(100L, 0, 0, name, "Zürich", Date.CURRENT_DATE, Interval.NEVER, true, DataEntry.DEFAULT_VALUE_UNTIL));
+		}
+		return dataStore;
+	}
+
+	private static long[] getSortedIds(DataStore dataStore, int... rows) {
+		var ids = new long[rows.length];
+		for (int i = 0; i < rows.length; i++) {
+			ids[i] = dataStore.getId(rows[i]);
+		}
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	private static long[] search(SearchIndex searchIndex, String query) {
+		var ids = searchIndex.search(query);
+		Arrays.sort(ids);
+		return ids;
+	}
+
+	@Test
+	public void findsSubstringsAndTypingErrors() {
+		var dataStore = createDataStore("Migros Bahnhof", "Coop-Pronto", "Café Schober", "Manor");
+		var searchIndex = new SearchIndex();
+		searchIndex.rebuild(dataStore);
+		assertArrayEquals(getSortedIds(dataStore, 0), search(searchIndex, "bahn"));
+		assertArrayEquals(getSortedIds(dataStore, 1), search(searchIndex, "coop pr"));
+		assertArrayEquals(getSortedIds(dataStore, 2), search(searchIndex, "CAFE"));
+		assertArrayEquals(getSortedIds(dataStore, 0, 1, 2, 3), search(searchIndex, "zurich"));
+		assertArrayEquals(getSortedIds(dataStore, 0), search(searchIndex, "migors"));
+		assertArrayEquals(getSortedIds(dataStore, 2), search(searchIndex, "schobre"));
+		assertEquals(0, searchIndex.search("lidl").length);
+	}
+
+	@Test
+	public void findsShortQueriesByTheirGrams() {
+		var dataStore = createDataStore("Migros Bahnhof", "Coop-Pronto", "Café Schober", "Manor");
+		dataStore.getDataEntry(3).setValue(DataEntry.DataRowType.LOCATION, "Bern");
+		var searchIndex = new SearchIndex();
+		searchIndex.rebuild(dataStore);
+		assertArrayEquals(getSortedIds(dataStore, 0, 2), search(searchIndex, "ho"));
+		assertArrayEquals(getSortedIds(dataStore, 2), search(searchIndex, "É"));
+		assertArrayEquals(getSortedIds(dataStore, 0, 1, 2), search(searchIndex, "z"));
+		assertEquals(0, searchIndex.search("q").length);
+		// Typing errors in queries shorter than seven characters need an intact trigram:
+		assertArrayEquals(getSortedIds(dataStore, 0), search(searchIndex, "migrs"));
+		assertEquals(0, searchIndex.search("mgiro").length);
+	}
+
+	@Test
+	public void followsChangesOfDataEntries() throws Exception {
+		var dataStore = createDataStore("Migros", "Migrolino");
+		var searchIndex = new SearchIndex();
+		searchIndex.rebuild(dataStore);
+		// Edits go through remove and add like in the main frame:
+		var dataEntry = dataStore.getDataEntry(1);
+		searchIndex.remove(dataEntry);
+		dataEntry.setValue(DataEntry.DataRowType.NAME, "Denner");
+		dataEntry.setValue(DataEntry.DataRowType.LOCATION, "Denner");
+		searchIndex.add(dataEntry);
+		assertArrayEquals(getSortedIds(dataStore, 0), search(searchIndex, "migro"));
+		assertArrayEquals(getSortedIds(dataStore, 1), search(searchIndex, "denner"));
+		searchIndex.remove(dataEntry);
+		assertEquals(0, searchIndex.search("denner").length);
+		assertArrayEquals(getSortedIds(dataStore, 0), search(searchIndex, "zurich"));
+	}
+
+	@Test
+	public void measuresDistanceToClosestSubstring() {
+		assertEquals(0, SearchIndex.getSubstringDistance("gro", "migros"));
+		assertEquals(1, SearchIndex.getSubstringDistance("mgros", "migros"));
+		assertEquals(1, SearchIndex.getSubstringDistance("migors", "migros"));
+		assertEquals(2, SearchIndex.getSubstringDistance("xyz", "xaaaz"));
+	}
+
+}
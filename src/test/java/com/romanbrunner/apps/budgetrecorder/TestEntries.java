@@ -0,0 +1,95 @@
+package com.romanbrunner.apps.budgetrecorder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.romanbrunner.apps.budgetrecorder.Date.Interval;
+
+/** Random data entries and a brute force expansion of their occurrences as reference for the aggregation tests. */
+class TestEntries {
+
+	static final int FIRST_DAY = Date.toEpochDay(1, 1, 2018);
+	static final int DAYS = 3 * 365;
+
+	static DataEntry createDataEntry(long money, int day, Interval repeat, boolean duration, int untilDay) {
+		return new DataEntry(money, 0, 0, "Name", "Location", Date.fromEpochDay(day), repeat, duration, Date.fromEpochDay(untilDay));
+	}
+
+	// Every third entry repeats, half of those until a random day, which may lie before the entry itself:
+	static DataEntry createRandomDataEntry(Random random) {
+		final int day = FIRST_DAY + random.nextInt(DAYS);
+		final long money = random.nextInt(20001) - 10000;
+		if (random.nextInt(3) != 0) {
+			return createDataEntry(money, day, Interval.NEVER, true, day);
+		}
+		final var repeats = Interval.values();  // Interval.Data is only filled once the enum got initialized
+		final var repeat = repeats[1 + random.nextInt(repeats.length - 1)];
+		return createDataEntry(money, day, repeat, random.nextBoolean(), day - 30 + random.nextInt(DAYS / 2));
+	}
+
+	static DataStore createRandomDataStore(Random random, int size) {
+		var dataStore = new DataStore();
+		for (int i = 0; i < size; i++) {
+			dataStore.add(createRandomDataEntry(random));
+		}
+		return dataStore;
+	}
+
+	// Walks the occurrences one by one up to given epoch day instead of using recurrence math:
+	static List<Integer> getOccurrenceDays(DataEntry dataEntry, int endDay) {
+		var days = new ArrayList<Integer>();
+		final var repeat = dataEntry.getRepeat();
+		int lastDay = endDay;
+		if (repeat != Interval.NEVER && dataEntry.getDuration() == false) {
+			lastDay = Math.min(lastDay, Math.max(dataEntry.getUntilDay(), dataEntry.getDateDay()));
+		}
+		for (int n = 0; ; n++) {
+			final int day = IntervalMath.getOccurrence(dataEntry.getDateDay(), n, repeat);
+			if (day > lastDay || (repeat == Interval.NEVER && n > 0)) {
+				break;
+			}
+			days.add(day);
+		}
+		return days;
+	}
+
+	static long getBalance(DataStore dataStore, int startDay, int endDay) {
+		long balance = 0L;
+		for (var dataEntry : dataStore.getDataEntries()) {
+			for (var day : getOccurrenceDays(dataEntry, endDay)) {
+				if (day >= startDay) {
+					balance += dataEntry.getMoney();
+				}
+			}
+		}
+		return balance;
+	}
+
+	static int getEntries(DataStore dataStore, int startDay, int endDay) {
+		int entries = 0;
+		for (var dataEntry : dataStore.getDataEntries()) {
+			for (var day : getOccurrenceDays(dataEntry, endDay)) {
+				if (day >= startDay) {
+					entries++;
+				}
+			}
+		}
+		return entries;
+	}
+
+	// Balance and entries by bundle start day of every occurrence up to given epoch day:
+	static TreeMap<Integer, long[]> scanBundles(DataStore dataStore, Interval interval, int endDay) {
+		var bundles = new TreeMap<Integer, long[]>();
+		for (var dataEntry : dataStore.getDataEntries()) {
+			for (var day : getOccurrenceDays(dataEntry, endDay)) {
+				var bundle = bundles.computeIfAbsent(IntervalMath.getStart(day, interval), startDay -> new long[2]);
+				bundle[0] += dataEntry.getMoney();
+				bundle[1] += 1;
+			}
+		}
+		return bundles;
+	}
+
+}